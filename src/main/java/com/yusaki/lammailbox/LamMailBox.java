@@ -24,9 +24,13 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.yusaki.lammailbox.command.LmbCommandExecutor;
@@ -34,6 +38,7 @@ import com.yusaki.lammailbox.command.LmbMigrateCommand;
 import com.yusaki.lammailbox.command.LmbTabComplete;
 import com.yusaki.lammailbox.config.StorageSettings;
 import com.yusaki.lammailbox.gui.ConfigMailGuiFactory;
+import com.yusaki.lammailbox.gui.GuiLayout;
 import com.yusaki.lammailbox.gui.InventoryClickHandler;
 import com.yusaki.lammailbox.gui.MailGuiFactory;
 import com.yusaki.lammailbox.mailing.MailingConfigLoader;
@@ -42,9 +47,17 @@ import com.yusaki.lammailbox.mailing.MailingScheduler;
 import com.yusaki.lammailbox.mailing.status.MailingStatusRepository;
 import com.yusaki.lammailbox.mailing.status.SqliteMailingStatusRepository;
 import com.yusaki.lammailbox.mailing.status.YamlMailingStatusRepository;
+import com.yusaki.lammailbox.repository.CachingMailRepository;
+import com.yusaki.lammailbox.repository.JournalMailRepository;
+import com.yusaki.lammailbox.repository.KeyValueMailRepository;
+import com.yusaki.lammailbox.repository.MailArchive;
+import com.yusaki.lammailbox.repository.MailPageCursor;
+import com.yusaki.lammailbox.repository.MailRecord;
 import com.yusaki.lammailbox.repository.MailRepository;
 import com.yusaki.lammailbox.repository.SqliteMailRepository;
 import com.yusaki.lammailbox.repository.YamlMailRepository;
+import com.yusaki.lammailbox.service.AsyncMailFacade;
+import com.yusaki.lammailbox.service.InboxIndex;
 import com.yusaki.lammailbox.service.DefaultMailService;
 import com.yusaki.lammailbox.session.MailCreationController;
 import com.yusaki.lammailbox.service.MailDelivery;
@@ -58,7 +71,10 @@ import org.yusaki.lib.modules.MessageManager;
 public class LamMailBox extends JavaPlugin implements Listener {
     private FileConfiguration config;
     private MailRepository mailRepository;
+    private MailArchive mailArchive;
     private MailService mailService;
+    private AsyncMailFacade asyncMail;
+    private InboxIndex inboxIndex;
     private StorageSettings.BackendType activeBackend;
     private YskLib yskLib;
     private MessageManager messageManager;
@@ -70,10 +86,13 @@ public class LamMailBox extends JavaPlugin implements Listener {
     private Map<UUID, Integer> mailViewPages;
     private Map<UUID, Integer> mailboxPages;
     private Map<UUID, Integer> sentMailboxPages;
+    private Map<UUID, Map<String, List<MailPageCursor>>> mailboxCursors;
+    private Map<UUID, Map<String, List<MailPageCursor>>> sentMailboxCursors;
     private String primaryCommand = "lmb";
     private FoliaLib foliaLib;
     private InventoryClickHandler inventoryClickHandler;
     private MailGuiFactory mailGuiFactory;
+    private volatile GuiLayout guiLayout;
     private MailCreationController mailCreationController;
     private MailBoxConfigUpdater configUpdater;
     private MailingConfigLoader mailingConfigLoader;
@@ -112,10 +131,17 @@ public class LamMailBox extends JavaPlugin implements Listener {
         yskLib.loadMessages(this);
         messageManager = yskLib.getMessageManager();
         invalidatePrefixCache();
+        guiLayout = GuiLayout.compile(this);
 
         StorageSettings storageSettings = StorageSettings.load(this);
         mailRepository = createRepository(storageSettings);
-        mailService = new DefaultMailService(this, mailRepository, foliaLib);
+        mailArchive = storageSettings.archiveEnabled()
+                ? new MailArchive(this, storageSettings.archivePath(),
+                        storageSettings.archiveBatchSize(), storageSettings.archiveFlushIntervalMillis())
+                : null;
+        inboxIndex = new InboxIndex(mailRepository, getConfig().getBoolean("settings.inbox-index", true));
+        mailService = new DefaultMailService(this, mailRepository, foliaLib, mailArchive, inboxIndex);
+        asyncMail = new AsyncMailFacade(this, mailRepository, mailService, foliaLib);
         mailSessions = new HashMap<>();
         awaitingInput = new HashMap<>();
         inMailCreation = new HashMap<>();
@@ -124,6 +150,8 @@ public class LamMailBox extends JavaPlugin implements Listener {
         mailViewPages = new HashMap<>();
         mailboxPages = new HashMap<>();
         sentMailboxPages = new HashMap<>();
+        mailboxCursors = new ConcurrentHashMap<>();
+        sentMailboxCursors = new ConcurrentHashMap<>();
         inventoryClickHandler = new InventoryClickHandler(this);
         mailGuiFactory = new ConfigMailGuiFactory(this);
         mailCreationController = new MailCreationController(this);
@@ -159,6 +187,7 @@ public class LamMailBox extends JavaPlugin implements Listener {
             yskLib.loadMessages(this);
             messageManager = yskLib.getMessageManager();
             invalidatePrefixCache();
+            guiLayout = GuiLayout.compile(this);
             mailingAutoCleanup = config.getBoolean("mailings.auto-cleanup", true);
             updateCommandAliases();
             reloadMailings();
@@ -197,11 +226,21 @@ public class LamMailBox extends JavaPlugin implements Listener {
         }, 1200L, 1200L); // Every minute (1200 ticks)
 
         Bukkit.getPluginManager().registerEvents(this, this);
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            String onlineName = online.getName();
+            asyncMail.supply(() -> inboxIndex.load(onlineName));
+        }
         startCleanupTask();
     }
 
     @Override
     public void onDisable() {
+        if (asyncMail != null) {
+            asyncMail.shutdown();
+        }
+        if (mailArchive != null) {
+            mailArchive.shutdown();
+        }
         if (mailRepository != null) {
             mailRepository.shutdown();
         }
@@ -215,9 +254,14 @@ public class LamMailBox extends JavaPlugin implements Listener {
 
 
     private void checkScheduledMails() {
-        List<MailDelivery> toNotify = mailService.schedulePendingMails();
-        toNotify.forEach(delivery ->
-                notifyRecipients(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName()));
+        asyncMail.thenGlobal(asyncMail.supply(mailService::schedulePendingMails), (toNotify, error) -> {
+            if (error != null) {
+                getLogger().warning("Failed to activate scheduled mails: " + error.getMessage());
+                return;
+            }
+            toNotify.forEach(delivery ->
+                    notifyRecipients(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName()));
+        });
     }
 
 
@@ -228,7 +272,7 @@ public class LamMailBox extends JavaPlugin implements Listener {
     }
 
     private void cleanupExpiredMails() {
-        mailService.removeExpiredMails();
+        asyncMail.supply(mailService::removeExpiredMails);
     }
 
     public void openMainGUI(Player player) {
@@ -270,12 +314,18 @@ public class LamMailBox extends JavaPlugin implements Listener {
         // Check if player is confirming deletion
         String confirmingMailId = deleteConfirmations.get(player.getUniqueId());
         if (confirmingMailId != null && confirmingMailId.equals(mailId)) {
-            mailService.deleteMail(mailId);
             deleteConfirmations.remove(player.getUniqueId());
-            
-            player.closeInventory();
-            openSentMailGUI(player);
-            sendPrefixedMessage(player, "messages.mail-deleted");
+            // Archiving reads and deserializes the whole mail, so keep it off the main thread.
+            asyncMail.thenAtEntity(asyncMail.deleteMailAsync(mailId), player, (deleted, error) -> {
+                if (error != null) {
+                    getLogger().warning("Failed to delete mail " + mailId + ": " + error.getMessage());
+                }
+                player.closeInventory();
+                openSentMailGUI(player);
+                sendPrefixedMessage(player, Boolean.TRUE.equals(deleted)
+                        ? "messages.mail-deleted"
+                        : "messages.mail-delete-failed");
+            });
         } else {
             // First click - ask for confirmation
             deleteConfirmations.put(player.getUniqueId(), mailId);
@@ -314,30 +364,49 @@ public class LamMailBox extends JavaPlugin implements Listener {
         player.openInventory(mailGuiFactory.createCommandItemCreator(player));
     }
 
-    private void checkPlayerMails(Player player) {
+    private void checkPlayerMails(Player player, CompletableFuture<List<MailRecord>> inbox) {
         String playerName = player.getName();
-        for (String mailId : mailRepository.listActiveMailIdsFor(playerName)) {
-            mailRepository.findRecord(mailId).ifPresent(record -> {
+        asyncMail.thenAtEntity(inbox, player, (records, error) -> {
+            if (error != null) {
+                getLogger().warning("Failed to load mails for " + playerName + ": " + error.getMessage());
+                return;
+            }
+            if (!player.isOnline()) {
+                return;
+            }
+            for (MailRecord record : records) {
                 if (record.canBeClaimedBy(playerName)) {
                     String sender = Optional.ofNullable(record.sender()).orElse("Console");
-                    sendMailNotification(player, mailId, sender);
+                    sendMailNotification(player, record.id(), sender);
                 }
-            });
-        }
+            }
+        });
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        String playerName = player.getName();
+        CompletableFuture<List<MailRecord>> inbox = asyncMail.supply(() -> inboxIndex.load(playerName));
         if (!config.getBoolean("settings.join-notification")) return;
 
-        Player player = event.getPlayer();
-        checkPlayerMails(player);
+        checkPlayerMails(player, inbox);
         if (mailingScheduler != null) {
             mailingScheduler.handlePlayerJoin(player);
         }
     }
 
 
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        mailboxPages.remove(playerId);
+        sentMailboxPages.remove(playerId);
+        mailboxCursors.remove(playerId);
+        sentMailboxCursors.remove(playerId);
+        mailService.forgetPlayer(event.getPlayer().getName());
+    }
+
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
         inventoryClickHandler.handleClick(event);
@@ -496,29 +565,33 @@ public class LamMailBox extends JavaPlugin implements Listener {
         }
 
         inMailCreation.remove(sender.getUniqueId());
+        // Detach the session while the send is in flight so a second click cannot send it twice.
+        mailSessions.remove(sender.getUniqueId());
 
-        MailDelivery delivery;
-        try {
-            delivery = mailService.sendMail(sender, session);
-        } catch (IllegalArgumentException ex) {
-            sendPrefixedMessage(sender, "messages.incomplete-mail");
-            return;
-        }
+        asyncMail.thenAtEntity(asyncMail.sendMailAsync(sender, session), sender, (delivery, error) -> {
+            if (error != null) {
+                mailSessions.put(sender.getUniqueId(), session);
+                if (!(error instanceof IllegalArgumentException)) {
+                    getLogger().warning("Failed to send mail for " + sender.getName() + ": " + error.getMessage());
+                }
+                sendPrefixedMessage(sender, "messages.incomplete-mail");
+                return;
+            }
 
-        if (delivery.shouldNotifyNow()) {
-            notifyRecipients(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName());
-        }
+            if (delivery.shouldNotifyNow()) {
+                notifyRecipients(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName());
+            }
 
-        mailSessions.remove(sender.getUniqueId());
-        sender.closeInventory();
+            sender.closeInventory();
 
-        Long scheduleDate = session.getScheduleDate();
-        if (scheduleDate != null && scheduleDate > System.currentTimeMillis()) {
-            sendPrefixedMessage(sender, "messages.schedule-set",
-                    placeholders("date", new Date(scheduleDate).toString()));
-        } else {
-            sendPrefixedMessage(sender, "messages.mail-sent");
-        }
+            Long scheduleDate = session.getScheduleDate();
+            if (scheduleDate != null && scheduleDate > System.currentTimeMillis()) {
+                sendPrefixedMessage(sender, "messages.schedule-set",
+                        placeholders("date", new Date(scheduleDate).toString()));
+            } else {
+                sendPrefixedMessage(sender, "messages.mail-sent");
+            }
+        });
     }
 
     public MessageManager getMessageManager() {
@@ -804,6 +877,25 @@ public class LamMailBox extends JavaPlugin implements Listener {
         return mailService;
     }
 
+    public InboxIndex getInboxIndex() {
+        return inboxIndex;
+    }
+
+    public GuiLayout getGuiLayout() {
+        return guiLayout;
+    }
+
+    public AsyncMailFacade getAsyncMail() {
+        return asyncMail;
+    }
+
+    /**
+     * The cold archive tier, or null when archiving is disabled in storage.yml.
+     */
+    public MailArchive getMailArchive() {
+        return mailArchive;
+    }
+
     public MailRepository getMailRepository() {
         return mailRepository;
     }
@@ -840,6 +932,14 @@ public class LamMailBox extends JavaPlugin implements Listener {
         return sentMailboxPages;
     }
 
+    public Map<UUID, Map<String, List<MailPageCursor>>> getMailboxCursors() {
+        return mailboxCursors;
+    }
+
+    public Map<UUID, Map<String, List<MailPageCursor>>> getSentMailboxCursors() {
+        return sentMailboxCursors;
+    }
+
     public FoliaLib getFoliaLib() {
         return foliaLib;
     }
@@ -856,15 +956,43 @@ public class LamMailBox extends JavaPlugin implements Listener {
                                           StorageSettings.BackendType backendType,
                                           boolean allowImport) {
         if (backendType == StorageSettings.BackendType.SQLITE) {
-            return new SqliteMailRepository(this, settings.sqlitePath());
+            return new SqliteMailRepository(this,
+                    settings.sqlitePath(),
+                    settings.sqliteReaderConnections(),
+                    settings.sqliteGroupCommitMillis(),
+                    settings.attachmentPath(),
+                    settings.attachmentSegments(),
+                    settings.attachmentSegmentBytes());
         }
-        return new YamlMailRepository(this);
+        if (backendType == StorageSettings.BackendType.JOURNAL) {
+            return new JournalMailRepository(this,
+                    settings.journalPath(),
+                    settings.journalFsyncIntervalMillis(),
+                    settings.journalCompactThresholdBytes());
+        }
+        if (backendType == StorageSettings.BackendType.KV) {
+            return new KeyValueMailRepository(this,
+                    settings.kvPath(),
+                    settings.kvFsyncIntervalMillis(),
+                    settings.kvSegmentBytes());
+        }
+        return new YamlMailRepository(this, settings.yamlSaveIntervalMillis());
     }
 
     private MailRepository createRepository(StorageSettings settings) {
         MailRepository repository = buildRepository(settings, settings.backendType(), true);
+        if (settings.mailCacheEnabled() || settings.attachmentCacheBytes() > 0) {
+            repository = new CachingMailRepository(repository,
+                    settings.mailCacheEnabled() ? settings.mailCacheMaxEntries() : 0,
+                    settings.mailCacheMaxBytes(),
+                    settings.attachmentCacheBytes());
+        }
         if (settings.backendType() == StorageSettings.BackendType.SQLITE) {
             getLogger().info("Loaded LamMailBox using SQLite storage");
+        } else if (settings.backendType() == StorageSettings.BackendType.JOURNAL) {
+            getLogger().info("Loaded LamMailBox using journal storage");
+        } else if (settings.backendType() == StorageSettings.BackendType.KV) {
+            getLogger().info("Loaded LamMailBox using key-value storage");
         } else {
             getLogger().info("Loaded LamMailBox using YAML storage");
         }
@@ -874,7 +1002,9 @@ public class LamMailBox extends JavaPlugin implements Listener {
 
     private MailingStatusRepository createMailingStatusRepository(StorageSettings settings) {
         if (settings.backendType() == StorageSettings.BackendType.SQLITE) {
-            return new SqliteMailingStatusRepository(this, settings.sqlitePath());
+            Path statusPath = settings.mailingStatusPath();
+            Path legacyPath = statusPath.equals(settings.sqlitePath()) ? null : settings.sqlitePath();
+            return new SqliteMailingStatusRepository(this, statusPath, legacyPath);
         }
         return new YamlMailingStatusRepository(this);
     }
@@ -1,10 +1,13 @@
 package com.yusaki.lammailbox.command;
 
 import com.yusaki.lammailbox.LamMailBox;
+import com.yusaki.lammailbox.config.StorageSettings;
 import com.yusaki.lammailbox.mailing.MailingDefinition;
 import com.yusaki.lammailbox.mailing.MailingType;
 import com.yusaki.lammailbox.model.CommandItem;
+import com.yusaki.lammailbox.repository.MailArchive;
 import com.yusaki.lammailbox.repository.MailRecord;
+import com.yusaki.lammailbox.service.AsyncMailFacade;
 import com.yusaki.lammailbox.service.MailDelivery;
 import com.yusaki.lammailbox.session.MailCreationSession;
 import org.bukkit.Bukkit;
@@ -19,8 +22,10 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class LmbCommandExecutor implements CommandExecutor {
+    private static final int ARCHIVE_PAGE_SIZE = 10;
     private final LamMailBox plugin;
     private static final DateTimeFormatter DATE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
@@ -46,6 +51,12 @@ public class LmbCommandExecutor implements CommandExecutor {
                 return handleAs(sender, args);
             case "mailings":
                 return handleMailings(sender);
+            case "stats":
+                return handleStats(sender);
+            case "archive":
+                return handleArchive(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "benchmark":
+                return handleBenchmark(sender, Arrays.copyOfRange(args, 1, args.length));
             case "template":
                 return handleTemplate(sender, Arrays.copyOfRange(args, 1, args.length));
             default:
@@ -151,24 +162,23 @@ public class LmbCommandExecutor implements CommandExecutor {
             session.setExpireDate(defaultExpire);
         }
 
-        try {
-            if (sender instanceof Player) {
-                Player player = (Player) sender;
-                MailDelivery delivery = plugin.getMailService().sendMail(player, session);
-                if (delivery.shouldNotifyNow()) {
-                    plugin.dispatchMailNotifications(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName());
-                }
-                plugin.sendPrefixedMessage(player, "messages.mail-sent");
-            } else {
-                MailDelivery delivery = plugin.getMailService().sendConsoleMail(sender, session);
-                if (delivery.shouldNotifyNow()) {
-                    plugin.dispatchMailNotifications(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName());
+        AsyncMailFacade asyncMail = plugin.getAsyncMail();
+        CompletableFuture<MailDelivery> pending = sender instanceof Player player
+                ? asyncMail.sendMailAsync(player, session)
+                : asyncMail.sendConsoleMailAsync(sender, session);
+        asyncMail.thenFor(sender, pending, (delivery, error) -> {
+            if (error != null) {
+                if (!(error instanceof IllegalArgumentException)) {
+                    plugin.getLogger().warning("Failed to send mail via command: " + error.getMessage());
                 }
-                plugin.sendPrefixedMessage(sender, "messages.mail-sent-console");
+                plugin.sendPrefixedMessage(sender, "messages.incomplete-mail");
+                return;
             }
-        } catch (IllegalArgumentException ex) {
-            plugin.sendPrefixedMessage(sender, "messages.incomplete-mail");
-        }
+            if (delivery.shouldNotifyNow()) {
+                plugin.dispatchMailNotifications(delivery.getReceiverSpec(), delivery.getMailId(), delivery.getSenderName());
+            }
+            plugin.sendPrefixedMessage(sender, sender instanceof Player ? "messages.mail-sent" : "messages.mail-sent-console");
+        });
         return true;
     }
 
@@ -187,20 +197,22 @@ public class LmbCommandExecutor implements CommandExecutor {
         Player player = (Player) sender;
         String mailId = args[1];
 
-        Optional<MailRecord> recordOpt = plugin.getMailRepository().findRecord(mailId);
-        if (recordOpt.isEmpty()) {
-            plugin.sendPrefixedMessage(player, "messages.mail-not-found");
-            return true;
-        }
+        AsyncMailFacade asyncMail = plugin.getAsyncMail();
+        asyncMail.thenAtEntity(asyncMail.findRecordAsync(mailId), player, (recordOpt, error) -> {
+            if (error != null || recordOpt.isEmpty()) {
+                plugin.sendPrefixedMessage(player, "messages.mail-not-found");
+                return;
+            }
 
-        MailRecord record = recordOpt.get();
-        boolean canAccess = record.canBeClaimedBy(player.getName());
+            MailRecord record = recordOpt.get();
+            boolean canAccess = record.canBeClaimedBy(player.getName());
 
-        if (canAccess) {
-            plugin.openMailView(player, mailId);
-        } else {
-            plugin.sendPrefixedMessage(player, "messages.mail-no-access");
-        }
+            if (canAccess) {
+                plugin.openMailView(player, mailId);
+            } else {
+                plugin.sendPrefixedMessage(player, "messages.mail-no-access");
+            }
+        });
         return true;
     }
 
@@ -358,6 +370,143 @@ public class LmbCommandExecutor implements CommandExecutor {
         return true;
     }
 
+    private boolean handleStats(CommandSender sender) {
+        FileConfiguration config = plugin.getConfig();
+        if (!sender.hasPermission(config.getString("settings.admin-permission"))) {
+            plugin.sendPrefixedMessage(sender, "messages.no-permission");
+            return true;
+        }
+
+        Map<String, String> metrics = new LinkedHashMap<>(plugin.getMailRepository().metrics());
+        if (plugin.getMailArchive() != null) {
+            metrics.putAll(plugin.getMailArchive().metrics());
+        }
+        if (plugin.getMailingStatusRepository() != null) {
+            metrics.putAll(plugin.getMailingStatusRepository().metrics());
+        }
+        String backend = String.valueOf(plugin.getActiveBackend()).toLowerCase(Locale.ROOT);
+        String header = config.getString("messages.stats.header", "&6Storage Statistics &8(&f%backend%&8)");
+        plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(header, "backend", backend));
+        if (metrics.isEmpty()) {
+            plugin.sendPrefixedRaw(sender, config.getString("messages.stats.empty",
+                    "&7No statistics reported by this backend."));
+            return true;
+        }
+
+        String entryTemplate = config.getString("messages.stats.entry", "&e• &f%key%&7: &f%value%");
+        for (Map.Entry<String, String> entry : metrics.entrySet()) {
+            plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(entryTemplate, Map.of(
+                    "key", entry.getKey(),
+                    "value", entry.getValue())));
+        }
+        return true;
+    }
+
+    private boolean handleArchive(CommandSender sender, String[] args) {
+        FileConfiguration config = plugin.getConfig();
+        if (!sender.hasPermission(config.getString("settings.admin-permission"))) {
+            plugin.sendPrefixedMessage(sender, "messages.no-permission");
+            return true;
+        }
+        MailArchive archive = plugin.getMailArchive();
+        if (archive == null) {
+            plugin.sendPrefixedMessage(sender, "messages.archive.disabled");
+            return true;
+        }
+        if (args.length < 1) {
+            plugin.sendPrefixedMessage(sender, "messages.archive.usage");
+            return true;
+        }
+
+        String player = args[0];
+        int page = 1;
+        if (args.length > 1) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[1]));
+            } catch (NumberFormatException e) {
+                plugin.sendPrefixedMessage(sender, "messages.archive.usage");
+                return true;
+            }
+        }
+        int pageSize = ARCHIVE_PAGE_SIZE;
+        int offset = (page - 1) * pageSize;
+        int currentPage = page;
+        plugin.getFoliaLib().getScheduler().runAsync(task -> {
+            int total = archive.count(player);
+            List<MailArchive.Entry> entries = archive.search(player, offset, pageSize);
+            int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+            plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(
+                    config.getString("messages.archive.header",
+                            "&6Archived mail for &f%player% &8(&f%page%&7/&f%pages%&8, &f%count% &7total&8)"),
+                    Map.of("player", player,
+                            "page", String.valueOf(currentPage),
+                            "pages", String.valueOf(pages),
+                            "count", String.valueOf(total))));
+            if (entries.isEmpty()) {
+                plugin.sendPrefixedRaw(sender, config.getString("messages.archive.empty", "&7No archived mail found."));
+                return;
+            }
+            String template = config.getString("messages.archive.entry",
+                    "&e• &f%date% &8[&7%reason%&8] &f%sender% &7→ &f%receiver%&7: &f%message% &8(%items% items)");
+            for (MailArchive.Entry entry : entries) {
+                Map<String, String> values = new HashMap<>();
+                values.put("id", entry.mailId());
+                values.put("date", DATE_FORMATTER.format(Instant.ofEpochMilli(entry.archivedAt())));
+                values.put("reason", entry.reason().name().toLowerCase(Locale.ROOT));
+                values.put("sender", String.valueOf(entry.data().getOrDefault("sender", "?")));
+                values.put("receiver", String.valueOf(entry.data().getOrDefault("receiver", "?")));
+                values.put("message", String.valueOf(entry.data().getOrDefault("message", "")));
+                values.put("items", String.valueOf(entry.itemCount()));
+                plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(template, values));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleBenchmark(CommandSender sender, String[] args) {
+        FileConfiguration config = plugin.getConfig();
+        if (!sender.hasPermission(config.getString("settings.admin-permission"))) {
+            plugin.sendPrefixedMessage(sender, "messages.no-permission");
+            return true;
+        }
+
+        int mails = 2000;
+        if (args.length > 0) {
+            try {
+                mails = Math.max(StorageBenchmark.PLAYERS, Math.min(100_000, Integer.parseInt(args[0])));
+            } catch (NumberFormatException e) {
+                plugin.sendPrefixedMessage(sender, "messages.benchmark.usage");
+                return true;
+            }
+        }
+
+        int mailCount = mails;
+        StorageBenchmark benchmark = new StorageBenchmark(plugin, StorageSettings.load(plugin));
+        plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(
+                config.getString("messages.benchmark.start", "&eBenchmarking storage backends with &f%count% &emails..."),
+                "count", String.valueOf(mailCount)));
+        plugin.getFoliaLib().getScheduler().runAsync(task -> {
+            String template = config.getString("messages.benchmark.result",
+                    "&e• &f%backend%&7: send &f%send%ms&7, inbox &f%inbox%ms&7, claim &f%claim%ms&7, purge &f%purge%ms");
+            for (StorageSettings.BackendType backend : StorageSettings.BackendType.values()) {
+                String name = backend.name().toLowerCase(Locale.ROOT);
+                try {
+                    StorageBenchmark.Result result = benchmark.run(backend, mailCount);
+                    Map<String, String> values = new HashMap<>();
+                    values.put("backend", name);
+                    result.phases().forEach((phase, millis) -> values.put(phase, String.valueOf(millis)));
+                    plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(template, values));
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Failed to benchmark " + name + " storage: " + e.getMessage());
+                    plugin.sendPrefixedRaw(sender, plugin.applyPlaceholderVariants(
+                            config.getString("messages.benchmark.failed", "&c✖ %backend%: %error%"),
+                            Map.of("backend", name, "error", String.valueOf(e.getMessage()))));
+                }
+            }
+        });
+        return true;
+    }
+
     private boolean handleTemplate(CommandSender sender, String[] args) {
         FileConfiguration config = plugin.getConfig();
         if (!sender.hasPermission(config.getString("settings.admin-permission"))) {
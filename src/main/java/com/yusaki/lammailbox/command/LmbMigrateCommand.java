@@ -9,10 +9,12 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class LmbMigrateCommand implements CommandExecutor {
     private final LamMailBox plugin;
@@ -88,13 +90,15 @@ public class LmbMigrateCommand implements CommandExecutor {
                             "target", args[1].toLowerCase(Locale.ROOT)));
 
             int migrated = 0;
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
             for (String mailId : sourceIds) {
                 Map<String, Object> data = sourceRepo.loadMail(mailId);
-                targetRepo.saveMail(mailId, data);
+                writes.add(targetRepo.saveMailAsync(mailId, data));
                 List<ItemStack> items = sourceRepo.loadMailItems(mailId);
-                targetRepo.saveMailItems(mailId, items);
+                writes.add(targetRepo.saveMailItemsAsync(mailId, items));
                 migrated++;
             }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
             targetRepo.save();
 
             plugin.sendPrefixedMessage(sender, "messages.migrate-success",
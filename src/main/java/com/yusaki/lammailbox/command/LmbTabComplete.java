@@ -40,6 +40,9 @@ public class LmbTabComplete implements TabCompleter {
             if (sender.hasPermission(config.getString("settings.admin-permission"))) {
                 completions.add("send");
                 completions.add("mailings");
+                completions.add("stats");
+                completions.add("benchmark");
+                completions.add("archive");
                 completions.add("template");
             }
             if (sender.hasPermission(config.getString("settings.permissions.view-as"))) {
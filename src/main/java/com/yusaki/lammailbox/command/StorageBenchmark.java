@@ -0,0 +1,141 @@
+package com.yusaki.lammailbox.command;
+
+import com.yusaki.lammailbox.LamMailBox;
+import com.yusaki.lammailbox.config.StorageSettings;
+import com.yusaki.lammailbox.repository.JournalMailRepository;
+import com.yusaki.lammailbox.repository.KeyValueMailRepository;
+import com.yusaki.lammailbox.repository.MailRepository;
+import com.yusaki.lammailbox.repository.SqliteMailRepository;
+import com.yusaki.lammailbox.repository.YamlMailRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same synthetic mail workload against a throwaway copy of each
+ * storage backend so their costs can be compared on the server's own disk.
+ */
+final class StorageBenchmark {
+    static final int PLAYERS = 50;
+    private static final int PAGE_SIZE = 45;
+
+    /**
+     * Milliseconds spent in each workload phase, in execution order.
+     */
+    record Result(StorageSettings.BackendType backend, Map<String, Long> phases) {
+    }
+
+    private final LamMailBox plugin;
+    private final StorageSettings settings;
+    private final Path root;
+
+    StorageBenchmark(LamMailBox plugin, StorageSettings settings) {
+        this.plugin = plugin;
+        this.settings = settings;
+        this.root = plugin.getDataFolder().toPath().resolve("benchmark");
+    }
+
+    Result run(StorageSettings.BackendType backend, int mails) throws IOException {
+        Path directory = root.resolve(backend.name().toLowerCase(Locale.ROOT));
+        deleteRecursively(directory);
+        Files.createDirectories(directory);
+        MailRepository repository = open(backend, directory);
+        Map<String, Long> phases = new LinkedHashMap<>();
+        try {
+            long now = System.currentTimeMillis();
+            long started = System.nanoTime();
+            List<CompletableFuture<Void>> writes = new ArrayList<>(mails);
+            for (int i = 0; i < mails; i++) {
+                writes.add(repository.saveMailAsync(mailId(i), mail(i, now)));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+            repository.save();
+            started = phase(phases, "send", started);
+
+            for (int player = 0; player < PLAYERS; player++) {
+                repository.countActiveMailFor(playerName(player));
+                repository.pageActiveMailFor(playerName(player), null, PAGE_SIZE);
+            }
+            started = phase(phases, "inbox", started);
+
+            List<CompletableFuture<Void>> claims = new ArrayList<>();
+            for (int i = 0; i < mails; i += 4) {
+                claims.add(repository.deleteMailAsync(mailId(i)));
+            }
+            CompletableFuture.allOf(claims.toArray(new CompletableFuture[0])).join();
+            repository.save();
+            started = phase(phases, "claim", started);
+
+            repository.purgeExpired(now, 500);
+            phase(phases, "purge", started);
+        } finally {
+            repository.shutdown();
+            deleteRecursively(directory);
+        }
+        return new Result(backend, phases);
+    }
+
+    private MailRepository open(StorageSettings.BackendType backend, Path directory) {
+        return switch (backend) {
+            case SQLITE -> new SqliteMailRepository(plugin, directory.resolve("mailbox.db"),
+                    settings.sqliteReaderConnections(), settings.sqliteGroupCommitMillis());
+            case JOURNAL -> new JournalMailRepository(plugin, directory,
+                    settings.journalFsyncIntervalMillis(), settings.journalCompactThresholdBytes());
+            case KV -> new KeyValueMailRepository(plugin, directory,
+                    settings.kvFsyncIntervalMillis(), settings.kvSegmentBytes());
+            case YAML -> new YamlMailRepository(plugin, directory.toFile(), settings.yamlSaveIntervalMillis());
+        };
+    }
+
+    /**
+     * A direct mail to one of {@link #PLAYERS} players; every other mail has
+     * already expired so the purge phase has work to do.
+     */
+    private static Map<String, Object> mail(int index, long now) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("sender", "Benchmark");
+        data.put("receiver", playerName(index % PLAYERS));
+        data.put("message", "Benchmark mail " + index);
+        data.put("sent-date", now - index);
+        data.put("expire-date", index % 2 == 0 ? now + 86_400_000L : now - 1L);
+        data.put("active", true);
+        data.put("is-admin-mail", false);
+        data.put("claimed-players", new ArrayList<String>());
+        return data;
+    }
+
+    private static long phase(Map<String, Long> phases, String name, long started) {
+        long finished = System.nanoTime();
+        phases.put(name, (finished - started) / 1_000_000L);
+        return finished;
+    }
+
+    private static String mailId(int index) {
+        return "benchmark-" + index;
+    }
+
+    private static String playerName(int index) {
+        return "Player" + index;
+    }
+
+    private void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
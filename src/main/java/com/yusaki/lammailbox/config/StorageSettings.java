@@ -16,7 +16,9 @@ import java.util.Objects;
 public final class StorageSettings {
     public enum BackendType {
         YAML,
-        SQLITE;
+        SQLITE,
+        JOURNAL,
+        KV;
 
         public static BackendType from(String value, BackendType fallback) {
             if (value == null) {
@@ -32,10 +34,74 @@ public final class StorageSettings {
 
     private final BackendType backendType;
     private final Path sqlitePath;
+    private final int sqliteReaderConnections;
+    private final long sqliteGroupCommitMillis;
+    private final Path attachmentPath;
+    private final boolean attachmentSegments;
+    private final long attachmentSegmentBytes;
+    private final Path journalPath;
+    private final long journalFsyncIntervalMillis;
+    private final long journalCompactThresholdBytes;
+    private final long yamlSaveIntervalMillis;
+    private final Path kvPath;
+    private final boolean archiveEnabled;
+    private final Path archivePath;
+    private final int archiveBatchSize;
+    private final long archiveFlushIntervalMillis;
+    private final long kvFsyncIntervalMillis;
+    private final long kvSegmentBytes;
+    private final Path mailingStatusPath;
+    private final boolean mailCacheEnabled;
+    private final int mailCacheMaxEntries;
+    private final long mailCacheMaxBytes;
+    private final long attachmentCacheBytes;
 
-    private StorageSettings(BackendType backendType, Path sqlitePath) {
+    private StorageSettings(BackendType backendType,
+                            Path sqlitePath,
+                            int sqliteReaderConnections,
+                            long sqliteGroupCommitMillis,
+                            Path attachmentPath,
+                            boolean attachmentSegments,
+                            long attachmentSegmentBytes,
+                            Path journalPath,
+                            long journalFsyncIntervalMillis,
+                            long journalCompactThresholdBytes,
+                            long yamlSaveIntervalMillis,
+                            Path kvPath,
+                            long kvFsyncIntervalMillis,
+                            long kvSegmentBytes,
+                            boolean archiveEnabled,
+                            Path archivePath,
+                            int archiveBatchSize,
+                            long archiveFlushIntervalMillis,
+                            Path mailingStatusPath,
+                            boolean mailCacheEnabled,
+                            int mailCacheMaxEntries,
+                            long mailCacheMaxBytes,
+                            long attachmentCacheBytes) {
         this.backendType = backendType;
         this.sqlitePath = sqlitePath;
+        this.sqliteReaderConnections = sqliteReaderConnections;
+        this.sqliteGroupCommitMillis = sqliteGroupCommitMillis;
+        this.attachmentPath = attachmentPath;
+        this.attachmentSegments = attachmentSegments;
+        this.attachmentSegmentBytes = attachmentSegmentBytes;
+        this.journalPath = journalPath;
+        this.journalFsyncIntervalMillis = journalFsyncIntervalMillis;
+        this.journalCompactThresholdBytes = journalCompactThresholdBytes;
+        this.yamlSaveIntervalMillis = yamlSaveIntervalMillis;
+        this.kvPath = kvPath;
+        this.kvFsyncIntervalMillis = kvFsyncIntervalMillis;
+        this.kvSegmentBytes = kvSegmentBytes;
+        this.archiveEnabled = archiveEnabled;
+        this.archivePath = archivePath;
+        this.archiveBatchSize = archiveBatchSize;
+        this.archiveFlushIntervalMillis = archiveFlushIntervalMillis;
+        this.mailingStatusPath = mailingStatusPath;
+        this.mailCacheEnabled = mailCacheEnabled;
+        this.mailCacheMaxEntries = mailCacheMaxEntries;
+        this.mailCacheMaxBytes = mailCacheMaxBytes;
+        this.attachmentCacheBytes = attachmentCacheBytes;
     }
 
     public static StorageSettings load(JavaPlugin plugin) {
@@ -60,8 +126,44 @@ public final class StorageSettings {
         } catch (IOException e) {
             plugin.getLogger().warning("Could not create directories for SQLite database: " + e.getMessage());
         }
-        
-        return new StorageSettings(backend, sqlitePath);
+        int readerConnections = Math.max(1, yaml.getInt("storage.sqlite.reader-connections", 4));
+        long groupCommitMillis = Math.max(0L, yaml.getLong("storage.sqlite.group-commit-window-ms", 2L));
+        Path attachmentPath = plugin.getDataFolder().toPath().resolve("attachments");
+        boolean attachmentSegments = yaml.getBoolean("storage.sqlite.attachment-segments.enabled", false);
+        long attachmentSegmentBytes = Math.max(1L,
+                yaml.getLong("storage.sqlite.attachment-segments.segment-size-mb", 64L)) * 1024L * 1024L;
+        String mailingStatusFile = yaml.getString("storage.sqlite.mailing-status-file", "mailing-status.db");
+        Path mailingStatusPath = mailingStatusFile == null || mailingStatusFile.isBlank()
+                ? sqlitePath
+                : plugin.getDataFolder().toPath().resolve(mailingStatusFile);
+
+        Path journalPath = plugin.getDataFolder().toPath().resolve("journal");
+        long fsyncIntervalMillis = Math.max(1L, yaml.getLong("storage.journal.fsync-interval-ms", 50L));
+        long compactThresholdBytes = Math.max(1L, yaml.getLong("storage.journal.compact-after-mb", 8L)) * 1024L * 1024L;
+
+        long yamlSaveIntervalMillis = Math.max(0L, yaml.getLong("storage.yaml.save-interval-ms", 1000L));
+
+        Path kvPath = plugin.getDataFolder().toPath().resolve("kv");
+        long kvFsyncIntervalMillis = Math.max(1L, yaml.getLong("storage.kv.fsync-interval-ms", 50L));
+        long kvSegmentBytes = Math.max(1L, yaml.getLong("storage.kv.segment-size-mb", 16L)) * 1024L * 1024L;
+
+        boolean archiveEnabled = yaml.getBoolean("storage.archive.enabled", false);
+        Path archivePath = plugin.getDataFolder().toPath().resolve("archive.db");
+        int archiveBatchSize = Math.max(1, yaml.getInt("storage.archive.batch-size", 500));
+        long archiveFlushIntervalMillis = Math.max(1L, yaml.getLong("storage.archive.flush-interval-ms", 2000L));
+
+        boolean mailCacheEnabled = yaml.getBoolean("storage.cache.enabled", true);
+        int mailCacheMaxEntries = Math.max(1, yaml.getInt("storage.cache.max-entries", 2000));
+        long mailCacheMaxBytes = Math.max(1L, yaml.getLong("storage.cache.max-size-mb", 16L)) * 1024L * 1024L;
+        long attachmentCacheBytes = Math.max(0L, yaml.getLong("storage.cache.attachments-mb", 32L)) * 1024L * 1024L;
+
+        return new StorageSettings(backend, sqlitePath, readerConnections, groupCommitMillis,
+                attachmentPath, attachmentSegments, attachmentSegmentBytes,
+                journalPath, fsyncIntervalMillis, compactThresholdBytes, yamlSaveIntervalMillis,
+                kvPath, kvFsyncIntervalMillis, kvSegmentBytes,
+                archiveEnabled, archivePath, archiveBatchSize, archiveFlushIntervalMillis,
+                mailingStatusPath, mailCacheEnabled, mailCacheMaxEntries, mailCacheMaxBytes,
+                attachmentCacheBytes);
     }
 
     public BackendType backendType() {
@@ -71,4 +173,95 @@ public final class StorageSettings {
     public Path sqlitePath() {
         return sqlitePath;
     }
+
+    public int sqliteReaderConnections() {
+        return sqliteReaderConnections;
+    }
+
+    public long sqliteGroupCommitMillis() {
+        return sqliteGroupCommitMillis;
+    }
+
+    public Path attachmentPath() {
+        return attachmentPath;
+    }
+
+    public boolean attachmentSegments() {
+        return attachmentSegments;
+    }
+
+    public long attachmentSegmentBytes() {
+        return attachmentSegmentBytes;
+    }
+
+    public Path journalPath() {
+        return journalPath;
+    }
+
+    public long journalFsyncIntervalMillis() {
+        return journalFsyncIntervalMillis;
+    }
+
+    public long journalCompactThresholdBytes() {
+        return journalCompactThresholdBytes;
+    }
+
+    public long yamlSaveIntervalMillis() {
+        return yamlSaveIntervalMillis;
+    }
+
+    public Path kvPath() {
+        return kvPath;
+    }
+
+    public long kvFsyncIntervalMillis() {
+        return kvFsyncIntervalMillis;
+    }
+
+    public long kvSegmentBytes() {
+        return kvSegmentBytes;
+    }
+
+    public boolean archiveEnabled() {
+        return archiveEnabled;
+    }
+
+    public Path archivePath() {
+        return archivePath;
+    }
+
+    public int archiveBatchSize() {
+        return archiveBatchSize;
+    }
+
+    public long archiveFlushIntervalMillis() {
+        return archiveFlushIntervalMillis;
+    }
+
+    /**
+     * Database file for mailing status; equal to {@link #sqlitePath()} when
+     * status shares the mail database.
+     */
+    public Path mailingStatusPath() {
+        return mailingStatusPath;
+    }
+
+    public boolean mailCacheEnabled() {
+        return mailCacheEnabled;
+    }
+
+    public int mailCacheMaxEntries() {
+        return mailCacheMaxEntries;
+    }
+
+    public long mailCacheMaxBytes() {
+        return mailCacheMaxBytes;
+    }
+
+    /**
+     * Heap budget for deserialized attachments; 0 disables the attachment cache.
+     */
+    public long attachmentCacheBytes() {
+        return attachmentCacheBytes;
+    }
 }
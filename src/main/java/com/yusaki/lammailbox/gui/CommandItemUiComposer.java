@@ -5,7 +5,6 @@ import com.yusaki.lammailbox.model.CommandItem;
 import com.yusaki.lammailbox.session.MailCreationSession;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -58,9 +57,9 @@ final class CommandItemUiComposer {
 
     ItemStack createCommandItemsButton(MailCreationSession session) {
         String basePath = "gui.create-mail.items.command-block";
-        Material material = resolveMaterial(basePath + ".material", Material.COMMAND_BLOCK);
+        GuiLayout.Item button = layout().item(basePath);
 
-        ItemStack item = new ItemStack(material);
+        ItemStack item = new ItemStack(button.material(Material.COMMAND_BLOCK));
         ItemMeta meta = item.getItemMeta();
         if (meta == null) {
             return item;
@@ -70,7 +69,7 @@ final class CommandItemUiComposer {
                 plugin.placeholders("count", String.valueOf(session.getCommandItems().size())));
         meta.setDisplayName(name);
 
-        List<String> lore = config().getStringList(basePath + ".lore").stream()
+        List<String> lore = button.rawLore().stream()
                 .map(line -> plugin.applyPlaceholderVariants(line,
                         "count",
                         String.valueOf(session.getCommandItems().size())))
@@ -85,13 +84,13 @@ final class CommandItemUiComposer {
         }
 
         meta.setLore(lore);
-        itemStyler.apply(meta, basePath, false);
+        itemStyler.apply(meta, button, false);
         item.setItemMeta(meta);
         return item;
     }
 
     ItemStack buildCommandItemEditorEntry(CommandItem commandItem, int index) {
-        String base = "gui.command-items-editor.items.command-item";
+        GuiLayout.Item entry = layout().item("gui.command-items-editor.items.command-item");
         ItemStack stack = commandItem.toPreviewItem(plugin);
         ItemMeta meta = stack.getItemMeta();
         if (meta == null) {
@@ -102,35 +101,28 @@ final class CommandItemUiComposer {
         if (meta.hasLore() && meta.getLore() != null) {
             lore.addAll(meta.getLore());
         }
-        appendDetailLines(lore, config().getString(base + ".command-header", "&7Commands:"), commandItem.commands(), 5, true);
-        appendActionInstructions(lore, base);
+        appendDetailLines(lore, entry.text("command-header", "&7Commands:"), commandItem.commands(), 5, true);
+        appendActionInstructions(lore, entry);
 
         meta.setLore(lore);
         if (!meta.hasCustomModelData()) {
-            itemStyler.apply(meta, base, false);
+            itemStyler.apply(meta, entry, false);
         }
         meta.getPersistentDataContainer().set(commandItemIndexKey, PersistentDataType.INTEGER, index);
         stack.setItemMeta(meta);
         return stack;
     }
 
-    ItemStack buildEditorStaticButton(String path, String action) {
-        String materialName = config().getString(path + ".material", "BARRIER");
-        Material material = Material.matchMaterial(materialName);
-        if (material == null) {
-            material = Material.BARRIER;
-        }
-        ItemStack item = new ItemStack(material);
+    ItemStack buildEditorStaticButton(GuiLayout.Item button, String action) {
+        ItemStack item = new ItemStack(button.material(Material.BARRIER));
         ItemMeta meta = item.getItemMeta();
         if (meta == null) {
             return item;
         }
 
-        meta.setDisplayName(plugin.legacy(config().getString(path + ".name", "&c" + action)));
-        meta.setLore(config().getStringList(path + ".lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
-        itemStyler.apply(meta, path);
+        meta.setDisplayName(button.rawName() != null ? button.name() : plugin.legacy("&c" + action));
+        meta.setLore(button.lore());
+        itemStyler.apply(meta, button);
         meta.getPersistentDataContainer().set(commandItemActionKey, PersistentDataType.STRING, action);
         item.setItemMeta(meta);
         return item;
@@ -141,27 +133,20 @@ final class CommandItemUiComposer {
                             String action,
                             Map<String, String> placeholders,
                             CommandItem.Builder draft) {
-        if (!config().getBoolean(path + ".enabled", true)) {
+        GuiLayout.Item button = layout().item(path);
+        if (!button.enabled()) {
             return;
         }
 
-        int slot = config().getInt(path + ".slot", 0);
-        Material material = Material.matchMaterial(config().getString(path + ".material", "BOOK"));
-        if (material == null) {
-            material = Material.BOOK;
-        }
-
-        ItemStack item = new ItemStack(material);
+        ItemStack item = new ItemStack(button.material(Material.BOOK));
         ItemMeta meta = item.getItemMeta();
         if (meta == null) {
             return;
         }
 
-        String name = config().getString(path + ".name", "&eEdit");
-        meta.setDisplayName(plugin.legacy(applyPlaceholders(name, placeholders)));
+        meta.setDisplayName(plugin.legacy(applyPlaceholders(button.rawName("&eEdit"), placeholders)));
 
-        List<String> loreTemplate = config().getStringList(path + ".lore");
-        List<String> lore = loreTemplate.stream()
+        List<String> lore = button.rawLore().stream()
                 .map(line -> applyDraftPlaceholders(line, placeholders, draft))
                 .map(plugin::legacy)
                 .collect(Collectors.toList());
@@ -180,10 +165,10 @@ final class CommandItemUiComposer {
         }
 
         meta.getPersistentDataContainer().set(commandItemActionKey, PersistentDataType.STRING, action);
-        itemStyler.apply(meta, path);
+        itemStyler.apply(meta, button);
 
         item.setItemMeta(meta);
-        inv.setItem(slot, item);
+        inv.setItem(button.slot(0), item);
     }
 
     void openCommandItemsEditor(Inventory inv, MailCreationSession session, List<Integer> slots) {
@@ -227,19 +212,19 @@ final class CommandItemUiComposer {
     }
 
     private void applyLegacyOverrides(ItemStack base, String commandPath, CommandItem commandItem) {
-        String legacyPath = commandPath.replace("command-item", "command-legacy");
+        GuiLayout.Item legacy = layout().item(commandPath.replace("command-item", "command-legacy"));
         ItemMeta meta = base.getItemMeta();
         if (meta == null) {
             return;
         }
 
         Map<String, String> placeholders = createCommandItemPlaceholders(commandItem);
-        String overrideName = config().getString(legacyPath + ".name");
+        String overrideName = legacy.rawName();
         if (overrideName != null && !overrideName.isBlank()) {
             meta.setDisplayName(plugin.legacy(applyPlaceholders(overrideName, placeholders)));
         }
 
-        List<String> configuredLore = config().getStringList(legacyPath + ".lore");
+        List<String> configuredLore = legacy.rawLore();
         if (!configuredLore.isEmpty()) {
             List<String> lore = configuredLore.stream()
                     .map(line -> plugin.legacy(applyPlaceholders(line, placeholders)))
@@ -272,17 +257,14 @@ final class CommandItemUiComposer {
         return result;
     }
 
-    private void appendActionInstructions(List<String> lore, String base) {
-        List<String> actionLore = config().getStringList(base + ".lore");
-        if (actionLore.isEmpty()) {
+    private void appendActionInstructions(List<String> lore, GuiLayout.Item entry) {
+        if (entry.lore().isEmpty()) {
             return;
         }
         if (!lore.isEmpty()) {
             lore.add(plugin.legacy("&7"));
         }
-        lore.addAll(actionLore.stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
+        lore.addAll(entry.lore());
     }
 
     void appendDetailLines(List<String> target,
@@ -355,16 +337,7 @@ final class CommandItemUiComposer {
         return main;
     }
 
-    private Material resolveMaterial(String materialPath, Material fallback) {
-        String materialKey = config().getString(materialPath);
-        if (materialKey == null || materialKey.isBlank()) {
-            return fallback;
-        }
-        Material match = Material.matchMaterial(materialKey);
-        return match != null ? match : fallback;
-    }
-
-    private FileConfiguration config() {
-        return plugin.getConfig();
+    private GuiLayout layout() {
+        return plugin.getGuiLayout();
     }
 }
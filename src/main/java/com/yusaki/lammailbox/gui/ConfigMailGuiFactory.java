@@ -3,12 +3,11 @@ package com.yusaki.lammailbox.gui;
 import com.yusaki.lammailbox.LamMailBox;
 import com.yusaki.lammailbox.model.CommandItem;
 import com.yusaki.lammailbox.repository.MailRecord;
+import com.yusaki.lammailbox.repository.MailRepository;
 import com.yusaki.lammailbox.session.MailCreationSession;
 import com.yusaki.lammailbox.util.ItemSerialization;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -52,59 +51,7 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         this.navigationHelper = new GuiNavigationHelper(plugin, actionKey, itemStyler);
         this.paginationBuilder = new PaginationBuilder(plugin, actionKey, decorationKey, itemStyler);
         this.commandItemUi = new CommandItemUiComposer(plugin, itemStyler, commandItemIndexKey, commandItemActionKey);
-        this.mailCreationBuilder = new MailCreationViewBuilder(plugin, itemStyler, navigationHelper, commandItemUi, this::addDecorations, this::isEnabled);
-    }
-
-    private ItemStack styledCommandIcon(String basePath, ItemStack existing, int commandCount, String summary) {
-        ItemStack stack = resolveCommandIconStack(basePath, existing);
-        ItemMeta meta = stack.getItemMeta();
-        if (meta == null) {
-            return stack;
-        }
-
-        applyCommandIconText(meta, basePath, commandCount, summary);
-        stack.setItemMeta(meta);
-        return stack;
-    }
-
-    private ItemStack resolveCommandIconStack(String basePath, ItemStack existing) {
-        ItemStack stack = existing != null ? existing.clone() : null;
-        String materialName = config().getString(basePath + ".material");
-        if (materialName != null && !materialName.isBlank()) {
-            try {
-                Material material = Material.valueOf(materialName.trim().toUpperCase(Locale.ROOT));
-                if (stack == null || stack.getType() != material) {
-                    stack = new ItemStack(material);
-                }
-            } catch (IllegalArgumentException ignored) {
-                // Fall back to default below
-            }
-        }
-        if (stack == null) {
-            stack = new ItemStack(Material.COMMAND_BLOCK);
-        }
-        return stack;
-    }
-
-    private void applyCommandIconText(ItemMeta meta, String basePath, int commandCount, String summary) {
-        String displayName = config().getString(basePath + ".name");
-        if (displayName != null && !displayName.isBlank()) {
-            meta.setDisplayName(plugin.legacy(format(displayName,
-                    "count", String.valueOf(commandCount),
-                    "summary", summary)));
-        }
-
-        List<String> rawLore = config().getStringList(basePath + ".lore");
-        if (rawLore == null || rawLore.isEmpty()) {
-            rawLore = Collections.singletonList("&7Contains hidden console actions");
-        }
-        List<String> lore = rawLore.stream()
-                .map(line -> plugin.legacy(format(line,
-                        "count", String.valueOf(commandCount),
-                        "summary", summary)))
-                .collect(Collectors.toList());
-        meta.setLore(lore);
-        itemStyler.apply(meta, basePath);
+        this.mailCreationBuilder = new MailCreationViewBuilder(plugin, itemStyler, navigationHelper, commandItemUi, this::addDecorations);
     }
 
     private void placeItemsAndCommands(Inventory inv,
@@ -114,8 +61,8 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
                                        String commandPath,
                                        int currentPage,
                                        int slotsPerPage) {
-        List<Integer> itemSlots = config().getIntegerList(itemPath + ".slots");
-        if (itemSlots == null || itemSlots.isEmpty()) {
+        List<Integer> itemSlots = item(itemPath).slots();
+        if (itemSlots.isEmpty()) {
             return;
         }
 
@@ -177,8 +124,8 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
     @Override
     public Inventory createMailbox(Player viewer) {
-        int size = config().getInt("gui.main.size");
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString("gui.main.title")));
+        GuiLayout.Screen screen = screen("gui.main");
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), screen.title());
         addDecorations(inv, "gui.main");
 
         addCreateMailButton(inv, viewer, viewer);
@@ -189,9 +136,9 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
     @Override
     public Inventory createMailboxAs(Player admin, Player target) {
-        int size = config().getInt("gui.main.size");
-        String title = config().getString("gui.main.title") + " &7(as " + target.getName() + ")";
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(title));
+        GuiLayout.Screen screen = screen("gui.main");
+        String title = screen.rawTitle() + " &7(as " + target.getName() + ")";
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), plugin.legacy(title));
         addDecorations(inv, "gui.main");
 
         addCreateMailButton(inv, admin, target);
@@ -202,13 +149,12 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
     @Override
     public Inventory createSentMailbox(Player viewer) {
-        int size = config().getInt("gui.sent-mail.size");
-        String title = config().getString("gui.sent-mail.title");
+        GuiLayout.Screen screen = screen("gui.sent-mail");
         String viewingAs = plugin.getViewingAsPlayer().get(viewer.getUniqueId());
-        if (viewingAs != null) {
-            title += " &7(as " + viewingAs + ")";
-        }
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(title));
+        String title = viewingAs != null
+                ? plugin.legacy(screen.rawTitle() + " &7(as " + viewingAs + ")")
+                : screen.title();
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), title);
         addDecorations(inv, "gui.sent-mail");
 
         addBackButton(inv);
@@ -218,8 +164,8 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
     @Override
     public Inventory createSentMailView(Player viewer, String mailId) {
-        int size = config().getInt("gui.sent-mail-view.size");
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString("gui.sent-mail-view.title")));
+        GuiLayout.Screen screen = screen("gui.sent-mail-view");
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), screen.title());
         addDecorations(inv, "gui.sent-mail-view");
 
         Optional<MailRecord> recordOpt = plugin.getMailRepository().findRecord(mailId);
@@ -231,38 +177,39 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         String receiver = Optional.ofNullable(record.receiver()).orElse("");
         String message = record.message().replace("\\n", "\n");
 
-        if (isEnabled("gui.sent-mail-view.items.receiver-head")) {
-            ItemStack head = new ItemStack(Material.valueOf(config().getString("gui.sent-mail-view.items.receiver-head.material")));
+        GuiLayout.Item receiverHead = item("gui.sent-mail-view.items.receiver-head");
+        if (receiverHead.enabled() && receiverHead.material() != null) {
+            ItemStack head = new ItemStack(receiverHead.material());
             SkullMeta headMeta = (SkullMeta) head.getItemMeta();
-            headMeta.setDisplayName(plugin.legacy(format(
-                    config().getString("gui.sent-mail-view.items.receiver-head.name"),
-                    "receiver",
-                    receiver)));
+            headMeta.setDisplayName(plugin.legacy(format(receiverHead.rawName(), "receiver", receiver)));
             // Only set owning player if receiver is not empty and contains valid characters
             if (receiver != null && !receiver.trim().isEmpty() && receiver.matches("^[a-zA-Z0-9_]{1,16}$")) {
                 headMeta.setOwningPlayer(Bukkit.getOfflinePlayer(receiver));
             }
-            itemStyler.apply(headMeta, "gui.sent-mail-view.items.receiver-head", false);
+            itemStyler.apply(headMeta, receiverHead, false);
             head.setItemMeta(headMeta);
-            inv.setItem(config().getInt("gui.sent-mail-view.items.receiver-head.slot"), head);
+            inv.setItem(receiverHead.slot(0), head);
         }
 
-        if (isEnabled("gui.sent-mail-view.items.message")) {
-            ItemStack messageItem = new ItemStack(Material.valueOf(config().getString("gui.sent-mail-view.items.message.material")));
+        GuiLayout.Item messageButton = item("gui.sent-mail-view.items.message");
+        if (messageButton.enabled() && messageButton.material() != null) {
+            ItemStack messageItem = new ItemStack(messageButton.material());
             ItemMeta messageMeta = messageItem.getItemMeta();
-            messageMeta.setDisplayName(plugin.legacy(config().getString("gui.sent-mail-view.items.message.name")));
+            messageMeta.setDisplayName(messageButton.name());
             List<String> messageLore = Arrays.stream(message.split("\n"))
                     .map(line -> plugin.legacy("&f" + line))
                     .collect(Collectors.toList());
             messageMeta.setLore(messageLore);
-            itemStyler.apply(messageMeta, "gui.sent-mail-view.items.message", false);
+            itemStyler.apply(messageMeta, messageButton, false);
             messageItem.setItemMeta(messageMeta);
-            inv.setItem(config().getInt("gui.sent-mail-view.items.message.slot"), messageItem);
+            inv.setItem(messageButton.slot(0), messageItem);
         }
 
-        List<ItemStack> items = plugin.getMailRepository().loadMailItems(mailId);
-        List<Integer> itemSlots = config().getIntegerList("gui.sent-mail-view.items.items-display.slots");
-        int slotsPerPage = itemSlots != null && !itemSlots.isEmpty() ? itemSlots.size() : 21;
+        List<ItemStack> items = record.itemCount() == 0
+                ? new ArrayList<>()
+                : plugin.getMailRepository().loadMailItems(mailId);
+        List<Integer> itemSlots = item("gui.sent-mail-view.items.items-display").slots();
+        int slotsPerPage = !itemSlots.isEmpty() ? itemSlots.size() : 21;
         placeItemsAndCommands(inv,
                 items,
                 record.commandItems(),
@@ -273,19 +220,18 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
         navigationHelper.placeBackButton(inv, "gui.sent-mail-view.items.back-button", "sent-mail-view-back");
 
+        GuiLayout.Item delete = item("gui.sent-mail-view.items.delete-button");
         if (viewer.hasPermission(config().getString("settings.permissions.delete"))
-                && isEnabled("gui.sent-mail-view.items.delete-button")) {
-            ItemStack deleteButton = new ItemStack(Material.valueOf(config().getString("gui.sent-mail-view.items.delete-button.material")));
+                && delete.enabled() && delete.material() != null) {
+            ItemStack deleteButton = new ItemStack(delete.material());
             ItemMeta deleteMeta = deleteButton.getItemMeta();
-            deleteMeta.setDisplayName(plugin.legacy(config().getString("gui.sent-mail-view.items.delete-button.name")));
-            deleteMeta.setLore(config().getStringList("gui.sent-mail-view.items.delete-button.lore").stream()
-                    .map(plugin::legacy)
-                    .collect(Collectors.toList()));
+            deleteMeta.setDisplayName(delete.name());
+            deleteMeta.setLore(delete.lore());
             deleteMeta.getPersistentDataContainer().set(mailIdKey,
                     PersistentDataType.STRING, mailId);
-            itemStyler.apply(deleteMeta, "gui.sent-mail-view.items.delete-button");
+            itemStyler.apply(deleteMeta, delete);
             deleteButton.setItemMeta(deleteMeta);
-            inv.setItem(config().getInt("gui.sent-mail-view.items.delete-button.slot"), deleteButton);
+            inv.setItem(delete.slot(0), deleteButton);
         }
 
         return inv;
@@ -294,8 +240,8 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
 
     @Override
     public Inventory createMailView(Player viewer, String mailId) {
-        int size = config().getInt("gui.mail-view.size");
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString("gui.mail-view.title")));
+        GuiLayout.Screen screen = screen("gui.mail-view");
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), screen.title());
         addDecorations(inv, "gui.mail-view");
 
         Optional<MailRecord> recordOpt = plugin.getMailRepository().findRecord(mailId);
@@ -307,44 +253,45 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         String sender = Optional.ofNullable(record.sender()).orElse("Console");
         String message = record.message().replace("\\n", "\n");
 
-        if (isEnabled("gui.mail-view.items.sender-head")) {
-            ItemStack head = new ItemStack(Material.valueOf(config().getString("gui.mail-view.items.sender-head.material")));
+        GuiLayout.Item senderHead = item("gui.mail-view.items.sender-head");
+        if (senderHead.enabled() && senderHead.material() != null) {
+            ItemStack head = new ItemStack(senderHead.material());
             SkullMeta headMeta = (SkullMeta) head.getItemMeta();
-            headMeta.setDisplayName(plugin.legacy(format(
-                    config().getString("gui.mail-view.items.sender-head.name"),
-                    "sender",
-                    sender)));
+            headMeta.setDisplayName(plugin.legacy(format(senderHead.rawName(), "sender", sender)));
             // Only set owning player if sender is not empty and contains valid characters
             if (sender != null && !sender.trim().isEmpty() && sender.matches("^[a-zA-Z0-9_]{1,16}$")) {
                 headMeta.setOwningPlayer(Bukkit.getOfflinePlayer(sender));
             }
-            itemStyler.apply(headMeta, "gui.mail-view.items.sender-head", false);
+            itemStyler.apply(headMeta, senderHead, false);
             head.setItemMeta(headMeta);
-            inv.setItem(config().getInt("gui.mail-view.items.sender-head.slot"), head);
+            inv.setItem(senderHead.slot(0), head);
         }
 
-        if (isEnabled("gui.mail-view.items.message")) {
-            ItemStack messageItem = new ItemStack(Material.valueOf(config().getString("gui.mail-view.items.message.material")));
+        GuiLayout.Item messageButton = item("gui.mail-view.items.message");
+        if (messageButton.enabled() && messageButton.material() != null) {
+            ItemStack messageItem = new ItemStack(messageButton.material());
             ItemMeta messageMeta = messageItem.getItemMeta();
-            messageMeta.setDisplayName(plugin.legacy(config().getString("gui.mail-view.items.message.name")));
+            messageMeta.setDisplayName(messageButton.name());
             List<String> messageLore = Arrays.stream(message.split("\n"))
                     .map(line -> plugin.legacy("&f" + line))
                     .collect(Collectors.toList());
             messageMeta.setLore(messageLore);
-            itemStyler.apply(messageMeta, "gui.mail-view.items.message", false);
+            itemStyler.apply(messageMeta, messageButton, false);
             messageItem.setItemMeta(messageMeta);
-            inv.setItem(config().getInt("gui.mail-view.items.message.slot"), messageItem);
+            inv.setItem(messageButton.slot(0), messageItem);
         }
 
-        List<ItemStack> items = plugin.getMailRepository().loadMailItems(mailId);
+        List<ItemStack> items = record.itemCount() == 0
+                ? new ArrayList<>()
+                : plugin.getMailRepository().loadMailItems(mailId);
 
         // Get current page for this player (default to 1)
         int currentPage = plugin.getMailViewPages().getOrDefault(viewer.getUniqueId(), 1);
 
         // Calculate pagination
         int totalElements = items.size() + record.commandItems().size();
-        List<Integer> itemSlots = config().getIntegerList("gui.mail-view.items.items-display.slots");
-        int slotsPerPage = itemSlots != null && !itemSlots.isEmpty() ? itemSlots.size() : 21;
+        List<Integer> itemSlots = item("gui.mail-view.items.items-display").slots();
+        int slotsPerPage = !itemSlots.isEmpty() ? itemSlots.size() : 21;
         int totalPages = (totalElements + slotsPerPage - 1) / slotsPerPage; // Ceiling division
 
         // Ensure current page is valid
@@ -360,39 +307,34 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
                 currentPage,
                 slotsPerPage);
 
-        int claimSlotConfig = config().getInt("gui.mail-view.items.claim-button.slot");
-        Integer claimSlot = isEnabled("gui.mail-view.items.claim-button") ? claimSlotConfig : null;
-
-        int dismissSlotConfig = config().getInt("gui.mail-view.items.dismiss-button.slot", claimSlotConfig);
-        Integer dismissSlot = isEnabled("gui.mail-view.items.dismiss-button") ? dismissSlotConfig : null;
+        GuiLayout.Item claim = item("gui.mail-view.items.claim-button");
+        GuiLayout.Item dismiss = item("gui.mail-view.items.dismiss-button");
+        Integer claimSlot = claim.enabled() ? claim.slot(0) : null;
+        Integer dismissSlot = dismiss.enabled() ? dismiss.slot(claim.slot(0)) : null;
 
         // Add pagination buttons
         addPaginationButtons(inv, mailId, currentPage, totalPages, claimSlot, dismissSlot);
 
-        if (claimSlot != null) {
-            ItemStack claimButton = new ItemStack(Material.valueOf(config().getString("gui.mail-view.items.claim-button.material")));
+        if (claimSlot != null && claim.material() != null) {
+            ItemStack claimButton = new ItemStack(claim.material());
             ItemMeta claimMeta = claimButton.getItemMeta();
-            claimMeta.setDisplayName(plugin.legacy(config().getString("gui.mail-view.items.claim-button.name")));
-            claimMeta.setLore(config().getStringList("gui.mail-view.items.claim-button.lore").stream()
-                    .map(plugin::legacy)
-                    .collect(Collectors.toList()));
+            claimMeta.setDisplayName(claim.name());
+            claimMeta.setLore(claim.lore());
             claimMeta.getPersistentDataContainer().set(mailIdKey,
                     PersistentDataType.STRING, mailId);
-            itemStyler.apply(claimMeta, "gui.mail-view.items.claim-button");
+            itemStyler.apply(claimMeta, claim);
             claimButton.setItemMeta(claimMeta);
             inv.setItem(claimSlot, claimButton);
         }
 
-        if (dismissSlot != null) {
-            ItemStack dismissButton = new ItemStack(Material.valueOf(config().getString("gui.mail-view.items.dismiss-button.material")));
+        if (dismissSlot != null && dismiss.material() != null) {
+            ItemStack dismissButton = new ItemStack(dismiss.material());
             ItemMeta dismissMeta = dismissButton.getItemMeta();
-            dismissMeta.setDisplayName(plugin.legacy(config().getString("gui.mail-view.items.dismiss-button.name")));
-            dismissMeta.setLore(config().getStringList("gui.mail-view.items.dismiss-button.lore").stream()
-                    .map(plugin::legacy)
-                    .collect(Collectors.toList()));
+            dismissMeta.setDisplayName(dismiss.name());
+            dismissMeta.setLore(dismiss.lore());
             dismissMeta.getPersistentDataContainer().set(mailIdKey,
                     PersistentDataType.STRING, mailId);
-            itemStyler.apply(dismissMeta, "gui.mail-view.items.dismiss-button");
+            itemStyler.apply(dismissMeta, dismiss);
             dismissButton.setItemMeta(dismissMeta);
             inv.setItem(dismissSlot, dismissButton);
         }
@@ -424,85 +366,75 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
     }
 
     private void addCreateMailButton(Inventory inv, Player viewer, Player target) {
-        if (!isEnabled("gui.main.items.create-mail")) {
+        GuiLayout.Item createMail = item("gui.main.items.create-mail");
+        if (!createMail.enabled() || createMail.material() == null) {
             return;
         }
-        ItemStack createBook = new ItemStack(Material.valueOf(config().getString("gui.main.items.create-mail.material")));
+        ItemStack createBook = new ItemStack(createMail.material());
         ItemMeta bookMeta = createBook.getItemMeta();
-        String baseName = config().getString("gui.main.items.create-mail.name", "");
-        bookMeta.setDisplayName(plugin.legacy(baseName));
-        List<String> bookLore = new ArrayList<>(config().getStringList("gui.main.items.create-mail.lore"));
+        bookMeta.setDisplayName(createMail.name());
+        List<String> bookLore = new ArrayList<>(createMail.lore());
 
         String viewingAs = plugin.getViewingAsPlayer().get(viewer.getUniqueId());
         if (viewingAs != null && !viewer.getUniqueId().equals(target.getUniqueId())) {
-            String disabledNameFormat = config().getString("gui.main.items.create-mail.disabled.name-format", "&c&l%name%");
-            bookMeta.setDisplayName(plugin.legacy(format(disabledNameFormat, "name", baseName)));
-            List<String> disabledLore = config().getStringList("gui.main.items.create-mail.disabled.lore");
-            if (!disabledLore.isEmpty()) {
-                bookLore.addAll(disabledLore);
-            } else {
-                bookLore.add("&c&l⚠ DISABLED");
-                bookLore.add("&7Cannot create mail as another player");
+            String disabledNameFormat = createMail.text("disabled.name-format", "&c&l%name%");
+            bookMeta.setDisplayName(plugin.legacy(format(disabledNameFormat, "name", createMail.rawName(""))));
+            List<String> disabledLore = createMail.list("disabled.lore");
+            if (disabledLore.isEmpty()) {
+                disabledLore = List.of("&c&l⚠ DISABLED", "&7Cannot create mail as another player");
             }
+            disabledLore.forEach(line -> bookLore.add(plugin.legacy(line)));
         }
 
-        bookMeta.setLore(bookLore.stream().map(plugin::legacy).collect(Collectors.toList()));
-        itemStyler.apply(bookMeta, "gui.main.items.create-mail");
+        bookMeta.setLore(bookLore);
+        itemStyler.apply(bookMeta, createMail);
         createBook.setItemMeta(bookMeta);
-        inv.setItem(config().getInt("gui.main.items.create-mail.slot"), createBook);
+        inv.setItem(createMail.slot(0), createBook);
     }
 
     private void addSentMailButton(Inventory inv) {
-        if (!isEnabled("gui.main.items.sent-mail")) {
+        GuiLayout.Item sentMail = item("gui.main.items.sent-mail");
+        if (!sentMail.enabled() || sentMail.material() == null) {
             return;
         }
-        ItemStack sentMailButton = new ItemStack(Material.valueOf(config().getString("gui.main.items.sent-mail.material")));
+        ItemStack sentMailButton = new ItemStack(sentMail.material());
         ItemMeta sentMailMeta = sentMailButton.getItemMeta();
-        sentMailMeta.setDisplayName(plugin.legacy(config().getString("gui.main.items.sent-mail.name")));
-        sentMailMeta.setLore(config().getStringList("gui.main.items.sent-mail.lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
-        itemStyler.apply(sentMailMeta, "gui.main.items.sent-mail");
+        sentMailMeta.setDisplayName(sentMail.name());
+        sentMailMeta.setLore(sentMail.lore());
+        itemStyler.apply(sentMailMeta, sentMail);
         sentMailButton.setItemMeta(sentMailMeta);
-        inv.setItem(config().getInt("gui.main.items.sent-mail.slot"), sentMailButton);
+        inv.setItem(sentMail.slot(0), sentMailButton);
     }
 
     private void addBackButton(Inventory inv) {
-        if (!isEnabled("gui.sent-mail.items.back-button")) {
+        GuiLayout.Item back = item("gui.sent-mail.items.back-button");
+        if (!back.enabled() || back.material() == null) {
             return;
         }
-        ItemStack backButton = new ItemStack(Material.valueOf(config().getString("gui.sent-mail.items.back-button.material")));
+        ItemStack backButton = new ItemStack(back.material());
         ItemMeta backMeta = backButton.getItemMeta();
-        backMeta.setDisplayName(plugin.legacy(config().getString("gui.sent-mail.items.back-button.name")));
-        backMeta.setLore(config().getStringList("gui.sent-mail.items.back-button.lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
-        itemStyler.apply(backMeta, "gui.sent-mail.items.back-button");
+        backMeta.setDisplayName(back.name());
+        backMeta.setLore(back.lore());
+        itemStyler.apply(backMeta, back);
         backButton.setItemMeta(backMeta);
-        inv.setItem(config().getInt("gui.sent-mail.items.back-button.slot"), backButton);
+        inv.setItem(back.slot(0), backButton);
     }
 
     private void loadPlayerMails(Player viewer, Player target, Inventory inv) {
-        if (!isEnabled("gui.main.items.mail-display")) {
+        GuiLayout.Item mailDisplay = item("gui.main.items.mail-display");
+        if (!mailDisplay.enabled()) {
             return;
         }
 
-        List<Integer> mailSlots = config().getIntegerList("gui.main.items.mail-display.slots");
-        if (mailSlots == null || mailSlots.isEmpty()) {
+        List<Integer> mailSlots = mailDisplay.slots();
+        if (mailSlots.isEmpty()) {
             return;
         }
 
         String targetName = target.getName();
-        List<MailRecord> records = plugin.getMailRepository().listMailIds().stream()
-                .map(id -> plugin.getMailRepository().findRecord(id).orElse(null))
-                .filter(Objects::nonNull)
-                .filter(MailRecord::active)
-                .filter(record -> record.canBeClaimedBy(targetName))
-                .sorted(Comparator.comparingLong(MailRecord::sentDate).reversed())
-                .collect(Collectors.toList());
-
+        MailRepository repository = plugin.getMailRepository();
         int slotsPerPage = mailSlots.size();
-        int totalPages = Math.max(1, (records.size() + slotsPerPage - 1) / slotsPerPage);
+        int totalPages = Math.max(1, (plugin.getMailService().countUnreadMail(targetName) + slotsPerPage - 1) / slotsPerPage);
         UUID viewerId = viewer.getUniqueId();
         int currentPage = plugin.getMailboxPages().getOrDefault(viewerId, 1);
         if (currentPage < 1) {
@@ -513,12 +445,17 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         }
         plugin.getMailboxPages().put(viewerId, currentPage);
 
-        int startIndex = (currentPage - 1) * slotsPerPage;
-        int endIndex = Math.min(records.size(), startIndex + slotsPerPage);
+        int pageIndex = currentPage;
+        List<MailRecord> records = plugin.getInboxIndex()
+                .page(targetName, (currentPage - 1) * slotsPerPage, slotsPerPage)
+                .orElseGet(() -> KeysetPager.loadPage(plugin.getMailboxCursors(), viewerId, targetName, pageIndex, slotsPerPage,
+                        (cursor, limit) -> repository.pageActiveMailFor(targetName, cursor, limit)));
 
         int slotIndex = 0;
-        for (int i = startIndex; i < endIndex && slotIndex < mailSlots.size(); i++) {
-            MailRecord record = records.get(i);
+        for (MailRecord record : records) {
+            if (slotIndex >= mailSlots.size()) {
+                break;
+            }
             ItemStack mailItem = createMailItem(record);
             if (mailItem != null) {
                 inv.setItem(mailSlots.get(slotIndex), mailItem);
@@ -527,11 +464,13 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         }
 
         Set<Integer> reservedSlots = new HashSet<>();
-        if (isEnabled("gui.main.items.create-mail")) {
-            reservedSlots.add(config().getInt("gui.main.items.create-mail.slot"));
+        GuiLayout.Item createMail = item("gui.main.items.create-mail");
+        if (createMail.enabled()) {
+            reservedSlots.add(createMail.slot(0));
         }
-        if (isEnabled("gui.main.items.sent-mail")) {
-            reservedSlots.add(config().getInt("gui.main.items.sent-mail.slot"));
+        GuiLayout.Item sentMail = item("gui.main.items.sent-mail");
+        if (sentMail.enabled()) {
+            reservedSlots.add(sentMail.slot(0));
         }
 
         PaginationBuilder.Settings settings = new PaginationBuilder.Settings(
@@ -550,26 +489,22 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
     }
 
     private void loadSentMails(Player viewer, Inventory inv) {
-        if (!isEnabled("gui.sent-mail.items.sent-mail-display")) {
+        GuiLayout.Item sentMailDisplay = item("gui.sent-mail.items.sent-mail-display");
+        if (!sentMailDisplay.enabled()) {
             return;
         }
 
-        List<Integer> mailSlots = config().getIntegerList("gui.sent-mail.items.sent-mail-display.slots");
-        if (mailSlots == null || mailSlots.isEmpty()) {
+        List<Integer> mailSlots = sentMailDisplay.slots();
+        if (mailSlots.isEmpty()) {
             return;
         }
 
         String viewingAs = plugin.getViewingAsPlayer().get(viewer.getUniqueId());
         String targetPlayerName = viewingAs != null ? viewingAs : viewer.getName();
 
-        List<MailRecord> records = plugin.getMailRepository().listMailIdsBySender(targetPlayerName).stream()
-                .map(id -> plugin.getMailRepository().findRecord(id).orElse(null))
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparingLong(MailRecord::sentDate).reversed())
-                .collect(Collectors.toList());
-
+        MailRepository repository = plugin.getMailRepository();
         int slotsPerPage = mailSlots.size();
-        int totalPages = Math.max(1, (records.size() + slotsPerPage - 1) / slotsPerPage);
+        int totalPages = Math.max(1, (repository.countMailBySender(targetPlayerName) + slotsPerPage - 1) / slotsPerPage);
         UUID viewerId = viewer.getUniqueId();
         int currentPage = plugin.getSentMailboxPages().getOrDefault(viewerId, 1);
         if (currentPage < 1) {
@@ -580,12 +515,14 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         }
         plugin.getSentMailboxPages().put(viewerId, currentPage);
 
-        int startIndex = (currentPage - 1) * slotsPerPage;
-        int endIndex = Math.min(records.size(), startIndex + slotsPerPage);
+        List<MailRecord> records = KeysetPager.loadPage(plugin.getSentMailboxCursors(), viewerId, targetPlayerName,
+                currentPage, slotsPerPage, (cursor, limit) -> repository.pageMailBySender(targetPlayerName, cursor, limit));
 
         int slotIndex = 0;
-        for (int i = startIndex; i < endIndex && slotIndex < mailSlots.size(); i++) {
-            MailRecord record = records.get(i);
+        for (MailRecord record : records) {
+            if (slotIndex >= mailSlots.size()) {
+                break;
+            }
             ItemStack mailItem = createSentMailItem(record);
             if (mailItem != null) {
                 inv.setItem(mailSlots.get(slotIndex), mailItem);
@@ -594,8 +531,9 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         }
 
         Set<Integer> reservedSlots = new HashSet<>();
-        if (isEnabled("gui.sent-mail.items.back-button")) {
-            reservedSlots.add(config().getInt("gui.sent-mail.items.back-button.slot"));
+        GuiLayout.Item back = item("gui.sent-mail.items.back-button");
+        if (back.enabled()) {
+            reservedSlots.add(back.slot(0));
         }
 
         PaginationBuilder.Settings settings = new PaginationBuilder.Settings(
@@ -616,27 +554,36 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
     private ItemStack createMailItem(MailRecord record) {
         String itemPath = record.isAdminMail() ? "gui.main.items.admin-mail-display" : "gui.main.items.mail-display";
 
-        if (!isEnabled(itemPath)) {
+        GuiLayout.Item display = item(itemPath);
+        if (!display.enabled() || display.material() == null) {
             return null;
         }
 
-        ItemStack mailItem = new ItemStack(Material.valueOf(config().getString(itemPath + ".material")));
+        ItemStack mailItem = new ItemStack(display.material());
         ItemMeta meta = mailItem.getItemMeta();
-        String displayName = config().getString(itemPath + ".name", "");
+        String displayName = display.rawName("");
         String sender = Optional.ofNullable(record.sender()).orElse("");
         String message = record.message().replace("\\n", "\n");
         long sentAt = record.sentDate();
         long expireAt = record.expireDate() != null ? record.expireDate() : 0L;
 
-        meta.setDisplayName(plugin.legacy(applyMailPlaceholders(displayName, sender, message, sentAt, expireAt)));
+        List<String> loreTemplate = display.rawLore();
+        // Only a template that shows the count pays for it, and only on backends without stored counts.
+        boolean showsItems = displayName.contains("%items%") || loreTemplate.stream().anyMatch(line -> line.contains("%items%"));
+        String items = showsItems ? String.valueOf(plugin.getMailRepository().countMailItems(record)) : "";
+        String commands = String.valueOf(record.commandItemCount());
+
+        meta.setDisplayName(plugin.legacy(applyMailPlaceholders(displayName, sender, message, sentAt, expireAt, items, commands)));
 
-        List<String> loreTemplate = config().getStringList(itemPath + ".lore");
         List<String> lore = new ArrayList<>();
-        for (String line : loreTemplate) {
-            lore.add(plugin.legacy(applyMailPlaceholders(line, sender, message, sentAt, expireAt)));
+        for (int i = 0; i < loreTemplate.size(); i++) {
+            String line = loreTemplate.get(i);
+            lore.add(hasPlaceholders(line)
+                    ? plugin.legacy(applyMailPlaceholders(line, sender, message, sentAt, expireAt, items, commands))
+                    : display.lore().get(i));
         }
 
-        String messagePrefix = config().getString(itemPath + ".message-prefix");
+        String messagePrefix = display.text("message-prefix");
         if (messagePrefix != null && !messagePrefix.isEmpty() && !message.isEmpty()) {
             for (String line : message.split("\n")) {
                 lore.add(plugin.legacy(messagePrefix + line));
@@ -644,29 +591,30 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
         }
 
         meta.setLore(lore);
-        itemStyler.apply(meta, itemPath, false);
+        itemStyler.apply(meta, display, false);
         meta.getPersistentDataContainer().set(mailIdKey, PersistentDataType.STRING, record.id());
         mailItem.setItemMeta(meta);
         return mailItem;
     }
 
     private ItemStack createSentMailItem(MailRecord record) {
-        if (!isEnabled("gui.sent-mail.items.sent-mail-display")) {
+        GuiLayout.Item display = item("gui.sent-mail.items.sent-mail-display");
+        if (!display.enabled() || display.material() == null) {
             return null;
         }
-        ItemStack item = new ItemStack(Material.valueOf(config().getString("gui.sent-mail.items.sent-mail-display.material")));
+        ItemStack item = new ItemStack(display.material());
         ItemMeta meta = item.getItemMeta();
         String receiver = Optional.ofNullable(record.receiver()).orElse("");
         long sentAt = record.sentDate();
         long expireAt = record.expireDate() != null ? record.expireDate() : 0L;
 
-        String displayName = config().getString("gui.sent-mail.items.sent-mail-display.name", "");
+        String displayName = display.rawName("");
         meta.setDisplayName(plugin.legacy(format(displayName,
                 "receiver", receiver,
                 "sent_date", formatDate(sentAt),
                 "expire_date", formatDate(expireAt))));
 
-        List<String> lore = config().getStringList("gui.sent-mail.items.sent-mail-display.lore").stream()
+        List<String> lore = display.rawLore().stream()
                 .map(line -> plugin.legacy(format(line,
                         "receiver", receiver,
                         "sent_date", formatDate(sentAt),
@@ -675,7 +623,7 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
                         "expire", formatDate(expireAt))))
                 .collect(Collectors.toList());
         meta.setLore(lore);
-        itemStyler.apply(meta, "gui.sent-mail.items.sent-mail-display", false);
+        itemStyler.apply(meta, display, false);
         meta.getPersistentDataContainer().set(mailIdKey, PersistentDataType.STRING, record.id());
         item.setItemMeta(meta);
         return item;
@@ -685,14 +633,18 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
                                          String sender,
                                          String message,
                                          long sentAt,
-                                         long expireAt) {
+                                         long expireAt,
+                                         String items,
+                                         String commands) {
         return format(input,
                 "sender", sender,
                 "message", message.replace("\n", " "),
                 "sent", formatDate(sentAt),
                 "sent_date", formatDate(sentAt),
                 "expire", formatDate(expireAt),
-                "expire_date", formatDate(expireAt));
+                "expire_date", formatDate(expireAt),
+                "items", items,
+                "commands", commands);
     }
 
     private String format(String template, String... keyValuePairs) {
@@ -721,55 +673,48 @@ public class ConfigMailGuiFactory implements MailGuiFactory {
     }
 
     private void addDecorations(Inventory inv, String guiPath) {
-        if (!config().contains(guiPath + ".decoration")) {
-            return;
-        }
-        ConfigurationSection decorSection = config().getConfigurationSection(guiPath + ".decoration");
-        if (decorSection == null) {
-            return;
-        }
-        for (String decorKey : decorSection.getKeys(false)) {
-            String path = guiPath + ".decoration." + decorKey;
-            if (!isEnabled(path)) {
+        for (GuiLayout.Item decoration : screen(guiPath).decorations()) {
+            if (!decoration.enabled() || decoration.material() == null) {
                 continue;
             }
-            Material material = Material.valueOf(config().getString(path + ".material"));
-            String name = config().getString(path + ".name");
-            List<Integer> slots = config().getIntegerList(path + ".slots");
 
-            ItemStack decorItem = new ItemStack(material);
+            ItemStack decorItem = new ItemStack(decoration.material());
             ItemMeta meta = decorItem.getItemMeta();
-            meta.setDisplayName(plugin.legacy(name));
-            List<String> loreLines = config().getStringList(path + ".lore");
-            if (!loreLines.isEmpty()) {
-                meta.setLore(loreLines.stream()
-                        .map(plugin::legacy)
-                        .collect(Collectors.toList()));
+            meta.setDisplayName(decoration.name());
+            if (!decoration.lore().isEmpty()) {
+                meta.setLore(decoration.lore());
             }
             // Always mark decorations with the decoration key so they can be replaced by pagination buttons
-            meta.getPersistentDataContainer().set(decorationKey, PersistentDataType.STRING, path);
-
-            List<String> commands = config().getStringList(path + ".commands").stream()
-                    .filter(line -> line != null && !line.trim().isEmpty())
-                    .collect(Collectors.toList());
-            if (!commands.isEmpty()) {
-                meta.getPersistentDataContainer().set(new NamespacedKey(plugin, "decorationPath"),
-                        PersistentDataType.STRING, path);
-            }
-            itemStyler.apply(meta, path);
+            meta.getPersistentDataContainer().set(decorationKey, PersistentDataType.STRING, decoration.path());
+            itemStyler.apply(meta, decoration);
             decorItem.setItemMeta(meta);
-            for (int slot : slots) {
+            for (int slot : decoration.slots()) {
                 inv.setItem(slot, decorItem.clone());
             }
         }
     }
 
+    /**
+     * Lines without placeholders can use the layout's pre-colorized copy.
+     */
+    private static boolean hasPlaceholders(String line) {
+        return line.indexOf('%') >= 0 || line.indexOf('{') >= 0;
+    }
+
+    private GuiLayout.Screen screen(String path) {
+        return plugin.getGuiLayout().screen(path);
+    }
+
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 
 }
@@ -3,7 +3,6 @@ package com.yusaki.lammailbox.gui;
 import com.yusaki.lammailbox.LamMailBox;
 import org.bukkit.Bukkit;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.ItemStack;
@@ -38,7 +37,7 @@ final class DecorationCommandExecutor {
             return false;
         }
 
-        List<String> commands = config().getStringList(configPath + ".commands");
+        List<String> commands = plugin.getGuiLayout().item(configPath).list("commands");
         if (commands.isEmpty()) {
             return false;
         }
@@ -62,8 +61,4 @@ final class DecorationCommandExecutor {
         });
         return true;
     }
-
-    private FileConfiguration config() {
-        return plugin.getConfig();
-    }
 }
@@ -30,9 +30,10 @@ final class GuiCloseHandler {
         String title = event.getView().getTitle();
         UUID playerId = player.getUniqueId();
 
-        if (title.equals(plugin.legacy(config().getString("gui.items.title")))) {
+        GuiLayout layout = plugin.getGuiLayout();
+        if (title.equals(layout.screen("gui.items").title())) {
             handleItemsClose(event, player);
-        } else if (title.equals(plugin.legacy(config().getString("gui.create-mail.title")))) {
+        } else if (title.equals(layout.screen("gui.create-mail").title())) {
             handleCreateMailClose(player);
         }
 
@@ -41,9 +42,9 @@ final class GuiCloseHandler {
         }
         plugin.getDeleteConfirmations().remove(playerId);
 
-        handleMainGuiClose(player, title);
-        handleSentGuiClose(player, title);
-        handleMailViewClose(player, title);
+        handleMainGuiClose(player, title, layout.screen("gui.main"));
+        handleSentGuiClose(player, title, layout.screen("gui.sent-mail"));
+        handleMailViewClose(player, title, layout.screen("gui.mail-view").title());
     }
 
     private void handleItemsClose(InventoryCloseEvent event, Player player) {
@@ -53,8 +54,8 @@ final class GuiCloseHandler {
         }
 
         List<ItemStack> items = new ArrayList<>();
-        int saveSlot = config().getInt("gui.items.items.save-button.slot");
-        int backSlot = config().getInt("gui.items.items.back-button.slot");
+        int saveSlot = item("gui.items.items.save-button").slot(0);
+        int backSlot = item("gui.items.items.back-button").slot(0);
         Inventory inventory = event.getInventory();
         for (int i = 0; i < inventory.getSize(); i++) {
             if (i == saveSlot || i == backSlot) {
@@ -88,10 +89,8 @@ final class GuiCloseHandler {
         session.setItems(new ArrayList<>());
     }
 
-    private void handleMainGuiClose(Player player, String title) {
-        String mainTitle = plugin.legacy(config().getString("gui.main.title"));
-        String mainViewingPrefix = plugin.legacy(config().getString("gui.main.title") + " &7(as ");
-        if (!title.equals(mainTitle) && !title.startsWith(mainViewingPrefix)) {
+    private void handleMainGuiClose(Player player, String title, GuiLayout.Screen main) {
+        if (!main.matches(title)) {
             return;
         }
 
@@ -100,22 +99,21 @@ final class GuiCloseHandler {
             if (!player.isOnline()) {
                 plugin.getViewingAsPlayer().remove(playerId);
                 plugin.getMailboxPages().remove(playerId);
+                plugin.getMailboxCursors().remove(playerId);
                 return;
             }
 
             String currentTitle = player.getOpenInventory().getTitle();
-            boolean stillMain = currentTitle.equals(mainTitle) || currentTitle.startsWith(mainViewingPrefix);
-            if (!stillMain) {
+            if (!main.matches(currentTitle)) {
                 plugin.getViewingAsPlayer().remove(playerId);
                 plugin.getMailboxPages().remove(playerId);
+                plugin.getMailboxCursors().remove(playerId);
             }
         });
     }
 
-    private void handleSentGuiClose(Player player, String title) {
-        String sentTitle = plugin.legacy(config().getString("gui.sent-mail.title"));
-        String sentViewingPrefix = plugin.legacy(config().getString("gui.sent-mail.title") + " &7(as ");
-        if (!title.equals(sentTitle) && !title.startsWith(sentViewingPrefix)) {
+    private void handleSentGuiClose(Player player, String title, GuiLayout.Screen sent) {
+        if (!sent.matches(title)) {
             return;
         }
 
@@ -123,19 +121,19 @@ final class GuiCloseHandler {
         plugin.getFoliaLib().getScheduler().runNextTick(task -> {
             if (!player.isOnline()) {
                 plugin.getSentMailboxPages().remove(playerId);
+                plugin.getSentMailboxCursors().remove(playerId);
                 return;
             }
 
             String currentTitle = player.getOpenInventory().getTitle();
-            boolean stillSent = currentTitle.equals(sentTitle) || currentTitle.startsWith(sentViewingPrefix);
-            if (!stillSent) {
+            if (!sent.matches(currentTitle)) {
                 plugin.getSentMailboxPages().remove(playerId);
+                plugin.getSentMailboxCursors().remove(playerId);
             }
         });
     }
 
-    private void handleMailViewClose(Player player, String title) {
-        String mailViewTitle = plugin.legacy(config().getString("gui.mail-view.title"));
+    private void handleMailViewClose(Player player, String title, String mailViewTitle) {
         if (!title.equals(mailViewTitle)) {
             return;
         }
@@ -154,6 +152,10 @@ final class GuiCloseHandler {
         });
     }
 
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
@@ -1,15 +1,10 @@
 package com.yusaki.lammailbox.gui;
 
 import com.yusaki.lammailbox.LamMailBox;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Applies configured lore and custom-model-data to item meta instances.
@@ -29,90 +24,34 @@ final class GuiItemStyler {
         if (meta == null || basePath == null || basePath.isEmpty()) {
             return;
         }
-
-        applyLore(meta, basePath, allowLoreOverride);
-        applyCustomModelData(meta, basePath);
-    }
-
-    private void applyLore(ItemMeta meta, String basePath, boolean allowLoreOverride) {
-        List<String> loreLines = collectLoreLines(basePath);
-        if (loreLines.isEmpty()) {
-            return;
-        }
-
-        boolean hasExistingLore = meta.hasLore() && meta.getLore() != null && !meta.getLore().isEmpty();
-        if (!allowLoreOverride && hasExistingLore) {
-            return;
-        }
-
-        List<String> colorized = loreLines.stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList());
-        meta.setLore(colorized);
+        apply(meta, plugin.getGuiLayout().item(basePath), allowLoreOverride);
     }
 
-    private List<String> collectLoreLines(String basePath) {
-        Object loreValue = config().get(basePath + ".lore");
-        if (loreValue instanceof String singleLine) {
-            return collectSingleLoreLine(singleLine);
-        }
-        if (loreValue instanceof Collection<?> collection) {
-            return collectLoreFromCollection(collection);
-        }
-        return Collections.emptyList();
+    void apply(ItemMeta meta, GuiLayout.Item item) {
+        apply(meta, item, true);
     }
 
-    private List<String> collectSingleLoreLine(String line) {
-        if (line == null || line.isBlank()) {
-            return Collections.emptyList();
+    void apply(ItemMeta meta, GuiLayout.Item item, boolean allowLoreOverride) {
+        if (meta == null || item == null) {
+            return;
         }
-        return Collections.singletonList(line);
-    }
 
-    private List<String> collectLoreFromCollection(Collection<?> collection) {
-        List<String> lines = new ArrayList<>();
-        for (Object entry : collection) {
-            String line = normalizeLoreEntry(entry);
-            if (line != null) {
-                lines.add(line);
-            }
+        applyLore(meta, item.styleLore(), allowLoreOverride);
+        if (item.customModelData() != null) {
+            meta.setCustomModelData(item.customModelData());
         }
-        return lines;
     }
 
-    private String normalizeLoreEntry(Object entry) {
-        if (entry == null) {
-            return null;
-        }
-        String line = entry.toString();
-        return line.isBlank() ? null : line;
-    }
-
-    private void applyCustomModelData(ItemMeta meta, String basePath) {
-        if (!config().contains(basePath + ".custom-model-data")) {
+    private void applyLore(ItemMeta meta, List<String> loreLines, boolean allowLoreOverride) {
+        if (loreLines.isEmpty()) {
             return;
         }
-        Integer customModelData = parseCustomModelData(config().get(basePath + ".custom-model-data"));
-        if (customModelData != null) {
-            meta.setCustomModelData(customModelData);
-        }
-    }
 
-    private Integer parseCustomModelData(Object rawValue) {
-        if (rawValue instanceof Number number) {
-            return number.intValue();
-        }
-        if (rawValue instanceof String text && !text.isBlank()) {
-            try {
-                return Integer.parseInt(text.trim());
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
+        boolean hasExistingLore = meta.hasLore() && meta.getLore() != null && !meta.getLore().isEmpty();
+        if (!allowLoreOverride && hasExistingLore) {
+            return;
         }
-        return null;
-    }
 
-    private FileConfiguration config() {
-        return plugin.getConfig();
+        meta.setLore(loreLines);
     }
 }
@@ -0,0 +1,256 @@
+package com.yusaki.lammailbox.gui;
+
+import com.yusaki.lammailbox.LamMailBox;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code gui} section of config.yml compiled into immutable screens and
+ * items. It is built at startup and on every reload, so rendering a GUI or
+ * handling a click never walks the configuration.
+ */
+public final class GuiLayout {
+    /**
+     * A configured inventory with its decoration fillers in config order.
+     * {@code viewingAsPrefix} starts the title shown while an admin views
+     * another player's mailbox.
+     */
+    public record Screen(String path,
+                         String rawTitle,
+                         String title,
+                         String viewingAsPrefix,
+                         Integer size,
+                         List<Item> decorations) {
+        /**
+         * The colorized title, or the plain {@code fallback} when none is configured.
+         */
+        public String title(String fallback) {
+            return rawTitle != null ? title : fallback;
+        }
+
+        public int size(int fallback) {
+            return size != null ? size : fallback;
+        }
+
+        /**
+         * Whether an open inventory titled {@code openTitle} is this screen,
+         * including its "viewing as" variant.
+         */
+        public boolean matches(String openTitle) {
+            return openTitle.equals(title) || (viewingAsPrefix != null && openTitle.startsWith(viewingAsPrefix));
+        }
+    }
+
+    /**
+     * A configured item. {@code name} and {@code lore} are pre-colorized;
+     * the raw forms are kept for templates that still need placeholders.
+     * {@code styleLore} is the lore override applied by {@link GuiItemStyler},
+     * which also accepts a single string and drops blank lines.
+     */
+    public record Item(String path,
+                       boolean enabled,
+                       Integer slot,
+                       List<Integer> slots,
+                       Material material,
+                       String rawName,
+                       String name,
+                       List<String> rawLore,
+                       List<String> lore,
+                       List<String> styleLore,
+                       Integer customModelData,
+                       Map<String, String> texts,
+                       Map<String, List<String>> lists) {
+        public int slot(int fallback) {
+            return slot != null ? slot : fallback;
+        }
+
+        public Material material(Material fallback) {
+            return material != null ? material : fallback;
+        }
+
+        public String rawName(String fallback) {
+            return rawName != null ? rawName : fallback;
+        }
+
+        /**
+         * Any other scalar value of the item, keyed relative to it
+         * (e.g. {@code message-prefix} or {@code disabled.name-format}).
+         */
+        public String text(String key) {
+            return texts.get(key);
+        }
+
+        public String text(String key, String fallback) {
+            return texts.getOrDefault(key, fallback);
+        }
+
+        /**
+         * Any other list value of the item, keyed relative to it; empty when absent.
+         */
+        public List<String> list(String key) {
+            return lists.getOrDefault(key, List.of());
+        }
+    }
+
+    private final Map<String, Screen> screens;
+    private final Map<String, Item> items;
+
+    private GuiLayout(Map<String, Screen> screens, Map<String, Item> items) {
+        this.screens = screens;
+        this.items = items;
+    }
+
+    /**
+     * Compiles the current configuration. Call after messages are loaded so
+     * names and lore are colorized the same way the GUIs always did.
+     */
+    public static GuiLayout compile(LamMailBox plugin) {
+        Map<String, Screen> screens = new HashMap<>();
+        Map<String, Item> items = new HashMap<>();
+        ConfigurationSection gui = plugin.getConfig().getConfigurationSection("gui");
+        if (gui != null) {
+            for (String key : gui.getKeys(false)) {
+                ConfigurationSection section = gui.getConfigurationSection(key);
+                if (section == null) {
+                    continue;
+                }
+                String path = "gui." + key;
+                List<Item> decorations = new ArrayList<>();
+                compileItems(plugin, section.getConfigurationSection("items"), path + ".items", items, null);
+                compileItems(plugin, section.getConfigurationSection("decoration"), path + ".decoration", items, decorations);
+                String rawTitle = section.getString("title");
+                Integer size = section.contains("size") ? section.getInt("size") : null;
+                String viewingAsPrefix = rawTitle != null ? plugin.legacy(rawTitle + " &7(as ") : null;
+                screens.put(path, new Screen(path, rawTitle, plugin.legacy(rawTitle), viewingAsPrefix, size,
+                        List.copyOf(decorations)));
+            }
+        }
+        return new GuiLayout(Map.copyOf(screens), Map.copyOf(items));
+    }
+
+    /**
+     * The screen at {@code path} (e.g. {@code gui.main}); an empty screen when not configured.
+     */
+    public Screen screen(String path) {
+        Screen screen = screens.get(path);
+        return screen != null ? screen : new Screen(path, null, "", null, null, List.of());
+    }
+
+    /**
+     * The item at {@code path}; a missing item is enabled and has no values,
+     * matching the defaults the config lookups used to fall back to.
+     */
+    public Item item(String path) {
+        Item item = items.get(path);
+        return item != null ? item : absent(path);
+    }
+
+    private static void compileItems(LamMailBox plugin,
+                                     ConfigurationSection parent,
+                                     String parentPath,
+                                     Map<String, Item> items,
+                                     List<Item> topLevel) {
+        if (parent == null) {
+            return;
+        }
+        for (String key : parent.getKeys(false)) {
+            ConfigurationSection section = parent.getConfigurationSection(key);
+            if (section == null) {
+                continue;
+            }
+            String path = parentPath + "." + key;
+            Item item = compileItem(plugin, path, section);
+            items.put(path, item);
+            if (topLevel != null) {
+                topLevel.add(item);
+            }
+            // Nested groups (pagination buttons, disabled variants) are items of their own.
+            compileItems(plugin, section, path, items, null);
+        }
+    }
+
+    private static Item compileItem(LamMailBox plugin, String path, ConfigurationSection section) {
+        String materialName = section.getString("material");
+        Material material = null;
+        if (materialName != null && !materialName.isBlank()) {
+            material = Material.matchMaterial(materialName.trim());
+            if (material == null) {
+                plugin.getLogger().warning("Unknown material '" + materialName + "' at " + path + ".material");
+            }
+        }
+
+        String rawName = section.getString("name");
+        List<String> rawLore = List.copyOf(section.getStringList("lore"));
+        List<String> lore = rawLore.stream().map(plugin::legacy).toList();
+        List<String> styleLore = styleLore(section.get("lore")).stream().map(plugin::legacy).toList();
+
+        Map<String, String> texts = new HashMap<>();
+        Map<String, List<String>> lists = new HashMap<>();
+        for (String key : section.getKeys(true)) {
+            Object value = section.get(key);
+            if (value == null || value instanceof ConfigurationSection) {
+                continue;
+            }
+            if (value instanceof List<?>) {
+                lists.put(key, List.copyOf(section.getStringList(key)));
+            } else {
+                texts.put(key, String.valueOf(value));
+            }
+        }
+
+        return new Item(path,
+                section.getBoolean("enabled", true),
+                section.contains("slot") ? section.getInt("slot") : null,
+                List.copyOf(section.getIntegerList("slots")),
+                material,
+                rawName,
+                plugin.legacy(rawName),
+                rawLore,
+                lore,
+                styleLore,
+                section.contains("custom-model-data") ? parseCustomModelData(section.get("custom-model-data")) : null,
+                Map.copyOf(texts),
+                Map.copyOf(lists));
+    }
+
+    private static List<String> styleLore(Object loreValue) {
+        List<String> lines = new ArrayList<>();
+        if (loreValue instanceof String singleLine) {
+            if (!singleLine.isBlank()) {
+                lines.add(singleLine);
+            }
+        } else if (loreValue instanceof Collection<?> collection) {
+            for (Object entry : collection) {
+                if (entry != null && !entry.toString().isBlank()) {
+                    lines.add(entry.toString());
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static Integer parseCustomModelData(Object rawValue) {
+        if (rawValue instanceof Number number) {
+            return number.intValue();
+        }
+        if (rawValue instanceof String text && !text.isBlank()) {
+            try {
+                return Integer.parseInt(text.trim());
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Item absent(String path) {
+        return new Item(path, true, null, List.of(), null, null, "", List.of(), List.of(), List.of(), null,
+                Map.of(), Map.of());
+    }
+}
@@ -3,7 +3,6 @@ package com.yusaki.lammailbox.gui;
 import com.yusaki.lammailbox.LamMailBox;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -26,31 +25,23 @@ final class GuiNavigationHelper {
     }
 
     void placeBackButton(Inventory inv, String path, String action) {
-        FileConfiguration config = plugin.getConfig();
-        if (!config.getBoolean(path + ".enabled", true)) {
+        GuiLayout.Item button = plugin.getGuiLayout().item(path);
+        if (!button.enabled()) {
             return;
         }
 
-        String materialName = config.getString(path + ".material", "ARROW");
-        Material material = Material.matchMaterial(materialName);
-        if (material == null) {
-            material = Material.ARROW;
-        }
-
-        ItemStack item = new ItemStack(material);
+        ItemStack item = new ItemStack(button.material(Material.ARROW));
         ItemMeta meta = item.getItemMeta();
         if (meta == null) {
             return;
         }
 
-        String name = config.getString(path + ".name", "&cBack");
-        meta.setDisplayName(plugin.legacy(name));
+        meta.setDisplayName(button.rawName() != null ? button.name() : plugin.legacy("&cBack"));
 
-        itemStyler.apply(meta, path);
+        itemStyler.apply(meta, button);
         meta.getPersistentDataContainer().set(actionKey, PersistentDataType.STRING, action);
 
         item.setItemMeta(meta);
-        int slot = config.getInt(path + ".slot", inv.getSize() - 1);
-        inv.setItem(slot, item);
+        inv.setItem(button.slot(inv.getSize() - 1), item);
     }
 }
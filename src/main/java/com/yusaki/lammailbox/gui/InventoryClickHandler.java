@@ -2,7 +2,6 @@ package com.yusaki.lammailbox.gui;
 
 import com.yusaki.lammailbox.LamMailBox;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
@@ -58,9 +57,8 @@ public class InventoryClickHandler implements MailInventoryHandler {
         String title = event.getView().getTitle();
         ItemStack clicked = event.getCurrentItem();
 
-        String mainTitle = plugin.legacy(config().getString("gui.main.title"));
-        String mainViewingPrefix = plugin.legacy(config().getString("gui.main.title") + " &7(as ");
-        boolean isMainGUI = title.equals(mainTitle) || title.startsWith(mainViewingPrefix);
+        GuiLayout layout = plugin.getGuiLayout();
+        boolean isMainGUI = layout.screen("gui.main").matches(title);
 
         if (isMainGUI && event.getClickedInventory() == player.getInventory()) {
             event.setCancelled(true);
@@ -70,22 +68,20 @@ public class InventoryClickHandler implements MailInventoryHandler {
             return;
         }
 
-        String sentTitle = plugin.legacy(config().getString("gui.sent-mail.title"));
-        String sentViewingPrefix = plugin.legacy(config().getString("gui.sent-mail.title") + " &7(as ");
-        String commandItemsTitle = plugin.legacy(config().getString("gui.command-items-editor.title", "Command Items"));
-        String commandItemCreatorTitle = plugin.legacy(config().getString("gui.command-item-creator.title", "Create Command Item"));
+        String commandItemsTitle = layout.screen("gui.command-items-editor").title("Command Items");
+        String commandItemCreatorTitle = layout.screen("gui.command-item-creator").title("Create Command Item");
 
         if (isMainGUI) {
             mainGuiActions.handle(event, player, clicked);
-        } else if (title.equals(sentTitle) || title.startsWith(sentViewingPrefix)) {
+        } else if (layout.screen("gui.sent-mail").matches(title)) {
             sentMailActions.handleListClick(event, player, clicked);
-        } else if (title.equals(plugin.legacy(config().getString("gui.sent-mail-view.title")))) {
+        } else if (title.equals(layout.screen("gui.sent-mail-view").title())) {
             sentMailActions.handleDetailClick(event, player, clicked);
-        } else if (title.equals(plugin.legacy(config().getString("gui.create-mail.title")))) {
+        } else if (title.equals(layout.screen("gui.create-mail").title())) {
             mailCreationActions.handle(event);
-        } else if (title.equals(plugin.legacy(config().getString("gui.items.title")))) {
+        } else if (title.equals(layout.screen("gui.items").title())) {
             itemsGuiActions.handle(event);
-        } else if (title.equals(plugin.legacy(config().getString("gui.mail-view.title")))) {
+        } else if (title.equals(layout.screen("gui.mail-view").title())) {
             mailViewActions.handle(event, player, clicked);
         } else if (title.equals(commandItemsTitle)) {
             commandItemsActions.handleEditorClick(event, player, clicked);
@@ -97,7 +93,4 @@ public class InventoryClickHandler implements MailInventoryHandler {
     public void handleClose(InventoryCloseEvent event) {
         closeHandler.handle(event);
     }
-    private FileConfiguration config() {
-        return plugin.getConfig();
-    }
 }
@@ -52,7 +52,7 @@ final class ItemsGuiClickActions {
         }
 
         if (isEnabled("gui.items.items.save-button") &&
-                event.getSlot() == config().getInt("gui.items.items.save-button.slot")) {
+                event.getSlot() == item("gui.items.items.save-button").slot(0)) {
             event.setCancelled(true);
             Player player = (Player) event.getWhoClicked();
             MailCreationSession session = plugin.getMailSessions().get(player.getUniqueId());
@@ -66,8 +66,8 @@ final class ItemsGuiClickActions {
 
     private List<ItemStack> collectItems(Inventory inventory) {
         List<ItemStack> items = new ArrayList<>();
-        int saveSlot = config().getInt("gui.items.items.save-button.slot");
-        int backSlot = config().getInt("gui.items.items.back-button.slot");
+        int saveSlot = item("gui.items.items.save-button").slot(0);
+        int backSlot = item("gui.items.items.back-button").slot(0);
         for (int i = 0; i < inventory.getSize(); i++) {
             if (i == saveSlot || i == backSlot) {
                 continue;
@@ -80,12 +80,16 @@ final class ItemsGuiClickActions {
         return items;
     }
 
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 
     /** Simple wrapper to reuse the common action key. */
@@ -0,0 +1,71 @@
+package com.yusaki.lammailbox.gui;
+
+import com.yusaki.lammailbox.repository.MailPage;
+import com.yusaki.lammailbox.repository.MailPageCursor;
+import com.yusaki.lammailbox.repository.MailRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps page numbers onto keyset-paged repository queries by remembering the
+ * cursor that starts each page a viewer has visited. Trails are kept per
+ * viewer and per mailbox owner, so switching the viewed player never reuses
+ * another mailbox's cursors.
+ */
+final class KeysetPager {
+    @FunctionalInterface
+    interface PageQuery {
+        MailPage fetch(MailPageCursor cursor, int limit);
+    }
+
+    private KeysetPager() {
+    }
+
+    /**
+     * Loads {@code page} (1-based) of {@code target}'s mailbox. Entry {@code i}
+     * of a trail is the cursor that starts page {@code i + 2}; page 1 always
+     * starts fresh.
+     */
+    static List<MailRecord> loadPage(Map<UUID, Map<String, List<MailPageCursor>>> trails,
+                                     UUID viewerId,
+                                     String target,
+                                     int page,
+                                     int pageSize,
+                                     PageQuery query) {
+        List<MailPageCursor> trail = trails.computeIfAbsent(viewerId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(target.toLowerCase(Locale.ROOT), name -> new ArrayList<>());
+        synchronized (trail) {
+            return loadPage(trail, page, pageSize, query);
+        }
+    }
+
+    private static List<MailRecord> loadPage(List<MailPageCursor> trail, int page, int pageSize, PageQuery query) {
+        if (page <= 1) {
+            trail.clear();
+        }
+
+        int current = Math.max(1, Math.min(page, trail.size() + 1));
+        MailPageCursor cursor = current > 1 ? trail.get(current - 2) : null;
+        MailPage result = query.fetch(cursor, pageSize);
+        while (true) {
+            MailPageCursor next = result.next();
+            if (next != null) {
+                if (trail.size() >= current) {
+                    trail.set(current - 1, next);
+                } else {
+                    trail.add(next);
+                }
+            }
+            if (current >= page || next == null) {
+                return result.records();
+            }
+            result = query.fetch(next, pageSize);
+            current++;
+        }
+    }
+}
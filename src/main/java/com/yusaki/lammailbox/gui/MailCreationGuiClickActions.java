@@ -143,7 +143,11 @@ final class MailCreationGuiClickActions {
     }
 
     private boolean slotMatches(String path, int slot) {
-        return isEnabled(path) && slot == config().getInt(path + ".slot");
+        return isEnabled(path) && slot == item(path).slot(0);
+    }
+
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
     }
 
     private FileConfiguration config() {
@@ -151,7 +155,7 @@ final class MailCreationGuiClickActions {
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 
     /**
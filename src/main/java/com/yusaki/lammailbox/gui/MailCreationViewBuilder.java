@@ -5,7 +5,6 @@ import com.yusaki.lammailbox.model.CommandItem;
 import com.yusaki.lammailbox.session.MailCreationSession;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -16,7 +15,6 @@ import org.bukkit.inventory.meta.SkullMeta;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -30,20 +28,17 @@ final class MailCreationViewBuilder {
     private final GuiNavigationHelper navigationHelper;
     private final CommandItemUiComposer commandItemUi;
     private final BiConsumer<Inventory, String> decorationApplier;
-    private final Predicate<String> enabledChecker;
 
     MailCreationViewBuilder(LamMailBox plugin,
                             GuiItemStyler itemStyler,
                             GuiNavigationHelper navigationHelper,
                             CommandItemUiComposer commandItemUi,
-                            BiConsumer<Inventory, String> decorationApplier,
-                            Predicate<String> enabledChecker) {
+                            BiConsumer<Inventory, String> decorationApplier) {
         this.plugin = plugin;
         this.itemStyler = itemStyler;
         this.navigationHelper = navigationHelper;
         this.commandItemUi = commandItemUi;
         this.decorationApplier = decorationApplier;
-        this.enabledChecker = enabledChecker;
     }
 
     Inventory createMailCreation(Player viewer) {
@@ -51,8 +46,8 @@ final class MailCreationViewBuilder {
                 .computeIfAbsent(viewer.getUniqueId(), key -> new MailCreationSession());
         ensureSessionDefaults(session);
 
-        int size = config().getInt("gui.create-mail.size");
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString("gui.create-mail.title")));
+        GuiLayout.Screen screen = layout().screen("gui.create-mail");
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), screen.title());
         decorationApplier.accept(inv, "gui.create-mail");
 
         addReceiverHead(inv, viewer, session);
@@ -66,26 +61,25 @@ final class MailCreationViewBuilder {
     }
 
     Inventory createItemsEditor(Player viewer) {
-        int size = config().getInt("gui.items.size");
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString("gui.items.title")));
+        GuiLayout.Screen screen = layout().screen("gui.items");
+        Inventory inv = Bukkit.createInventory(null, screen.size(0), screen.title());
 
         MailCreationSession session = plugin.getMailSessions().get(viewer.getUniqueId());
         if (session != null) {
             session.getItems().forEach(item -> inv.addItem(item.clone()));
         }
 
-        if (enabledChecker.test("gui.items.items.save-button")) {
-            ItemStack saveButton = new ItemStack(Material.valueOf(config().getString("gui.items.items.save-button.material")));
+        GuiLayout.Item save = layout().item("gui.items.items.save-button");
+        if (save.enabled() && save.material() != null) {
+            ItemStack saveButton = new ItemStack(save.material());
             ItemMeta saveMeta = saveButton.getItemMeta();
             if (saveMeta != null) {
-                saveMeta.setDisplayName(plugin.legacy(config().getString("gui.items.items.save-button.name")));
-                saveMeta.setLore(config().getStringList("gui.items.items.save-button.lore").stream()
-                        .map(plugin::legacy)
-                        .collect(Collectors.toList()));
-                itemStyler.apply(saveMeta, "gui.items.items.save-button");
+                saveMeta.setDisplayName(save.name());
+                saveMeta.setLore(save.lore());
+                itemStyler.apply(saveMeta, save);
                 saveButton.setItemMeta(saveMeta);
             }
-            inv.setItem(config().getInt("gui.items.items.save-button.slot"), saveButton);
+            inv.setItem(save.slot(0), saveButton);
         }
 
         navigationHelper.placeBackButton(inv, "gui.items.items.back-button", "items-back");
@@ -98,21 +92,25 @@ final class MailCreationViewBuilder {
         ensureSessionDefaults(session);
 
         String base = "gui.command-items-editor";
-        int size = config().getInt(base + ".size", 45);
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString(base + ".title", "Command Items")));
+        GuiLayout layout = layout();
+        GuiLayout.Screen screen = layout.screen(base);
+        int size = screen.size(45);
+        Inventory inv = Bukkit.createInventory(null, size, screen.title("Command Items"));
         decorationApplier.accept(inv, base);
 
-        List<Integer> slots = config().getIntegerList(base + ".items.command-item.slots");
+        List<Integer> slots = layout.item(base + ".items.command-item").slots();
         commandItemUi.openCommandItemsEditor(inv, session, slots);
 
-        if (enabledChecker.test(base + ".items.add-button")) {
-            ItemStack addButton = commandItemUi.buildEditorStaticButton(base + ".items.add-button", "add");
-            inv.setItem(config().getInt(base + ".items.add-button.slot", size - 5), addButton);
+        GuiLayout.Item add = layout.item(base + ".items.add-button");
+        if (add.enabled()) {
+            ItemStack addButton = commandItemUi.buildEditorStaticButton(add, "add");
+            inv.setItem(add.slot(size - 5), addButton);
         }
 
-        if (enabledChecker.test(base + ".items.back-button")) {
-            ItemStack backButton = commandItemUi.buildEditorStaticButton(base + ".items.back-button", "back");
-            inv.setItem(config().getInt(base + ".items.back-button.slot", size - 1), backButton);
+        GuiLayout.Item back = layout.item(base + ".items.back-button");
+        if (back.enabled()) {
+            ItemStack backButton = commandItemUi.buildEditorStaticButton(back, "back");
+            inv.setItem(back.slot(size - 1), backButton);
         }
 
         return inv;
@@ -128,8 +126,10 @@ final class MailCreationViewBuilder {
 
         CommandItem.Builder draft = session.getCommandItemDraft();
         String base = "gui.command-item-creator";
-        int size = config().getInt(base + ".size", 54);
-        Inventory inv = Bukkit.createInventory(null, size, plugin.legacy(config().getString(base + ".title", "Create Command Item")));
+        GuiLayout layout = layout();
+        GuiLayout.Screen screen = layout.screen(base);
+        int size = screen.size(54);
+        Inventory inv = Bukkit.createInventory(null, size, screen.title("Create Command Item"));
         decorationApplier.accept(inv, base);
 
         Map<String, String> placeholders = new HashMap<>();
@@ -147,13 +147,13 @@ final class MailCreationViewBuilder {
         commandItemUi.placeCreatorButton(inv, base + ".items.commands-editor", "command", placeholders, draft);
         commandItemUi.placeCreatorButton(inv, base + ".items.custom-model-editor", "custom-model", placeholders, draft);
 
-        int previewSlot = config().getInt(base + ".items.preview.slot", size / 2);
+        int previewSlot = layout.item(base + ".items.preview").slot(size / 2);
         ItemStack preview = draft.buildPreviewItem(plugin);
         inv.setItem(previewSlot, preview);
 
-        if (enabledChecker.test(base + ".items.save-button")) {
-            ItemStack save = commandItemUi.buildEditorStaticButton(base + ".items.save-button", "save");
-            inv.setItem(config().getInt(base + ".items.save-button.slot", size - 6), save);
+        GuiLayout.Item save = layout.item(base + ".items.save-button");
+        if (save.enabled()) {
+            inv.setItem(save.slot(size - 6), commandItemUi.buildEditorStaticButton(save, "save"));
         }
 
         navigationHelper.placeBackButton(inv, base + ".items.back-button", "command-creator-back");
@@ -162,104 +162,104 @@ final class MailCreationViewBuilder {
 
     private void addReceiverHead(Inventory inv, Player viewer, MailCreationSession session) {
         String path = "gui.create-mail.items.receiver-head";
-        if (!enabledChecker.test(path)) {
+        GuiLayout.Item receiverHead = layout().item(path);
+        if (!receiverHead.enabled() || receiverHead.material() == null) {
             return;
         }
-        ItemStack head = new ItemStack(Material.valueOf(config().getString(path + ".material")));
+        ItemStack head = new ItemStack(receiverHead.material());
         SkullMeta headMeta = (SkullMeta) head.getItemMeta();
         if (headMeta == null) {
             return;
         }
-        headMeta.setDisplayName(plugin.legacy(config().getString(path + ".name")));
-        List<String> headLore = viewer.hasPermission(config().getString("settings.admin-permission")) ?
-                config().getStringList(path + ".adminlore") :
-                config().getStringList(path + ".lore");
-        List<String> lore = headLore.stream().map(plugin::legacy).collect(Collectors.toList());
+        headMeta.setDisplayName(receiverHead.name());
+        List<String> lore = viewer.hasPermission(config().getString("settings.admin-permission"))
+                ? receiverHead.list("adminlore").stream().map(plugin::legacy).collect(Collectors.toList())
+                : new ArrayList<>(receiverHead.lore());
         if (session.getReceiver() != null) {
             lore.add(plugin.getMessage(path + ".current-receiver-format",
                     plugin.placeholders("receiver", session.getReceiver())));
         }
         headMeta.setLore(lore);
-        itemStyler.apply(headMeta, path, false);
+        itemStyler.apply(headMeta, receiverHead, false);
         head.setItemMeta(headMeta);
-        inv.setItem(config().getInt(path + ".slot"), head);
+        inv.setItem(receiverHead.slot(0), head);
     }
 
     private void addMessagePaper(Inventory inv, MailCreationSession session) {
-        String path = "gui.create-mail.items.message-paper";
-        if (!enabledChecker.test(path)) {
+        GuiLayout.Item messagePaper = layout().item("gui.create-mail.items.message-paper");
+        if (!messagePaper.enabled() || messagePaper.material() == null) {
             return;
         }
-        ItemStack paper = new ItemStack(Material.valueOf(config().getString(path + ".material")));
+        ItemStack paper = new ItemStack(messagePaper.material());
         ItemMeta paperMeta = paper.getItemMeta();
         if (paperMeta == null) {
             return;
         }
-        paperMeta.setDisplayName(plugin.legacy(config().getString(path + ".name")));
-        List<String> paperLore = config().getStringList(path + ".lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList());
+        paperMeta.setDisplayName(messagePaper.name());
+        List<String> paperLore = new ArrayList<>(messagePaper.lore());
         if (session.getMessage() != null) {
-            paperLore.add(plugin.legacy(config().getString(path + ".current-message-prefix")));
+            paperLore.add(plugin.legacy(messagePaper.text("current-message-prefix")));
+            String lineFormat = messagePaper.text("message-line-format");
             paperLore.addAll(Arrays.stream(session.getMessage().split("\n"))
-                    .map(line -> plugin.legacy(config().getString(path + ".message-line-format") + line))
+                    .map(line -> plugin.legacy(lineFormat + line))
                     .collect(Collectors.toList()));
         }
         paperMeta.setLore(paperLore);
-        itemStyler.apply(paperMeta, path);
+        itemStyler.apply(paperMeta, messagePaper);
         paper.setItemMeta(paperMeta);
-        inv.setItem(config().getInt(path + ".slot"), paper);
+        inv.setItem(messagePaper.slot(0), paper);
     }
 
     private void addItemsChest(Inventory inv, Player viewer) {
-        String path = "gui.create-mail.items.items-chest";
-        if (!enabledChecker.test(path)) {
+        GuiLayout.Item itemsChest = layout().item("gui.create-mail.items.items-chest");
+        if (!itemsChest.enabled()) {
             return;
         }
-        int chestSlot = config().getInt(path + ".slot");
+        int chestSlot = itemsChest.slot(0);
         if (!viewer.hasPermission(config().getString("settings.permissions.add-items"))) {
             inv.setItem(chestSlot, createDisabledFiller());
             return;
         }
 
-        ItemStack chest = new ItemStack(Material.valueOf(config().getString(path + ".material")));
+        if (itemsChest.material() == null) {
+            return;
+        }
+        ItemStack chest = new ItemStack(itemsChest.material());
         ItemMeta chestMeta = chest.getItemMeta();
         if (chestMeta == null) {
             return;
         }
-        chestMeta.setDisplayName(plugin.legacy(config().getString(path + ".name")));
-        chestMeta.setLore(config().getStringList(path + ".lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
-        itemStyler.apply(chestMeta, path);
+        chestMeta.setDisplayName(itemsChest.name());
+        chestMeta.setLore(itemsChest.lore());
+        itemStyler.apply(chestMeta, itemsChest);
         chest.setItemMeta(chestMeta);
         inv.setItem(chestSlot, chest);
     }
 
     private void addSendButton(Inventory inv) {
-        String path = "gui.create-mail.items.send-button";
-        if (!enabledChecker.test(path)) {
+        GuiLayout.Item send = layout().item("gui.create-mail.items.send-button");
+        if (!send.enabled() || send.material() == null) {
             return;
         }
-        ItemStack sendButton = new ItemStack(Material.valueOf(config().getString(path + ".material")));
+        ItemStack sendButton = new ItemStack(send.material());
         ItemMeta sendMeta = sendButton.getItemMeta();
         if (sendMeta == null) {
             return;
         }
-        sendMeta.setDisplayName(plugin.legacy(config().getString(path + ".name")));
-        sendMeta.setLore(config().getStringList(path + ".lore").stream()
-                .map(plugin::legacy)
-                .collect(Collectors.toList()));
-        itemStyler.apply(sendMeta, path);
+        sendMeta.setDisplayName(send.name());
+        sendMeta.setLore(send.lore());
+        itemStyler.apply(sendMeta, send);
         sendButton.setItemMeta(sendMeta);
-        inv.setItem(config().getInt(path + ".slot"), sendButton);
+        inv.setItem(send.slot(0), sendButton);
     }
 
     private void addAdminControls(Inventory inv, Player viewer, MailCreationSession session) {
-        int commandSlot = config().getInt("gui.create-mail.items.command-block.slot");
-        int clockSlot = config().getInt("gui.create-mail.items.schedule-clock.slot");
-        boolean commandEnabled = enabledChecker.test("gui.create-mail.items.command-block");
-        boolean clockEnabled = enabledChecker.test("gui.create-mail.items.schedule-clock");
+        GuiLayout.Item commandBlock = layout().item("gui.create-mail.items.command-block");
+        GuiLayout.Item scheduleClock = layout().item("gui.create-mail.items.schedule-clock");
+        int commandSlot = commandBlock.slot(0);
+        int clockSlot = scheduleClock.slot(0);
+        boolean commandEnabled = commandBlock.enabled();
+        boolean clockEnabled = scheduleClock.enabled() && scheduleClock.material() != null;
         boolean isAdmin = viewer.hasPermission(config().getString("settings.admin-permission"));
 
         if (isAdmin) {
@@ -267,7 +267,7 @@ final class MailCreationViewBuilder {
                 inv.setItem(commandSlot, commandItemUi.createCommandItemsButton(session));
             }
             if (clockEnabled) {
-                inv.setItem(clockSlot, buildScheduleClock(session));
+                inv.setItem(clockSlot, buildScheduleClock(scheduleClock, session));
             }
             return;
         }
@@ -280,15 +280,14 @@ final class MailCreationViewBuilder {
         }
     }
 
-    private ItemStack buildScheduleClock(MailCreationSession session) {
-        String basePath = "gui.create-mail.items.schedule-clock";
-        ItemStack clock = new ItemStack(Material.valueOf(config().getString(basePath + ".material")));
+    private ItemStack buildScheduleClock(GuiLayout.Item scheduleClock, MailCreationSession session) {
+        ItemStack clock = new ItemStack(scheduleClock.material());
         ItemMeta clockMeta = clock.getItemMeta();
         if (clockMeta == null) {
             return clock;
         }
 
-        clockMeta.setDisplayName(plugin.legacy(config().getString(basePath + ".name")));
+        clockMeta.setDisplayName(scheduleClock.name());
 
         String scheduleTime = session.getScheduleDate() != null
                 ? DATE_FORMAT.format(new Date(session.getScheduleDate()))
@@ -297,14 +296,14 @@ final class MailCreationViewBuilder {
                 ? DATE_FORMAT.format(new Date(session.getExpireDate()))
                 : "Not set";
 
-        List<String> lore = config().getStringList(basePath + ".lore").stream()
+        List<String> lore = scheduleClock.rawLore().stream()
                 .map(line -> plugin.applyPlaceholderVariants(line, Map.of(
                         "schedule_time", scheduleTime,
                         "expire_time", expireTime)))
                 .map(plugin::legacy)
                 .collect(Collectors.toList());
         clockMeta.setLore(lore);
-        itemStyler.apply(clockMeta, basePath);
+        itemStyler.apply(clockMeta, scheduleClock);
         clock.setItemMeta(clockMeta);
         return clock;
     }
@@ -322,32 +321,19 @@ final class MailCreationViewBuilder {
     }
 
     private ItemStack createDisabledFiller() {
-        FileConfiguration config = config();
-        ConfigurationSection decorSection = config.getConfigurationSection("gui.create-mail.decoration");
-        if (decorSection != null) {
-            for (String key : decorSection.getKeys(false)) {
-                String base = "gui.create-mail.decoration." + key;
-                String materialName = config.getString(base + ".material");
-                if (materialName == null) {
-                    continue;
-                }
-                try {
-                    Material material = Material.valueOf(materialName);
-                    ItemStack filler = new ItemStack(material);
-                    ItemMeta meta = filler.getItemMeta();
-                    if (meta == null) {
-                        continue;
-                    }
-                    meta.setDisplayName(plugin.legacy(config.getString(base + ".name", " ")));
-                    meta.setLore(config.getStringList(base + ".lore").stream()
-                            .map(plugin::legacy)
-                            .collect(Collectors.toList()));
-                    filler.setItemMeta(meta);
-                    return filler;
-                } catch (IllegalArgumentException ignored) {
-                    // try next decoration entry
-                }
+        for (GuiLayout.Item decoration : layout().screen("gui.create-mail").decorations()) {
+            if (decoration.material() == null) {
+                continue;
+            }
+            ItemStack filler = new ItemStack(decoration.material());
+            ItemMeta meta = filler.getItemMeta();
+            if (meta == null) {
+                continue;
             }
+            meta.setDisplayName(decoration.rawName() != null ? decoration.name() : " ");
+            meta.setLore(decoration.lore());
+            filler.setItemMeta(meta);
+            return filler;
         }
 
         ItemStack fallback = new ItemStack(Material.BLACK_STAINED_GLASS_PANE);
@@ -359,6 +345,10 @@ final class MailCreationViewBuilder {
         return fallback;
     }
 
+    private GuiLayout layout() {
+        return plugin.getGuiLayout();
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
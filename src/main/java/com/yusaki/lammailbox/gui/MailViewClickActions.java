@@ -3,6 +3,8 @@ package com.yusaki.lammailbox.gui;
 import com.yusaki.lammailbox.LamMailBox;
 import com.yusaki.lammailbox.model.CommandItem;
 import com.yusaki.lammailbox.repository.MailRecord;
+import com.yusaki.lammailbox.repository.MailRepository;
+import com.yusaki.lammailbox.service.AsyncMailFacade;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -13,11 +15,16 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles interactions inside the mail view GUI.
@@ -27,6 +34,7 @@ final class MailViewClickActions {
     private final NamespacedKey actionKey;
     private final NamespacedKey mailIdKey;
     private final DecorationCommandExecutor decorationExecutor;
+    private final Set<UUID> claimsInFlight = ConcurrentHashMap.newKeySet();
 
     MailViewClickActions(LamMailBox plugin,
                          NamespacedKey actionKey,
@@ -48,7 +56,7 @@ final class MailViewClickActions {
             return;
         }
 
-        int buttonSlot = config().getInt("gui.mail-view.items.claim-button.slot");
+        int buttonSlot = item("gui.mail-view.items.claim-button").slot(0);
         boolean claimEnabled = isEnabled("gui.mail-view.items.claim-button") ||
                 isEnabled("gui.mail-view.items.dismiss-button");
         if (claimEnabled && event.getSlot() == buttonSlot) {
@@ -102,14 +110,13 @@ final class MailViewClickActions {
     private void handlePagination(Player player, String mailId, boolean isNext) {
         int currentPage = plugin.getMailViewPages().getOrDefault(player.getUniqueId(), 1);
 
-        List<ItemStack> items = plugin.getMailRepository().loadMailItems(mailId);
-        int commandCount = plugin.getMailRepository().findRecord(mailId)
-                .map(record -> record.commandItems().size())
+        MailRepository repository = plugin.getMailRepository();
+        int totalElements = repository.findRecord(mailId)
+                .map(record -> repository.countMailItems(record) + record.commandItemCount())
                 .orElse(0);
 
-        List<Integer> slots = config().getIntegerList("gui.mail-view.items.items-display.slots");
-        int slotsPerPage = (slots != null && !slots.isEmpty()) ? slots.size() : 21;
-        int totalElements = items.size() + commandCount;
+        List<Integer> slots = item("gui.mail-view.items.items-display").slots();
+        int slotsPerPage = !slots.isEmpty() ? slots.size() : 21;
         int totalPages = Math.max(1, (totalElements + slotsPerPage - 1) / slotsPerPage);
 
         int newPage = isNext ? currentPage + 1 : currentPage - 1;
@@ -124,25 +131,65 @@ final class MailViewClickActions {
     }
 
     private void claimMail(Player player, String mailId) {
-        List<ItemStack> items = plugin.getMailRepository().loadMailItems(mailId);
-        Optional<MailRecord> mailRecord = plugin.getMailRepository().findRecord(mailId);
-        List<CommandItem> commandItems = mailRecord.map(MailRecord::commandItems).orElse(Collections.emptyList());
-        boolean hasRewards = !items.isEmpty() || !commandItems.isEmpty();
-
-        if (!items.isEmpty()) {
-            long emptySlots = Arrays.stream(player.getInventory().getStorageContents())
-                    .filter(item -> item == null || item.getType() == Material.AIR)
-                    .count();
-            if (emptySlots < items.size()) {
-                plugin.sendMessage(player, "messages.prefix");
-                plugin.sendMessage(player, "messages.inventory-space-needed",
-                        plugin.placeholders("amount", String.valueOf(items.size())));
+        AsyncMailFacade asyncMail = plugin.getAsyncMail();
+        CompletableFuture<ClaimContents> contents = asyncMail.supply(() -> {
+            MailRepository repository = plugin.getMailRepository();
+            Optional<MailRecord> record = repository.findRecord(mailId);
+            // Mails recorded without attachments skip item deserialization entirely.
+            List<ItemStack> items = record.map(MailRecord::itemCount).orElse(-1) == 0
+                    ? new ArrayList<>()
+                    : repository.loadMailItems(mailId);
+            return new ClaimContents(items, record.map(MailRecord::commandItems).orElse(Collections.emptyList()));
+        });
+
+        asyncMail.thenAtEntity(contents, player, (loaded, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Failed to load mail " + mailId + " for claim: " + error.getMessage());
                 return;
             }
 
-            items.forEach(item -> player.getInventory().addItem(item));
-        }
+            List<ItemStack> items = loaded.items();
+            if (!items.isEmpty()) {
+                long emptySlots = Arrays.stream(player.getInventory().getStorageContents())
+                        .filter(item -> item == null || item.getType() == Material.AIR)
+                        .count();
+                if (emptySlots < items.size()) {
+                    plugin.sendMessage(player, "messages.prefix");
+                    plugin.sendMessage(player, "messages.inventory-space-needed",
+                            plugin.placeholders("amount", String.valueOf(items.size())));
+                    return;
+                }
+            }
+
+            // The service call decides who gets the rewards, so a double click
+            // must not reach it twice while the first claim is still in flight.
+            UUID playerId = player.getUniqueId();
+            if (!claimsInFlight.add(playerId)) {
+                return;
+            }
+            CompletableFuture<Boolean> claim = asyncMail.claimMailAsync(player, mailId);
+            claim.whenComplete((claimed, claimError) -> claimsInFlight.remove(playerId));
+            asyncMail.thenAtEntity(claim, player, (claimed, claimError) -> {
+                if (claimError != null) {
+                    plugin.getLogger().warning("Failed to claim mail " + mailId + ": " + claimError.getMessage());
+                }
+                if (Boolean.TRUE.equals(claimed)) {
+                    grantRewards(player, loaded);
+                }
+                player.closeInventory();
+                plugin.openMainGUI(player);
+                String messageKey = loaded.hasRewards() ? "messages.items-claimed" : "messages.no-items-in-mail";
+                player.sendMessage(plugin.legacy(config().getString("messages.prefix") +
+                        config().getString(messageKey)));
+            });
+        });
+    }
+
+    private void grantRewards(Player player, ClaimContents contents) {
+        contents.items().forEach(item -> player.getInventory().addItem(item).values()
+                .forEach(leftover -> player.getWorld().dropItem(player.getLocation(), leftover)));
 
+        List<CommandItem> commandItems = contents.commandItems();
         if (!commandItems.isEmpty()) {
             plugin.getFoliaLib().getScheduler().runNextTick(task -> commandItems.forEach(commandItem ->
                     commandItem.commands().forEach(command -> {
@@ -153,13 +200,12 @@ final class MailViewClickActions {
                         Bukkit.dispatchCommand(Bukkit.getConsoleSender(), processed);
                     })));
         }
+    }
 
-        plugin.getMailService().claimMail(player, mailId);
-        player.closeInventory();
-        plugin.openMainGUI(player);
-        String messageKey = hasRewards ? "messages.items-claimed" : "messages.no-items-in-mail";
-        player.sendMessage(plugin.legacy(config().getString("messages.prefix") +
-                config().getString(messageKey)));
+    private record ClaimContents(List<ItemStack> items, List<CommandItem> commandItems) {
+        boolean hasRewards() {
+            return !items.isEmpty() || !commandItems.isEmpty();
+        }
     }
 
     private String extractMailId(ItemStack item) {
@@ -170,11 +216,15 @@ final class MailViewClickActions {
         return meta.getPersistentDataContainer().get(mailIdKey, PersistentDataType.STRING);
     }
 
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 }
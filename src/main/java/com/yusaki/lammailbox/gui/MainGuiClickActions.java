@@ -1,7 +1,6 @@
 package com.yusaki.lammailbox.gui;
 
 import com.yusaki.lammailbox.LamMailBox;
-import com.yusaki.lammailbox.repository.MailRecord;
 import org.bukkit.Bukkit;
 import org.bukkit.NamespacedKey;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -11,12 +10,10 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Handles interactions inside the main mailbox GUI.
@@ -47,7 +44,7 @@ final class MainGuiClickActions {
         }
 
         if (isEnabled("gui.main.items.create-mail") &&
-                event.getSlot() == config().getInt("gui.main.items.create-mail.slot")) {
+                event.getSlot() == item("gui.main.items.create-mail").slot(0)) {
             if (isViewingAsOther(player)) {
                 player.sendMessage(plugin.legacy(config().getString("messages.prefix") +
                         config().getString("messages.cannot-create-as-other")));
@@ -58,13 +55,13 @@ final class MainGuiClickActions {
         }
 
         if (isEnabled("gui.main.items.sent-mail") &&
-                event.getSlot() == config().getInt("gui.main.items.sent-mail.slot")) {
+                event.getSlot() == item("gui.main.items.sent-mail").slot(0)) {
             plugin.openSentMailGUI(player);
             return;
         }
 
         if (isEnabled("gui.main.items.mail-display") &&
-                config().getIntegerList("gui.main.items.mail-display.slots").contains(event.getSlot())) {
+                item("gui.main.items.mail-display").slots().contains(event.getSlot())) {
             String mailId = extractMailId(clicked);
             if (mailId != null) {
                 plugin.openMailView(player, mailId);
@@ -93,18 +90,11 @@ final class MainGuiClickActions {
 
     private void handleMailboxPageNavigation(Player player, String targetName, boolean isNext) {
         UUID viewerId = player.getUniqueId();
-        List<Integer> slots = config().getIntegerList("gui.main.items.mail-display.slots");
-        int slotsPerPage = (slots != null && !slots.isEmpty()) ? slots.size() : 21;
-
-        List<MailRecord> records = plugin.getMailRepository().listMailIds().stream()
-                .map(id -> plugin.getMailRepository().findRecord(id).orElse(null))
-                .filter(Objects::nonNull)
-                .filter(MailRecord::active)
-                .filter(record -> record.canBeClaimedBy(targetName))
-                .sorted(Comparator.comparingLong(MailRecord::sentDate).reversed())
-                .collect(Collectors.toList());
-
-        int totalPages = Math.max(1, (records.size() + slotsPerPage - 1) / slotsPerPage);
+        List<Integer> slots = item("gui.main.items.mail-display").slots();
+        int slotsPerPage = !slots.isEmpty() ? slots.size() : 21;
+
+        int mailCount = plugin.getMailService().countUnreadMail(targetName);
+        int totalPages = Math.max(1, (mailCount + slotsPerPage - 1) / slotsPerPage);
         int currentPage = plugin.getMailboxPages().getOrDefault(viewerId, 1);
         int newPage = isNext ? currentPage + 1 : currentPage - 1;
         newPage = Math.max(1, Math.min(totalPages, newPage));
@@ -140,11 +130,15 @@ final class MainGuiClickActions {
                 PersistentDataType.STRING);
     }
 
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 }
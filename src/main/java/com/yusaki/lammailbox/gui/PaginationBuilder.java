@@ -3,7 +3,6 @@ package com.yusaki.lammailbox.gui;
 import com.yusaki.lammailbox.LamMailBox;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -54,16 +53,17 @@ final class PaginationBuilder {
             return;
         }
 
-        FileConfiguration config = plugin.getConfig();
+        GuiLayout layout = plugin.getGuiLayout();
         Set<Integer> reserved = settings.reservedSlots() != null
                 ? new HashSet<>(settings.reservedSlots())
                 : new HashSet<>();
 
         String basePath = settings.basePath();
-        if (config.getBoolean(basePath + ".previous-button.enabled", true) && currentPage > 1) {
+        GuiLayout.Item previous = layout.item(basePath + ".previous-button");
+        if (previous.enabled() && currentPage > 1) {
             placePaginationButton(inv,
-                    basePath + ".previous-button",
-                    "ARROW",
+                    previous,
+                    Material.ARROW,
                     "&e← Previous",
                     36,
                     PaginationButtonType.PREVIOUS,
@@ -74,10 +74,11 @@ final class PaginationBuilder {
                     settings.metaCustomizer());
         }
 
-        if (config.getBoolean(basePath + ".next-button.enabled", true) && currentPage < totalPages) {
+        GuiLayout.Item next = layout.item(basePath + ".next-button");
+        if (next.enabled() && currentPage < totalPages) {
             placePaginationButton(inv,
-                    basePath + ".next-button",
-                    "ARROW",
+                    next,
+                    Material.ARROW,
                     "&eNext →",
                     44,
                     PaginationButtonType.NEXT,
@@ -88,10 +89,11 @@ final class PaginationBuilder {
                     settings.metaCustomizer());
         }
 
-        if (config.getBoolean(basePath + ".page-indicator.enabled", true)) {
+        GuiLayout.Item indicator = layout.item(basePath + ".page-indicator");
+        if (indicator.enabled()) {
             placePaginationButton(inv,
-                    basePath + ".page-indicator",
-                    "BOOK",
+                    indicator,
+                    Material.BOOK,
                     "&6Page %current%/%total%",
                     40,
                     PaginationButtonType.INDICATOR,
@@ -104,8 +106,8 @@ final class PaginationBuilder {
     }
 
     private void placePaginationButton(Inventory inv,
-                                       String path,
-                                       String defaultMaterial,
+                                       GuiLayout.Item control,
+                                       Material defaultMaterial,
                                        String defaultName,
                                        int defaultSlot,
                                        PaginationButtonType type,
@@ -114,32 +116,25 @@ final class PaginationBuilder {
                                        String action,
                                        Set<Integer> reservedSlots,
                                        BiConsumer<ItemMeta, PaginationButtonType> metaCustomizer) {
-        FileConfiguration config = plugin.getConfig();
-
-        int preferred = config.getInt(path + ".slot", defaultSlot);
-        String materialName = config.getString(path + ".material", defaultMaterial);
-        Material material = Material.matchMaterial(materialName);
-        if (material == null) {
+        // A configured but unknown material hides the button, as it always has.
+        if (control.material() == null && control.text("material") != null) {
             return;
         }
+        int preferred = control.slot(defaultSlot);
 
-        ItemStack button = new ItemStack(material);
+        ItemStack button = new ItemStack(control.material(defaultMaterial));
         ItemMeta meta = button.getItemMeta();
         if (meta == null) {
             return;
         }
 
-        String name = config.getString(path + ".name", defaultName);
-        if (name != null) {
-            if (type == PaginationButtonType.INDICATOR) {
-                name = plugin.getMessage(path + ".name", plugin.placeholders(
-                        "current", String.valueOf(currentPage),
-                        "total", String.valueOf(totalPages)
-                ));
-            } else {
-                name = plugin.legacy(name);
-            }
-            meta.setDisplayName(name);
+        if (type == PaginationButtonType.INDICATOR) {
+            meta.setDisplayName(plugin.getMessage(control.path() + ".name", plugin.placeholders(
+                    "current", String.valueOf(currentPage),
+                    "total", String.valueOf(totalPages)
+            )));
+        } else {
+            meta.setDisplayName(control.rawName() != null ? control.name() : plugin.legacy(defaultName));
         }
 
         if (type != PaginationButtonType.INDICATOR && action != null) {
@@ -150,7 +145,7 @@ final class PaginationBuilder {
             metaCustomizer.accept(meta, type);
         }
 
-        itemStyler.apply(meta, path);
+        itemStyler.apply(meta, control);
         button.setItemMeta(meta);
 
         Integer targetSlot = findAvailableSlot(inv, preferred, reservedSlots);
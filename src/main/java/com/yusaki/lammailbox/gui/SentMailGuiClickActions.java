@@ -1,7 +1,6 @@
 package com.yusaki.lammailbox.gui;
 
 import com.yusaki.lammailbox.LamMailBox;
-import com.yusaki.lammailbox.repository.MailRecord;
 import org.bukkit.Bukkit;
 import org.bukkit.NamespacedKey;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -11,12 +10,10 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Handles interactions inside the sent-mail list GUI and sent-mail detail view.
@@ -47,13 +44,13 @@ final class SentMailGuiClickActions {
         }
 
         if (isEnabled("gui.sent-mail.items.back-button") &&
-                event.getSlot() == config().getInt("gui.sent-mail.items.back-button.slot")) {
+                event.getSlot() == item("gui.sent-mail.items.back-button").slot(0)) {
             handleBackButton(player);
             return;
         }
 
         if (isEnabled("gui.sent-mail.items.sent-mail-display") &&
-                config().getIntegerList("gui.sent-mail.items.sent-mail-display.slots").contains(event.getSlot())) {
+                item("gui.sent-mail.items.sent-mail-display").slots().contains(event.getSlot())) {
             String mailId = extractMailId(clicked);
             if (mailId != null) {
                 plugin.openSentMailView(player, mailId);
@@ -77,7 +74,7 @@ final class SentMailGuiClickActions {
         }
 
         if (isEnabled("gui.sent-mail-view.items.delete-button") &&
-                event.getSlot() == config().getInt("gui.sent-mail-view.items.delete-button.slot")) {
+                event.getSlot() == item("gui.sent-mail-view.items.delete-button").slot(0)) {
             String mailId = extractMailId(clicked);
             if (mailId != null) {
                 plugin.handleSentMailDelete(player, mailId);
@@ -121,16 +118,11 @@ final class SentMailGuiClickActions {
 
     private void handleSentMailboxPageNavigation(Player player, String targetName, boolean isNext) {
         UUID viewerId = player.getUniqueId();
-        List<Integer> slots = config().getIntegerList("gui.sent-mail.items.sent-mail-display.slots");
-        int slotsPerPage = (slots != null && !slots.isEmpty()) ? slots.size() : 21;
+        List<Integer> slots = item("gui.sent-mail.items.sent-mail-display").slots();
+        int slotsPerPage = !slots.isEmpty() ? slots.size() : 21;
 
-        List<MailRecord> records = plugin.getMailRepository().listMailIdsBySender(targetName).stream()
-                .map(id -> plugin.getMailRepository().findRecord(id).orElse(null))
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparingLong(MailRecord::sentDate).reversed())
-                .collect(Collectors.toList());
-
-        int totalPages = Math.max(1, (records.size() + slotsPerPage - 1) / slotsPerPage);
+        int mailCount = plugin.getMailRepository().countMailBySender(targetName);
+        int totalPages = Math.max(1, (mailCount + slotsPerPage - 1) / slotsPerPage);
         int currentPage = plugin.getSentMailboxPages().getOrDefault(viewerId, 1);
         int newPage = isNext ? currentPage + 1 : currentPage - 1;
         newPage = Math.max(1, Math.min(totalPages, newPage));
@@ -151,11 +143,15 @@ final class SentMailGuiClickActions {
                 PersistentDataType.STRING);
     }
 
+    private GuiLayout.Item item(String path) {
+        return plugin.getGuiLayout().item(path);
+    }
+
     private FileConfiguration config() {
         return plugin.getConfig();
     }
 
     private boolean isEnabled(String path) {
-        return config().getBoolean(path + ".enabled", true);
+        return item(path).enabled();
     }
 }
@@ -114,13 +114,21 @@ public final class MailingScheduler {
                     continue;
                 }
 
-                Runnable delivery = () -> deliverToSinglePlayer(definition, playerName);
+                // Sending writes to storage, so keep it off the player's region thread.
+                Runnable delivery = () -> plugin.getAsyncMail()
+                        .supply(() -> deliverToSinglePlayer(definition, playerName))
+                        .whenComplete((ignored, error) -> {
+                            if (error != null) {
+                                plugin.getLogger().warning("Failed to send mailing " + definition.id()
+                                        + " to " + playerName + ": " + error.getMessage());
+                            }
+                        });
                 Duration delay = definition.firstJoinDelay();
                 if (delay != null && !delay.isNegative() && !delay.isZero()) {
                     long ticks = Math.max(1L, delay.toMillis() / 50L);
                     foliaLib.getScheduler().runLater(delayTask -> delivery.run(), ticks);
                 } else {
-                    submit(delivery);
+                    delivery.run();
                 }
             }
         });
@@ -240,7 +248,9 @@ public final class MailingScheduler {
         try {
             MailDelivery delivery = mailService.sendConsoleMail(Bukkit.getConsoleSender(), session);
             if (!definition.sender().equalsIgnoreCase(delivery.getSenderName())) {
-                plugin.getMailRepository().saveMail(delivery.getMailId(), java.util.Map.of("sender", definition.sender()));
+                String mailId = delivery.getMailId();
+                plugin.getMailRepository().saveMailAsync(mailId, java.util.Map.of("sender", definition.sender()))
+                        .thenRun(() -> plugin.getInboxIndex().updated(mailId, plugin.getMailRepository().findRecord(mailId)));
             }
             return java.util.Optional.of(delivery);
         } catch (IllegalArgumentException ex) {
@@ -339,10 +349,6 @@ public final class MailingScheduler {
         return receiver == null || receiver.isBlank() ? "all" : receiver;
     }
 
-    private void submit(Runnable task) {
-        foliaLib.getScheduler().runNextTick(scheduledTask -> task.run());
-    }
-
     public OptionalLong previewNextRunEpoch(String mailingId) {
         CronEntry entry = cronEntryIndex.get(mailingId);
         if (entry == null) {
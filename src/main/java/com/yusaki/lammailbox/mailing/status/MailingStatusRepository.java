@@ -1,5 +1,7 @@
 package com.yusaki.lammailbox.mailing.status;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -44,6 +46,13 @@ public interface MailingStatusRepository {
 
     void purgeMissingMailings(Set<String> activeIds);
 
+    /**
+     * Backend-specific counters shown by {@code /lmb stats}.
+     */
+    default Map<String, String> metrics() {
+        return Collections.emptyMap();
+    }
+
     default void shutdown() {
         flush();
     }
@@ -1,80 +1,127 @@
 package com.yusaki.lammailbox.mailing.status;
 
 import com.yusaki.lammailbox.LamMailBox;
-import org.sqlite.SQLiteDataSource;
+import com.yusaki.lammailbox.repository.SchemaMigrator;
+import com.yusaki.lammailbox.repository.SqliteConnectionPool;
+import com.yusaki.lammailbox.util.MetricFormat;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Mailing status in SQLite. It normally lives in its own database file so
+ * first-join and cron bookkeeping never waits on the mail store's write lock.
+ */
 public final class SqliteMailingStatusRepository implements MailingStatusRepository {
     private static final String GLOBAL_KEY = "__GLOBAL__";
 
     private final LamMailBox plugin;
-    private final SQLiteDataSource dataSource;
+    private final SqliteConnectionPool pool;
 
     public SqliteMailingStatusRepository(LamMailBox plugin, Path databasePath) {
+        this(plugin, databasePath, null);
+    }
+
+    /**
+     * @param legacyDatabasePath the shared mail database that held mailing status
+     *                           before it moved to {@code databasePath}, or null
+     *                           when both use the same file
+     */
+    public SqliteMailingStatusRepository(LamMailBox plugin, Path databasePath, Path legacyDatabasePath) {
         this.plugin = plugin;
-        this.dataSource = new SQLiteDataSource();
-        this.dataSource.setUrl("jdbc:sqlite:" + databasePath.toAbsolutePath());
-        initialize();
+        this.pool = new SqliteConnectionPool(plugin.getLogger(), databasePath, 1);
+        initialize(legacyDatabasePath);
     }
 
-    private void initialize() {
-        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS mailing_status ("
-                    + "mailing_id TEXT NOT NULL,"
-                    + "player_uuid TEXT NOT NULL,"
-                    + "last_sent INTEGER NOT NULL,"
-                    + "run_count INTEGER NOT NULL DEFAULT 0,"
-                    + "PRIMARY KEY (mailing_id, player_uuid))");
-            ensureRunCountColumn(connection);
+    private void initialize(Path legacyDatabasePath) {
+        boolean importLegacy = legacyDatabasePath != null && Files.isRegularFile(legacyDatabasePath);
+        SchemaMigrator migrator = new SchemaMigrator(plugin.getLogger(), "mailing-status")
+                .step(1, "create mailing status table", connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("CREATE TABLE IF NOT EXISTS mailing_status ("
+                                + "mailing_id TEXT NOT NULL,"
+                                + "player_uuid TEXT NOT NULL,"
+                                + "last_sent INTEGER NOT NULL,"
+                                + "run_count INTEGER NOT NULL DEFAULT 0,"
+                                + "PRIMARY KEY (mailing_id, player_uuid))");
+                    }
+                })
+                .step(2, "add mailing run count", connection -> SchemaMigrator.addColumnIfAbsent(
+                        connection, "mailing_status", "run_count", "INTEGER NOT NULL DEFAULT 0"))
+                .step(3, "import mailing status from the mail database", connection -> {
+                    if (importLegacy) {
+                        importLegacyStatus(connection);
+                    }
+                });
+        try {
+            pool.exclusive(connection -> {
+                // ATTACH is not allowed inside a transaction, so it wraps the whole run.
+                if (importLegacy) {
+                    try (PreparedStatement attach = connection.prepareStatement("ATTACH DATABASE ? AS legacy")) {
+                        attach.setString(1, legacyDatabasePath.toAbsolutePath().toString());
+                        attach.execute();
+                    }
+                }
+                try {
+                    return migrator.migrate(connection);
+                } finally {
+                    if (importLegacy) {
+                        try (Statement detach = connection.createStatement()) {
+                            detach.execute("DETACH DATABASE legacy");
+                        }
+                    }
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().severe("Failed to initialize mailing status table: " + ex.getMessage());
         }
     }
 
-    private void ensureRunCountColumn(Connection connection) {
-        try (ResultSet rs = connection.getMetaData().getColumns(null, null, "mailing_status", "run_count")) {
-            if (rs.next()) {
+    private void importLegacyStatus(Connection connection) throws SQLException {
+        boolean hasRunCount = false;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA legacy.table_info(mailing_status)")) {
+            if (!rs.next()) {
                 return;
             }
-        } catch (SQLException ignored) {
+            do {
+                hasRunCount |= "run_count".equalsIgnoreCase(rs.getString("name"));
+            } while (rs.next());
         }
-
         try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("ALTER TABLE mailing_status ADD COLUMN run_count INTEGER NOT NULL DEFAULT 0");
-        } catch (SQLException ex) {
-            plugin.getLogger().warning("Failed to add run_count column to mailing_status: " + ex.getMessage());
-        }
-    }
-
-    private Connection getConnection() throws SQLException {
-        Connection connection = dataSource.getConnection();
-        try (Statement pragma = connection.createStatement()) {
-            pragma.execute("PRAGMA foreign_keys = ON");
+            int imported = statement.executeUpdate("INSERT OR IGNORE INTO main.mailing_status "
+                    + "(mailing_id, player_uuid, last_sent, run_count) "
+                    + "SELECT mailing_id, player_uuid, last_sent, " + (hasRunCount ? "run_count" : "0")
+                    + " FROM legacy.mailing_status");
+            if (imported > 0) {
+                plugin.getLogger().info("Imported " + imported + " mailing status rows from the mail database");
+            }
         }
-        return connection;
     }
 
     @Override
     public long getLastRun(String mailingId) {
         String sql = "SELECT last_sent FROM mailing_status WHERE mailing_id = ? AND player_uuid = ?";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, mailingId);
-            ps.setString(2, GLOBAL_KEY);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong("last_sent");
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, GLOBAL_KEY);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getLong("last_sent") : 0L;
+                    }
                 }
-            }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to read last run for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -83,15 +130,17 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
 
     @Override
     public void setLastRun(String mailingId, long timestamp) {
-        try (Connection connection = getConnection()) {
-            ensureRow(connection, mailingId, null);
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE mailing_status SET last_sent = ? WHERE mailing_id = ? AND player_uuid = ?")) {
-                ps.setLong(1, timestamp);
-                ps.setString(2, mailingId);
-                ps.setString(3, GLOBAL_KEY);
-                ps.executeUpdate();
-            }
+        try {
+            pool.write(connection -> {
+                ensureRow(connection, mailingId, null);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE mailing_status SET last_sent = ? WHERE mailing_id = ? AND player_uuid = ?")) {
+                    ps.setLong(1, timestamp);
+                    ps.setString(2, mailingId);
+                    ps.setString(3, GLOBAL_KEY);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to set last run for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -100,15 +149,16 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
     @Override
     public int getRunCount(String mailingId) {
         String sql = "SELECT run_count FROM mailing_status WHERE mailing_id = ? AND player_uuid = ?";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, mailingId);
-            ps.setString(2, GLOBAL_KEY);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("run_count");
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, GLOBAL_KEY);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt("run_count") : 0;
+                    }
                 }
-            }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to read run count for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -117,14 +167,16 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
 
     @Override
     public void incrementRunCount(String mailingId) {
-        try (Connection connection = getConnection()) {
-            ensureRow(connection, mailingId, null);
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE mailing_status SET run_count = run_count + 1 WHERE mailing_id = ? AND player_uuid = ?")) {
-                ps.setString(1, mailingId);
-                ps.setString(2, GLOBAL_KEY);
-                ps.executeUpdate();
-            }
+        try {
+            pool.write(connection -> {
+                ensureRow(connection, mailingId, null);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE mailing_status SET run_count = run_count + 1 WHERE mailing_id = ? AND player_uuid = ?")) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, GLOBAL_KEY);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to increment run count for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -132,17 +184,18 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
 
     @Override
     public boolean incrementRunCountIfBelow(String mailingId, int maxRuns) {
-        try (Connection connection = getConnection()) {
-            ensureRow(connection, mailingId, null);
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE mailing_status SET run_count = run_count + 1 "
-                    + "WHERE mailing_id = ? AND player_uuid = ? AND run_count < ?")) {
-                ps.setString(1, mailingId);
-                ps.setString(2, GLOBAL_KEY);
-                ps.setInt(3, maxRuns);
-                int affected = ps.executeUpdate();
-                return affected > 0;
-            }
+        try {
+            return pool.write(connection -> {
+                ensureRow(connection, mailingId, null);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE mailing_status SET run_count = run_count + 1 "
+                        + "WHERE mailing_id = ? AND player_uuid = ? AND run_count < ?")) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, GLOBAL_KEY);
+                    ps.setInt(3, maxRuns);
+                    return ps.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to conditionally increment run count for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -152,15 +205,16 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
     @Override
     public Optional<Long> getLastRunForPlayer(String mailingId, UUID playerId) {
         String sql = "SELECT last_sent FROM mailing_status WHERE mailing_id = ? AND player_uuid = ?";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, mailingId);
-            ps.setString(2, playerId.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(rs.getLong("last_sent"));
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, playerId.toString());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? Optional.of(rs.getLong("last_sent")) : Optional.<Long>empty();
+                    }
                 }
-            }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to read player run for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -169,15 +223,17 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
 
     @Override
     public void setLastRunForPlayer(String mailingId, UUID playerId, long timestamp) {
-        try (Connection connection = getConnection()) {
-            ensureRow(connection, mailingId, playerId);
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "UPDATE mailing_status SET last_sent = ? WHERE mailing_id = ? AND player_uuid = ?")) {
-                ps.setLong(1, timestamp);
-                ps.setString(2, mailingId);
-                ps.setString(3, playerId.toString());
-                ps.executeUpdate();
-            }
+        try {
+            pool.write(connection -> {
+                ensureRow(connection, mailingId, playerId);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE mailing_status SET last_sent = ? WHERE mailing_id = ? AND player_uuid = ?")) {
+                    ps.setLong(1, timestamp);
+                    ps.setString(2, mailingId);
+                    ps.setString(3, playerId.toString());
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to set player run for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -186,13 +242,16 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
     @Override
     public boolean hasReceived(String mailingId, UUID playerId) {
         String sql = "SELECT 1 FROM mailing_status WHERE mailing_id = ? AND player_uuid = ?";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, mailingId);
-            ps.setString(2, playerId.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, playerId.toString());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next();
+                    }
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to check player receipt for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -208,13 +267,15 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
     public boolean markReceivedIfNew(String mailingId, UUID playerId, long timestamp) {
         String sql = "INSERT INTO mailing_status (mailing_id, player_uuid, last_sent, run_count) VALUES (?, ?, ?, 0) "
                 + "ON CONFLICT(mailing_id, player_uuid) DO NOTHING";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, mailingId);
-            ps.setString(2, playerId.toString());
-            ps.setLong(3, timestamp);
-            int affected = ps.executeUpdate();
-            return affected > 0;
+        try {
+            return pool.write(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, mailingId);
+                    ps.setString(2, playerId.toString());
+                    ps.setLong(3, timestamp);
+                    return ps.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to conditionally mark received for mailing " + mailingId + ": " + ex.getMessage());
         }
@@ -241,20 +302,39 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
         String sql = activeIds.isEmpty()
                 ? "DELETE FROM mailing_status"
                 : "DELETE FROM mailing_status WHERE mailing_id NOT IN (" + placeholders(activeIds.size()) + ")";
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            if (!activeIds.isEmpty()) {
-                int index = 1;
-                for (String id : activeIds) {
-                    ps.setString(index++, id);
+        try {
+            pool.write(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (String id : activeIds) {
+                        ps.setString(index++, id);
+                    }
+                    return ps.executeUpdate();
                 }
-            }
-            ps.executeUpdate();
+            });
         } catch (SQLException ex) {
             plugin.getLogger().warning("Failed to purge mailing status entries: " + ex.getMessage());
         }
     }
 
+    @Override
+    public Map<String, String> metrics() {
+        SqliteConnectionPool.Stats stats = pool.stats();
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("status.write-checkouts", stats.writeCheckouts()
+                + " (avg wait " + MetricFormat.formatMillis(stats.averageWriteWaitMillis())
+                + ", max " + MetricFormat.formatMillis(stats.maxWriteWaitMillis()) + ")");
+        metrics.put("status.db-lock-wait", "avg " + MetricFormat.formatMillis(stats.averageLockWaitMillis())
+                + ", max " + MetricFormat.formatMillis(stats.maxLockWaitMillis()));
+        return metrics;
+    }
+
+    @Override
+    public void shutdown() {
+        pool.close();
+    }
+
+
     private String placeholders(int count) {
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < count; i++) {
@@ -265,4 +345,4 @@ public final class SqliteMailingStatusRepository implements MailingStatusReposit
         }
         return builder.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,43 @@
 package com.yusaki.lammailbox.mailing.status;
 
+import com.tcoded.folialib.wrapper.task.WrappedTask;
 import com.yusaki.lammailbox.LamMailBox;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mailing status kept in concurrent in-memory maps and written behind to
+ * mailing-status.yml periodically and on shutdown.
+ */
 public final class YamlMailingStatusRepository implements MailingStatusRepository {
+    private static final long FLUSH_INTERVAL_TICKS = 100L;
+
     private final LamMailBox plugin;
     private final File file;
-    private final YamlConfiguration yaml;
+    private final Map<String, MailingStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final WrappedTask flushTask;
+
+    private static final class MailingStatus {
+        private final AtomicLong lastRun = new AtomicLong();
+        private final AtomicInteger runCount = new AtomicInteger();
+        private final Map<UUID, Long> players = new ConcurrentHashMap<>();
+    }
 
     public YamlMailingStatusRepository(LamMailBox plugin) {
         this.plugin = plugin;
@@ -25,125 +49,155 @@ public final class YamlMailingStatusRepository implements MailingStatusRepositor
                 plugin.getLogger().warning("Unable to create mailing-status.yml: " + e.getMessage());
             }
         }
-        this.yaml = YamlConfiguration.loadConfiguration(file);
+        load(YamlConfiguration.loadConfiguration(file));
+        this.flushTask = plugin.getFoliaLib().getScheduler()
+                .runTimerAsync(this::flush, FLUSH_INTERVAL_TICKS, FLUSH_INTERVAL_TICKS);
+    }
+
+    private void load(YamlConfiguration yaml) {
+        ConfigurationSection root = yaml.getConfigurationSection("mailings");
+        if (root == null) {
+            return;
+        }
+        for (String mailingId : root.getKeys(false)) {
+            MailingStatus status = status(mailingId);
+            status.lastRun.set(yaml.getLong(nodePath(mailingId, "last-run"), 0L));
+            status.runCount.set(yaml.getInt(nodePath(mailingId, "run-count"), 0));
+            ConfigurationSection players = yaml.getConfigurationSection(nodePath(mailingId, "players"));
+            if (players == null) {
+                continue;
+            }
+            for (String key : players.getKeys(false)) {
+                try {
+                    status.players.put(UUID.fromString(key), players.getLong(key));
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Ignoring invalid player id in mailing-status.yml: " + key);
+                }
+            }
+        }
     }
 
     @Override
-    public synchronized long getLastRun(String mailingId) {
-        return yaml.getLong(nodePath(mailingId, "last-run"), 0L);
+    public long getLastRun(String mailingId) {
+        MailingStatus status = statuses.get(mailingId);
+        return status != null ? status.lastRun.get() : 0L;
     }
 
     @Override
-    public synchronized void setLastRun(String mailingId, long timestamp) {
-        ensureMailingSection(mailingId);
-        yaml.set(nodePath(mailingId, "last-run"), timestamp);
-        saveQuietly();
+    public void setLastRun(String mailingId, long timestamp) {
+        status(mailingId).lastRun.set(timestamp);
+        dirty.set(true);
     }
 
     @Override
-    public synchronized int getRunCount(String mailingId) {
-        return yaml.getInt(nodePath(mailingId, "run-count"), 0);
+    public int getRunCount(String mailingId) {
+        MailingStatus status = statuses.get(mailingId);
+        return status != null ? status.runCount.get() : 0;
     }
 
     @Override
-    public synchronized void incrementRunCount(String mailingId) {
-        ensureMailingSection(mailingId);
-        String path = nodePath(mailingId, "run-count");
-        int current = yaml.getInt(path, 0) + 1;
-        yaml.set(path, current);
-        saveQuietly();
+    public void incrementRunCount(String mailingId) {
+        status(mailingId).runCount.incrementAndGet();
+        dirty.set(true);
     }
 
     @Override
-    public synchronized boolean incrementRunCountIfBelow(String mailingId, int maxRuns) {
-        ensureMailingSection(mailingId);
-        String path = nodePath(mailingId, "run-count");
-        int current = yaml.getInt(path, 0);
-        if (current >= maxRuns) {
-            return false;
-        }
-        yaml.set(path, current + 1);
-        saveQuietly();
+    public boolean incrementRunCountIfBelow(String mailingId, int maxRuns) {
+        AtomicInteger runCount = status(mailingId).runCount;
+        int current;
+        do {
+            current = runCount.get();
+            if (current >= maxRuns) {
+                return false;
+            }
+        } while (!runCount.compareAndSet(current, current + 1));
+        dirty.set(true);
         return true;
     }
 
     @Override
-    public synchronized Optional<Long> getLastRunForPlayer(String mailingId, UUID playerId) {
-        String path = nodePath(mailingId, "players." + playerId);
-        if (!yaml.contains(path)) {
-            return Optional.empty();
-        }
-        return Optional.of(yaml.getLong(path));
+    public Optional<Long> getLastRunForPlayer(String mailingId, UUID playerId) {
+        MailingStatus status = statuses.get(mailingId);
+        return status != null ? Optional.ofNullable(status.players.get(playerId)) : Optional.empty();
     }
 
     @Override
-    public synchronized void setLastRunForPlayer(String mailingId, UUID playerId, long timestamp) {
-        ensureMailingSection(mailingId);
-        yaml.set(nodePath(mailingId, "players." + playerId), timestamp);
-        saveQuietly();
+    public void setLastRunForPlayer(String mailingId, UUID playerId, long timestamp) {
+        status(mailingId).players.put(playerId, timestamp);
+        dirty.set(true);
     }
 
     @Override
-    public synchronized boolean hasReceived(String mailingId, UUID playerId) {
-        return yaml.contains(nodePath(mailingId, "players." + playerId));
+    public boolean hasReceived(String mailingId, UUID playerId) {
+        MailingStatus status = statuses.get(mailingId);
+        return status != null && status.players.containsKey(playerId);
     }
 
     @Override
-    public synchronized void markReceived(String mailingId, UUID playerId, long timestamp) {
+    public void markReceived(String mailingId, UUID playerId, long timestamp) {
         setLastRunForPlayer(mailingId, playerId, timestamp);
     }
 
     @Override
-    public synchronized boolean markReceivedIfNew(String mailingId, UUID playerId, long timestamp) {
-        String path = nodePath(mailingId, "players." + playerId);
-        if (yaml.contains(path)) {
+    public boolean markReceivedIfNew(String mailingId, UUID playerId, long timestamp) {
+        if (status(mailingId).players.putIfAbsent(playerId, timestamp) != null) {
             return false;
         }
-        ensureMailingSection(mailingId);
-        yaml.set(path, timestamp);
-        saveQuietly();
+        dirty.set(true);
         return true;
     }
 
+    /**
+     * Writes the current state if anything changed since the last flush. The
+     * file is replaced atomically so a crash mid-write keeps the previous copy.
+     */
     @Override
     public synchronized void flush() {
-        saveQuietly();
-    }
-
-    @Override
-    public synchronized void purgeMissingMailings(Set<String> activeIds) {
-        ConfigurationSection root = yaml.getConfigurationSection("mailings");
-        if (root == null) {
+        if (!dirty.getAndSet(false)) {
             return;
         }
-        boolean changed = false;
-        for (String key : root.getKeys(false)) {
-            if (!activeIds.contains(key)) {
-                yaml.set("mailings." + key, null);
-                changed = true;
+        YamlConfiguration yaml = new YamlConfiguration();
+        statuses.forEach((mailingId, status) -> {
+            yaml.createSection("mailings." + mailingId);
+            if (status.lastRun.get() != 0L) {
+                yaml.set(nodePath(mailingId, "last-run"), status.lastRun.get());
             }
-        }
-        if (changed) {
-            saveQuietly();
-        }
-    }
+            if (status.runCount.get() != 0) {
+                yaml.set(nodePath(mailingId, "run-count"), status.runCount.get());
+            }
+            status.players.forEach((playerId, timestamp) ->
+                    yaml.set(nodePath(mailingId, "players." + playerId), timestamp));
+        });
 
-    private void saveQuietly() {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
         try {
-            yaml.save(file);
+            Files.writeString(temp, yaml.saveToString(), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
+            dirty.set(true);
             plugin.getLogger().warning("Failed to save mailing-status.yml: " + e.getMessage());
         }
     }
 
-    private String nodePath(String mailingId, String suffix) {
-        return "mailings." + mailingId + "." + suffix;
+    @Override
+    public void purgeMissingMailings(Set<String> activeIds) {
+        if (statuses.keySet().retainAll(activeIds)) {
+            dirty.set(true);
+        }
     }
 
-    private void ensureMailingSection(String mailingId) {
-        String base = "mailings." + mailingId;
-        if (!yaml.contains(base)) {
-            yaml.createSection(base);
-        }
+    @Override
+    public void shutdown() {
+        flushTask.cancel();
+        flush();
+    }
+
+    private MailingStatus status(String mailingId) {
+        return statuses.computeIfAbsent(mailingId, ignored -> new MailingStatus());
+    }
+
+    private String nodePath(String mailingId, String suffix) {
+        return "mailings." + mailingId + "." + suffix;
     }
 }
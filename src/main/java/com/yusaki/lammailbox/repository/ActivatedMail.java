@@ -0,0 +1,7 @@
+package com.yusaki.lammailbox.repository;
+
+/**
+ * A scheduled mail that {@link MailRepository#activateDueScheduled} just made active.
+ */
+public record ActivatedMail(String mailId, String receiver, String sender) {
+}
@@ -0,0 +1,260 @@
+package com.yusaki.lammailbox.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only segment files holding serialized attachment payloads. Callers
+ * keep the returned {@link Ref} and read the payload back as a slice of a
+ * memory-mapped segment, so loading attachments copies nothing on the heap
+ * until the items are deserialized. Which payloads are still referenced is
+ * known only to the caller, which drives compaction through
+ * {@link #append(ByteBuffer)} and {@link #delete(int)}.
+ */
+final class AttachmentSegmentStore {
+    private static final String SEGMENT_PREFIX = "attachments-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Location of one payload.
+     */
+    record Ref(int segment, long offset, int length) {
+    }
+
+    /**
+     * Point-in-time view of segment usage.
+     */
+    record Stats(int segments, long totalBytes, long reads, long readBytes, long appends) {
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private MappedByteBuffer mapped;
+
+        private Segment(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Path directory;
+    private final Logger logger;
+    private final long segmentBytes;
+    private final Map<Integer, Segment> segments = new TreeMap<>();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder readBytes = new LongAdder();
+    private final LongAdder appends = new LongAdder();
+    private int activeSegment;
+
+    AttachmentSegmentStore(Path directory, Logger logger, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.logger = logger;
+        this.segmentBytes = Math.max(1024L * 1024L, segmentBytes);
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    int number = Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(number, new Segment(openSegment(number)));
+                    activeSegment = Math.max(activeSegment, number);
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            rollSegment();
+        }
+    }
+
+    /**
+     * Appends a payload and forces it to disk, so a reference committed
+     * afterwards never points at bytes that could be lost.
+     */
+    synchronized Ref append(ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        Segment segment = segments.get(activeSegment);
+        if (segment.channel.size() > 0 && segment.channel.size() + length > segmentBytes) {
+            rollSegment();
+            segment = segments.get(activeSegment);
+        }
+        long offset = segment.channel.size();
+        while (payload.hasRemaining()) {
+            segment.channel.write(payload, offset + (length - payload.remaining()));
+        }
+        segment.channel.force(false);
+        appends.increment();
+        return new Ref(activeSegment, offset, length);
+    }
+
+    /**
+     * A read-only view of a payload backed by the mapped segment.
+     */
+    ByteBuffer read(Ref ref) throws IOException {
+        MappedByteBuffer mapped = mapping(ref);
+        reads.increment();
+        readBytes.add(ref.length());
+        return mapped.duplicate()
+                .position((int) ref.offset())
+                .limit((int) ref.offset() + ref.length())
+                .slice()
+                .asReadOnlyBuffer();
+    }
+
+    private synchronized MappedByteBuffer mapping(Ref ref) throws IOException {
+        Segment segment = segments.get(ref.segment());
+        if (segment == null) {
+            throw new IOException(segmentName(ref.segment()) + " no longer exists");
+        }
+        long end = ref.offset() + ref.length();
+        if (segment.mapped == null || segment.mapped.capacity() < end) {
+            // The active segment keeps growing; sealed ones are mapped once at full size.
+            segment.mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+        }
+        if (segment.mapped.capacity() < end) {
+            throw new IOException("Attachment at " + ref + " lies past the end of " + segmentName(ref.segment()));
+        }
+        return segment.mapped;
+    }
+
+    /**
+     * Segments that no longer receive appends, with their size in bytes.
+     */
+    synchronized Map<Integer, Long> sealedSegments() throws IOException {
+        Map<Integer, Long> sealed = new TreeMap<>();
+        for (Map.Entry<Integer, Segment> entry : segments.entrySet()) {
+            if (entry.getKey() != activeSegment) {
+                sealed.put(entry.getKey(), entry.getValue().channel.size());
+            }
+        }
+        return sealed;
+    }
+
+    /**
+     * Removes a segment once nothing references it. Readers still holding a
+     * slice keep their mapping until it is garbage collected.
+     */
+    synchronized void delete(int number) throws IOException {
+        if (number == activeSegment) {
+            return;
+        }
+        Segment segment = segments.remove(number);
+        if (segment != null) {
+            segment.channel.close();
+            Files.deleteIfExists(directory.resolve(segmentName(number)));
+        }
+    }
+
+    synchronized Stats stats() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            try {
+                total += segment.channel.size();
+            } catch (IOException ignored) {
+                // A closed channel contributes nothing.
+            }
+        }
+        return new Stats(segments.size(), total, reads.sum(), readBytes.sum(), appends.sum());
+    }
+
+    synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warning("Failed to close attachment segment: " + e.getMessage());
+            }
+        }
+        segments.clear();
+    }
+
+    /**
+     * Packs serialized items as {@code count | (length | bytes)*}.
+     */
+    static ByteBuffer encode(List<byte[]> items) {
+        int size = Integer.BYTES;
+        for (byte[] item : items) {
+            size += Integer.BYTES + item.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(items.size());
+        for (byte[] item : items) {
+            buffer.putInt(item.length);
+            buffer.put(item);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Splits a payload written by {@link #encode(List)} into one stream per
+     * item, each reading straight from {@code payload}.
+     */
+    static List<InputStream> decode(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        int count = buffer.getInt();
+        List<InputStream> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            ByteBuffer item = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            items.add(new ByteBufferInputStream(item));
+        }
+        return items;
+    }
+
+    private void rollSegment() throws IOException {
+        int next = segments.isEmpty() ? 1 : activeSegment + 1;
+        segments.put(next, new Segment(openSegment(next)));
+        activeSegment = next;
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(directory.resolve(segmentName(number)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static String segmentName(int number) {
+        return String.format(Locale.ROOT, "%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.yusaki.lammailbox.repository;
+
+import com.yusaki.lammailbox.util.MetricFormat;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps recently read mails in memory in front of another repository. Entries
+ * are immutable {@link MailRecord} snapshots, plus a private copy of the raw
+ * data once it has been asked for, bounded by count and by an estimated heap
+ * weight and evicted least recently used first.
+ *
+ * <p>Deserialized attachments are cached the same way under their own memory
+ * budget. Callers always receive clones, since item stacks are mutable.</p>
+ *
+ * <p>Every write goes straight to the delegate and drops the affected entries,
+ * both when it is issued and when it completes, so a queued write can never
+ * leave a stale snapshot behind.</p>
+ */
+public final class CachingMailRepository implements MailRepository {
+    private static final long ENTRY_OVERHEAD = 160L;
+
+    private static final long ITEM_WEIGHT = 256L;
+    private static final long ITEM_META_WEIGHT = 1024L;
+
+    private record Entry(MailRecord record, Map<String, Object> raw, long weight) {
+    }
+
+    private record Attachments(List<ItemStack> items, long weight) {
+    }
+
+    private final MailRepository delegate;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final long attachmentBudget;
+    private final LinkedHashMap<String, Attachments> attachments = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder attachmentHits = new LongAdder();
+    private final LongAdder attachmentMisses = new LongAdder();
+    private final LongAdder attachmentEvictions = new LongAdder();
+    private final LongAdder deserializeNanos = new LongAdder();
+    private final LongAdder deserializeLoads = new LongAdder();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long weight;
+    private long attachmentWeight;
+    // Bumped by every write; a load that raced one is returned but not cached.
+    private long generation;
+
+    /**
+     * @param maxEntries             most mail records kept, or 0 to cache attachments only
+     * @param attachmentBudgetBytes  estimated heap for deserialized attachments, or 0 to
+     *                               always load them from the delegate
+     */
+    public CachingMailRepository(MailRepository delegate, int maxEntries, long maxWeightBytes,
+                                 long attachmentBudgetBytes) {
+        this.delegate = delegate;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxWeight = Math.max(1L, maxWeightBytes);
+        this.attachmentBudget = Math.max(0L, attachmentBudgetBytes);
+    }
+
+    public MailRepository delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Map<String, Object> loadMail(String mailId) {
+        return findMail(mailId).orElse(Collections.emptyMap());
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findMail(String mailId) {
+        Entry entry = get(mailId);
+        if (entry != null && entry.raw() != null) {
+            hits.increment();
+            return Optional.of(copyMap(entry.raw()));
+        }
+        misses.increment();
+        long loadGeneration = generation();
+        Optional<Map<String, Object>> loaded = delegate.findMail(mailId);
+        loaded.ifPresent(raw -> MailRecord.from(mailId, raw)
+                .ifPresent(record -> put(mailId, record, copyMap(raw), loadGeneration)));
+        return loaded;
+    }
+
+    @Override
+    public Optional<MailRecord> findRecord(String mailId) {
+        Entry entry = get(mailId);
+        if (entry != null) {
+            hits.increment();
+            return Optional.of(entry.record());
+        }
+        misses.increment();
+        long loadGeneration = generation();
+        Optional<MailRecord> loaded = delegate.findRecord(mailId);
+        loaded.ifPresent(record -> put(mailId, record, null, loadGeneration));
+        return loaded;
+    }
+
+    @Override
+    public List<MailRecord> findRecords(Collection<String> mailIds) {
+        Map<String, MailRecord> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String mailId : mailIds) {
+            Entry entry = get(mailId);
+            if (entry != null) {
+                found.put(mailId, entry.record());
+            } else {
+                missing.add(mailId);
+            }
+        }
+        hits.add(found.size());
+        misses.add(missing.size());
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation();
+            for (MailRecord record : delegate.findRecords(missing)) {
+                found.put(record.id(), record);
+                put(record.id(), record, null, loadGeneration);
+            }
+        }
+        List<MailRecord> records = new ArrayList<>(found.size());
+        for (String mailId : mailIds) {
+            MailRecord record = found.get(mailId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public void saveMail(String mailId, Map<String, Object> data) {
+        invalidate(mailId);
+        delegate.saveMail(mailId, data);
+        invalidate(mailId);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMailAsync(String mailId, Map<String, Object> data) {
+        invalidate(mailId);
+        return delegate.saveMailAsync(mailId, data).whenComplete((ignored, error) -> invalidate(mailId));
+    }
+
+    @Override
+    public void deleteMail(String mailId) {
+        invalidate(mailId);
+        delegate.deleteMail(mailId);
+        invalidate(mailId);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMailAsync(String mailId) {
+        invalidate(mailId);
+        return delegate.deleteMailAsync(mailId).whenComplete((ignored, error) -> invalidate(mailId));
+    }
+
+    @Override
+    public void saveMailItems(String mailId, List<ItemStack> items) {
+        invalidate(mailId);
+        delegate.saveMailItems(mailId, items);
+        invalidate(mailId);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMailItemsAsync(String mailId, List<ItemStack> items) {
+        invalidate(mailId);
+        return delegate.saveMailItemsAsync(mailId, items).whenComplete((ignored, error) -> invalidate(mailId));
+    }
+
+    @Override
+    public List<ItemStack> loadMailItems(String mailId) {
+        if (attachmentBudget > 0) {
+            Attachments cached = getAttachments(mailId);
+            if (cached != null) {
+                attachmentHits.increment();
+                return cloneItems(cached.items());
+            }
+        }
+        attachmentMisses.increment();
+        long loadGeneration = generation();
+        long started = cpuTime();
+        List<ItemStack> items = delegate.loadMailItems(mailId);
+        deserializeNanos.add(cpuTime() - started);
+        deserializeLoads.increment();
+        if (attachmentBudget > 0) {
+            putAttachments(mailId, cloneItems(items), loadGeneration);
+        }
+        return items;
+    }
+
+    @Override
+    public List<String> listMailIds() {
+        return delegate.listMailIds();
+    }
+
+    @Override
+    public List<String> listMailIdsBySender(String sender) {
+        return delegate.listMailIdsBySender(sender);
+    }
+
+    @Override
+    public List<String> listActiveMailIdsFor(String playerName) {
+        return delegate.listActiveMailIdsFor(playerName);
+    }
+
+    @Override
+    public void save() {
+        delegate.save();
+    }
+
+    @Override
+    public int countActiveMailFor(String playerName) {
+        return delegate.countActiveMailFor(playerName);
+    }
+
+    @Override
+    public MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit) {
+        return delegate.pageActiveMailFor(playerName, cursor, limit);
+    }
+
+    @Override
+    public MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit) {
+        return delegate.pageMailBySender(sender, cursor, limit);
+    }
+
+    @Override
+    public int countMailBySender(String sender) {
+        return delegate.countMailBySender(sender);
+    }
+
+    @Override
+    public int purgeExpired(long now, int batchSize) {
+        invalidateExpired(now);
+        int removed = delegate.purgeExpired(now, batchSize);
+        invalidateExpired(now);
+        return removed;
+    }
+
+    @Override
+    public List<String> listExpiredMailIds(long now, int limit) {
+        return delegate.listExpiredMailIds(now, limit);
+    }
+
+    @Override
+    public List<ActivatedMail> activateDueScheduled(long now) {
+        bumpGeneration();
+        List<ActivatedMail> activated = delegate.activateDueScheduled(now);
+        for (ActivatedMail mail : activated) {
+            invalidate(mail.mailId());
+        }
+        return activated;
+    }
+
+    @Override
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>(delegate.metrics());
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        int size;
+        long currentWeight;
+        synchronized (this) {
+            size = entries.size();
+            currentWeight = weight;
+        }
+        metrics.put("cache.records", size + "/" + maxEntries + " (~" + MetricFormat.formatBytes(currentWeight)
+                + " of " + MetricFormat.formatBytes(maxWeight) + ")");
+        metrics.put("cache.hit-rate", lookups == 0 ? "n/a" : String.format(Locale.ROOT, "%.1f%% (%d hits, %d misses)",
+                hitCount * 100.0 / lookups, hitCount, lookups - hitCount));
+        metrics.put("cache.evictions", String.valueOf(evictions.sum()));
+
+        long attachmentHitCount = attachmentHits.sum();
+        long attachmentLookups = attachmentHitCount + attachmentMisses.sum();
+        int attachmentSize;
+        long currentAttachmentWeight;
+        synchronized (this) {
+            attachmentSize = attachments.size();
+            currentAttachmentWeight = attachmentWeight;
+        }
+        if (attachmentBudget > 0) {
+            metrics.put("cache.attachments", attachmentSize + " mails (~"
+                    + MetricFormat.formatBytes(currentAttachmentWeight) + " of "
+                    + MetricFormat.formatBytes(attachmentBudget) + ", " + attachmentEvictions.sum()
+                    + " evicted)");
+            metrics.put("cache.attachment-hit-rate", attachmentLookups == 0 ? "n/a"
+                    : String.format(Locale.ROOT, "%.1f%% (%d hits, %d misses)",
+                    attachmentHitCount * 100.0 / attachmentLookups, attachmentHitCount,
+                    attachmentLookups - attachmentHitCount));
+        }
+        long loads = deserializeLoads.sum();
+        double totalMillis = deserializeNanos.sum() / 1_000_000.0;
+        metrics.put("cache.attachment-deserialize", loads + " loads, " + MetricFormat.formatMillis(totalMillis)
+                + " cpu (avg " + MetricFormat.formatMillis(loads == 0 ? 0.0 : totalMillis / loads) + ")");
+        return metrics;
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            entries.clear();
+            weight = 0L;
+            attachments.clear();
+            attachmentWeight = 0L;
+        }
+        delegate.shutdown();
+    }
+
+    private synchronized Entry get(String mailId) {
+        return entries.get(mailId);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private synchronized void bumpGeneration() {
+        generation++;
+    }
+
+    private synchronized void put(String mailId, MailRecord record, Map<String, Object> raw, long loadGeneration) {
+        if (maxEntries == 0 || loadGeneration != generation) {
+            return;
+        }
+        Entry existing = entries.get(mailId);
+        if (raw == null && existing != null && existing.raw() != null) {
+            // Keep the richer entry a concurrent findMail already stored.
+            return;
+        }
+        long entryWeight = ENTRY_OVERHEAD + weigh(record) + (raw != null ? weigh(raw) : 0L);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        Entry previous = entries.put(mailId, new Entry(record, raw, entryWeight));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entryWeight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().weight();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void invalidate(String mailId) {
+        generation++;
+        Entry removed = entries.remove(mailId);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+        removeAttachments(mailId);
+    }
+
+    private synchronized Attachments getAttachments(String mailId) {
+        return attachments.get(mailId);
+    }
+
+    private synchronized void putAttachments(String mailId, List<ItemStack> items, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        long entryWeight = ENTRY_OVERHEAD;
+        for (ItemStack item : items) {
+            entryWeight += item == null ? 8L : ITEM_WEIGHT + (item.hasItemMeta() ? ITEM_META_WEIGHT : 0L);
+        }
+        if (entryWeight > attachmentBudget) {
+            return;
+        }
+        Attachments previous = attachments.put(mailId, new Attachments(items, entryWeight));
+        if (previous != null) {
+            attachmentWeight -= previous.weight();
+        }
+        attachmentWeight += entryWeight;
+        Iterator<Attachments> eldest = attachments.values().iterator();
+        while (attachmentWeight > attachmentBudget && eldest.hasNext()) {
+            attachmentWeight -= eldest.next().weight();
+            eldest.remove();
+            attachmentEvictions.increment();
+        }
+    }
+
+    private synchronized void removeAttachments(String mailId) {
+        Attachments removed = attachments.remove(mailId);
+        if (removed != null) {
+            attachmentWeight -= removed.weight();
+        }
+    }
+
+    private synchronized void invalidateExpired(long now) {
+        generation++;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            Long expireDate = entry.getValue().record().expireDate();
+            if (expireDate != null && expireDate <= now) {
+                weight -= entry.getValue().weight();
+                iterator.remove();
+                removeAttachments(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Thread CPU time where the JVM supports it, wall time otherwise.
+     */
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static List<ItemStack> cloneItems(List<ItemStack> items) {
+        List<ItemStack> copy = new ArrayList<>(items.size());
+        for (ItemStack item : items) {
+            copy.add(item == null ? null : item.clone());
+        }
+        return copy;
+    }
+
+    /**
+     * Rough heap footprint of a record: two bytes per character plus a fixed
+     * cost per string and list element.
+     */
+    private static long weigh(MailRecord record) {
+        long total = chars(record.sender()) + chars(record.receiver()) + chars(record.message())
+                + chars(record.commandBlock());
+        for (String name : record.claimedPlayers()) {
+            total += chars(name);
+        }
+        for (String command : record.commands()) {
+            total += chars(command);
+        }
+        return total + record.commandItems().size() * 256L;
+    }
+
+    private static long weigh(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            long total = 48L;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                total += 32L + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return total;
+        }
+        if (value instanceof List<?> list) {
+            long total = 40L;
+            for (Object element : list) {
+                total += 8L + weigh(element);
+            }
+            return total;
+        }
+        if (value instanceof String string) {
+            return chars(string);
+        }
+        return 16L;
+    }
+
+    private static long chars(String value) {
+        return value == null ? 0L : 40L + value.length() * 2L;
+    }
+
+    private static Map<String, Object> copyMap(Map<String, Object> source) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return copyMap((Map<String, Object>) map);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,707 @@
+package com.yusaki.lammailbox.repository;
+
+import com.yusaki.lammailbox.util.ItemSerialization;
+import com.yusaki.lammailbox.util.MetricFormat;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Flat-file mail storage built on an append-only journal. Every change is
+ * appended to {@code mail.log} as a one-line YAML record and fsynced in
+ * batches; the full state lives in memory and is rebuilt on startup by
+ * replaying {@code snapshot.yml} followed by the log. Once the log grows past
+ * the configured size it is compacted into a fresh snapshot in the background.
+ */
+public class JournalMailRepository implements MailRepository {
+    private static final String SNAPSHOT_FILE = "snapshot.yml";
+    private static final String LOG_FILE = "mail.log";
+    private static final String COMPACTING_FILE = "mail.log.compacting";
+
+    private final JavaPlugin plugin;
+    private final Path directory;
+    private final long compactThresholdBytes;
+    private final Yaml recordYaml;
+    private final Yaml snapshotYaml;
+    private final ScheduledExecutorService journalThread;
+
+    // Guards the in-memory state and the log writer.
+    private final Object lock = new Object();
+    // Serializes fsyncs and compactions against each other.
+    private final Object syncLock = new Object();
+    private final Map<String, Map<String, Object>> mails = new LinkedHashMap<>();
+    private final Map<String, List<String>> items = new HashMap<>();
+    // Secondary indexes over mails, kept in step by apply() under lock.
+    private final Map<String, IndexEntry> indexEntries = new HashMap<>();
+    private final Map<String, Set<String>> mailsBySender = new HashMap<>();
+    private final Map<String, Set<String>> activeMailsByRecipient = new HashMap<>();
+    private final Set<String> activeBroadcasts = new LinkedHashSet<>();
+    private final Map<String, Integer> claimedBroadcastCounts = new HashMap<>();
+    private FileChannel logChannel;
+    private Writer logWriter;
+    private long logBytes;
+    private List<CompletableFuture<Void>> pendingSync = new ArrayList<>();
+
+    private final LongAdder appendedRecords = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder syncedRecords = new LongAdder();
+    private final LongAdder syncNanos = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final AtomicLong lastCompactionNanos = new AtomicLong();
+
+    /**
+     * The indexed fields of one mail. {@code players} are the receivers of an
+     * active mail, or for an active broadcast the players who already claimed
+     * it; empty when the mail is not active.
+     */
+    private record IndexEntry(String sender, boolean active, boolean broadcast, Set<String> players) {
+    }
+
+    public JournalMailRepository(JavaPlugin plugin, Path directory, long fsyncIntervalMillis, long compactThresholdBytes) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.compactThresholdBytes = Math.max(1L, compactThresholdBytes);
+
+        DumperOptions recordOptions = new DumperOptions();
+        recordOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+        recordOptions.setWidth(Integer.MAX_VALUE);
+        recordOptions.setSplitLines(false);
+        this.recordYaml = new Yaml(recordOptions);
+        DumperOptions snapshotOptions = new DumperOptions();
+        snapshotOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        this.snapshotYaml = new Yaml(snapshotOptions);
+
+        open();
+        this.journalThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LamMailBox-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1L, fsyncIntervalMillis);
+        journalThread.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void open() {
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            Path compacting = directory.resolve(COMPACTING_FILE);
+            int replayed = replay(compacting) + replay(directory.resolve(LOG_FILE));
+            if (Files.exists(compacting)) {
+                // A compaction was interrupted: fold everything into a new snapshot first.
+                writeSnapshot(copyState());
+                Files.delete(compacting);
+                Files.deleteIfExists(directory.resolve(LOG_FILE));
+            }
+            openLog();
+            plugin.getLogger().info("Loaded " + mails.size() + " mails from the journal (" + replayed
+                    + " log records replayed) in " + (System.nanoTime() - started) / 1_000_000L + "ms");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open mail journal: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            Object loaded = snapshotYaml.load(reader);
+            if (!(loaded instanceof Map<?, ?> root)) {
+                return;
+            }
+            if (root.get("mails") instanceof Map<?, ?> storedMails) {
+                storedMails.forEach((id, data) -> {
+                    if (data instanceof Map<?, ?> map) {
+                        mails.put(id.toString(), new LinkedHashMap<>((Map<String, Object>) map));
+                    }
+                });
+            }
+            if (root.get("items") instanceof Map<?, ?> storedItems) {
+                storedItems.forEach((id, list) -> items.put(id.toString(), asStringList(list)));
+            }
+            mails.keySet().forEach(this::reindex);
+        }
+    }
+
+    private int replay(Path log) throws IOException {
+        if (!Files.exists(log)) {
+            return 0;
+        }
+        int replayed = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    if (recordYaml.load(line) instanceof Map<?, ?> record) {
+                        apply(record);
+                        replayed++;
+                    }
+                } catch (YAMLException e) {
+                    plugin.getLogger().warning("Skipping unreadable journal record " + log.getFileName()
+                            + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private void openLog() throws IOException {
+        logChannel = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logWriter = new BufferedWriter(Channels.newWriter(logChannel, StandardCharsets.UTF_8));
+        logBytes = logChannel.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Map<?, ?> record) {
+        String mailId = String.valueOf(record.get("id"));
+        switch (String.valueOf(record.get("op"))) {
+            case "save" -> {
+                Map<String, Object> mail = mails.computeIfAbsent(mailId, ignored -> new LinkedHashMap<>());
+                if (record.get("data") instanceof Map<?, ?> data) {
+                    ((Map<String, Object>) data).forEach((key, value) -> {
+                        if (value == null) {
+                            mail.remove(key);
+                        } else {
+                            mail.put(key, value);
+                        }
+                    });
+                }
+                reindex(mailId);
+            }
+            case "delete" -> {
+                mails.remove(mailId);
+                items.remove(mailId);
+                reindex(mailId);
+            }
+            case "items" -> {
+                List<String> stored = asStringList(record.get("items"));
+                items.put(mailId, stored);
+                Map<String, Object> mail = mails.get(mailId);
+                if (mail != null) {
+                    long payloadBytes = 0;
+                    for (String item : stored) {
+                        payloadBytes += item.length();
+                    }
+                    mail.put("item-count", stored.size());
+                    mail.put("payload-bytes", payloadBytes);
+                }
+            }
+            default -> plugin.getLogger().warning("Unknown journal operation: " + record.get("op"));
+        }
+    }
+
+    /**
+     * Writes the record to the log and only then applies it, so a change that
+     * never reached the journal is not visible in memory either.
+     */
+    private CompletableFuture<Void> append(Map<String, Object> record) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (lock) {
+            if (logWriter == null) {
+                durable.completeExceptionally(new IOException("Mail journal is not open"));
+                return durable;
+            }
+            try {
+                String line = recordYaml.dump(record).trim() + "\n";
+                logWriter.write(line);
+                apply(record);
+                logBytes += line.getBytes(StandardCharsets.UTF_8).length;
+                appendedRecords.increment();
+                pendingSync.add(durable);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to append to mail journal: " + e.getMessage());
+                durable.completeExceptionally(e);
+            }
+        }
+        return durable;
+    }
+
+    private static Map<String, Object> record(String op, String mailId) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("op", op);
+        record.put("id", mailId);
+        return record;
+    }
+
+    /**
+     * Flushes buffered records, fsyncs the log and completes the futures of
+     * every record written so far.
+     */
+    private void sync() {
+        synchronized (syncLock) {
+            List<CompletableFuture<Void>> completed;
+            FileChannel channel;
+            synchronized (lock) {
+                if (pendingSync.isEmpty() || logWriter == null) {
+                    return;
+                }
+                try {
+                    logWriter.flush();
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to flush mail journal: " + e.getMessage());
+                    return;
+                }
+                completed = pendingSync;
+                pendingSync = new ArrayList<>();
+                channel = logChannel;
+            }
+
+            long started = System.nanoTime();
+            try {
+                channel.force(false);
+                completed.forEach(future -> future.complete(null));
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to fsync mail journal: " + e.getMessage());
+                completed.forEach(future -> future.completeExceptionally(e));
+            }
+            syncs.increment();
+            syncedRecords.add(completed.size());
+            syncNanos.add(System.nanoTime() - started);
+        }
+    }
+
+    private void maintain() {
+        sync();
+        boolean oversized;
+        synchronized (lock) {
+            oversized = logBytes >= compactThresholdBytes;
+        }
+        if (oversized) {
+            compact();
+        }
+    }
+
+    /**
+     * Rotates the log aside, writes the current state as a new snapshot and
+     * then drops the rotated log. Appends continue on a fresh log meanwhile.
+     */
+    private void compact() {
+        synchronized (syncLock) {
+            long started = System.nanoTime();
+            Map<String, Object> state;
+            Path compacting = directory.resolve(COMPACTING_FILE);
+            synchronized (lock) {
+                try {
+                    logWriter.flush();
+                    logChannel.force(false);
+                    pendingSync.forEach(future -> future.complete(null));
+                    pendingSync = new ArrayList<>();
+                    logWriter.close();
+                    Files.move(directory.resolve(LOG_FILE), compacting, StandardCopyOption.REPLACE_EXISTING);
+                    openLog();
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to rotate mail journal: " + e.getMessage());
+                    reopenAfterFailure();
+                    return;
+                }
+                state = copyState();
+            }
+
+            try {
+                writeSnapshot(state);
+                Files.delete(compacting);
+                long elapsed = System.nanoTime() - started;
+                compactions.increment();
+                lastCompactionNanos.set(elapsed);
+                plugin.getLogger().info("Compacted mail journal into a snapshot of "
+                        + ((Map<?, ?>) state.get("mails")).size() + " mails in " + elapsed / 1_000_000L + "ms");
+            } catch (IOException e) {
+                // The rotated log stays on disk and is replayed after the old snapshot on startup.
+                plugin.getLogger().severe("Failed to write mail journal snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    private void reopenAfterFailure() {
+        try {
+            if (logChannel == null || !logChannel.isOpen()) {
+                openLog();
+            }
+        } catch (IOException e) {
+            logWriter = null;
+            plugin.getLogger().severe("Mail journal is unavailable: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> copyState() {
+        Map<String, Object> mailsCopy = new LinkedHashMap<>();
+        mails.forEach((id, data) -> mailsCopy.put(id, new LinkedHashMap<>(data)));
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("mails", mailsCopy);
+        state.put("items", new LinkedHashMap<>(items));
+        return state;
+    }
+
+    private void writeSnapshot(Map<String, Object> state) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            snapshotYaml.dump(state, writer);
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Map<String, Object> loadMail(String mailId) {
+        synchronized (lock) {
+            Map<String, Object> data = mails.get(mailId);
+            return data != null ? new HashMap<>(data) : Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public void saveMail(String mailId, Map<String, Object> data) {
+        saveMailAsync(mailId, data);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMailAsync(String mailId, Map<String, Object> data) {
+        Map<String, Object> record = record("save", mailId);
+        record.put("data", new LinkedHashMap<>(data));
+        return append(record);
+    }
+
+    @Override
+    public void deleteMail(String mailId) {
+        deleteMailAsync(mailId);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMailAsync(String mailId) {
+        return append(record("delete", mailId));
+    }
+
+    @Override
+    public List<String> listMailIds() {
+        synchronized (lock) {
+            return new ArrayList<>(mails.keySet());
+        }
+    }
+
+    @Override
+    public List<String> listMailIdsBySender(String sender) {
+        synchronized (lock) {
+            return new ArrayList<>(mailsBySender.getOrDefault(sender, Collections.emptySet()));
+        }
+    }
+
+    @Override
+    public List<String> listActiveMailIdsFor(String playerName) {
+        String key = playerName.toLowerCase(Locale.ROOT);
+        synchronized (lock) {
+            List<String> result = new ArrayList<>(activeMailsByRecipient.getOrDefault(key, Collections.emptySet()));
+            for (String mailId : activeBroadcasts) {
+                if (!indexEntries.get(mailId).players().contains(key)) {
+                    result.add(mailId);
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findMail(String mailId) {
+        synchronized (lock) {
+            Map<String, Object> data = mails.get(mailId);
+            return data != null ? Optional.of(new HashMap<>(data)) : Optional.empty();
+        }
+    }
+
+    @Override
+    public void save() {
+        sync();
+    }
+
+    @Override
+    public void saveMailItems(String mailId, List<ItemStack> items) {
+        saveMailItemsAsync(mailId, items);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMailItemsAsync(String mailId, List<ItemStack> items) {
+        Map<String, Object> record = record("items", mailId);
+        record.put("items", ItemSerialization.serializeItems(items));
+        return append(record);
+    }
+
+    @Override
+    public List<ItemStack> loadMailItems(String mailId) {
+        List<String> serialized;
+        synchronized (lock) {
+            serialized = items.getOrDefault(mailId, Collections.emptyList());
+        }
+        return ItemSerialization.deserializeItems(serialized);
+    }
+
+    @Override
+    public Optional<MailRecord> findRecord(String mailId) {
+        return findMail(mailId).flatMap(data -> MailRecord.from(mailId, data));
+    }
+
+    @Override
+    public List<MailRecord> findRecords(Collection<String> mailIds) {
+        if (mailIds == null || mailIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MailRecord> records = new ArrayList<>(mailIds.size());
+        for (String mailId : new LinkedHashSet<>(mailIds)) {
+            findRecord(mailId).ifPresent(records::add);
+        }
+        return records;
+    }
+
+    @Override
+    public int countActiveMailFor(String playerName) {
+        String key = playerName.toLowerCase(Locale.ROOT);
+        synchronized (lock) {
+            return activeMailsByRecipient.getOrDefault(key, Collections.emptySet()).size()
+                    + activeBroadcasts.size()
+                    - claimedBroadcastCounts.getOrDefault(key, 0);
+        }
+    }
+
+    @Override
+    public MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit) {
+        List<MailRecord> records = new ArrayList<>(findRecords(listActiveMailIdsFor(playerName)));
+        records.sort(MailPageCursor.NEWEST_FIRST);
+        return MailPage.slice(records, cursor, limit);
+    }
+
+    @Override
+    public MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit) {
+        List<MailRecord> records = new ArrayList<>(findRecords(listMailIdsBySender(sender)));
+        records.sort(MailPageCursor.NEWEST_FIRST);
+        return MailPage.slice(records, cursor, limit);
+    }
+
+    @Override
+    public int countMailBySender(String sender) {
+        return listMailIdsBySender(sender).size();
+    }
+
+    @Override
+    public int purgeExpired(long now, int batchSize) {
+        List<String> expired = listExpiredMailIds(now, Integer.MAX_VALUE);
+        expired.forEach(this::deleteMail);
+        return expired.size();
+    }
+
+    @Override
+    public List<String> listExpiredMailIds(long now, int limit) {
+        Map<String, Long> expired = new HashMap<>();
+        synchronized (lock) {
+            mails.forEach((id, data) -> {
+                if (data.get("expire-date") instanceof Number number && number.longValue() <= now) {
+                    expired.put(id, number.longValue());
+                }
+            });
+        }
+        return expired.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public List<ActivatedMail> activateDueScheduled(long now) {
+        List<ActivatedMail> activated = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<String, Map<String, Object>> entry : new ArrayList<>(mails.entrySet())) {
+                Map<String, Object> data = entry.getValue();
+                if (data.get("schedule-date") instanceof Number number && number.longValue() <= now) {
+                    Map<String, Object> changes = new LinkedHashMap<>();
+                    changes.put("schedule-date", null);
+                    changes.put("active", true);
+                    saveMail(entry.getKey(), changes);
+                    activated.add(new ActivatedMail(entry.getKey(),
+                            asString(data.get("receiver")),
+                            asString(data.get("sender"))));
+                }
+            }
+        }
+        return activated;
+    }
+
+    private void reindex(String mailId) {
+        IndexEntry previous = indexEntries.remove(mailId);
+        if (previous != null) {
+            unindex(mailId, previous);
+        }
+        Map<String, Object> data = mails.get(mailId);
+        if (data != null) {
+            IndexEntry current = indexEntryOf(mailId, data);
+            indexEntries.put(mailId, current);
+            index(mailId, current);
+        }
+    }
+
+    private static IndexEntry indexEntryOf(String mailId, Map<String, Object> data) {
+        String sender = asString(data.get("sender"));
+        Optional<MailRecord> record = MailRecord.from(mailId, data);
+        String receiver = record.map(MailRecord::receiver).orElse(null);
+        if (record.isEmpty() || !record.get().active() || receiver == null || receiver.isEmpty()) {
+            return new IndexEntry(sender, false, false, Collections.emptySet());
+        }
+        if (receiver.equalsIgnoreCase("all")) {
+            return new IndexEntry(sender, true, true, lowerCaseNames(record.get().claimedPlayers()));
+        }
+        return new IndexEntry(sender, true, false, lowerCaseNames(MailRecord.splitReceivers(receiver)));
+    }
+
+    private void index(String mailId, IndexEntry entry) {
+        if (entry.sender() != null) {
+            mailsBySender.computeIfAbsent(entry.sender(), ignored -> new LinkedHashSet<>()).add(mailId);
+        }
+        if (!entry.active()) {
+            return;
+        }
+        if (entry.broadcast()) {
+            activeBroadcasts.add(mailId);
+            entry.players().forEach(player -> claimedBroadcastCounts.merge(player, 1, Integer::sum));
+        } else {
+            entry.players().forEach(player ->
+                    activeMailsByRecipient.computeIfAbsent(player, ignored -> new LinkedHashSet<>()).add(mailId));
+        }
+    }
+
+    private void unindex(String mailId, IndexEntry entry) {
+        removeFrom(mailsBySender, entry.sender(), mailId);
+        if (!entry.active()) {
+            return;
+        }
+        if (entry.broadcast()) {
+            activeBroadcasts.remove(mailId);
+            entry.players().forEach(player ->
+                    claimedBroadcastCounts.computeIfPresent(player, (ignored, count) -> count > 1 ? count - 1 : null));
+        } else {
+            entry.players().forEach(player -> removeFrom(activeMailsByRecipient, player, mailId));
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String mailId) {
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(mailId) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static Set<String> lowerCaseNames(Collection<String> names) {
+        Set<String> result = new HashSet<>(names.size());
+        for (String name : names) {
+            result.add(name.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        synchronized (lock) {
+            metrics.put("journal.mails", String.valueOf(mails.size()));
+            metrics.put("journal.log-size", MetricFormat.formatBytes(logBytes)
+                    + " (compacts at " + MetricFormat.formatBytes(compactThresholdBytes) + ")");
+        }
+        long syncCount = syncs.sum();
+        metrics.put("journal.records", String.valueOf(appendedRecords.sum()));
+        if (syncCount > 0) {
+            metrics.put("journal.fsyncs", syncCount + " (avg " + String.format(Locale.ROOT, "%.1f",
+                    syncedRecords.sum() / (double) syncCount) + " records, avg "
+                    + MetricFormat.formatMillis(syncNanos.sum() / (double) syncCount / 1_000_000.0) + ")");
+        }
+        metrics.put("journal.compactions", compactions.sum() + (compactions.sum() == 0 ? "" : " (last "
+                + MetricFormat.formatMillis(lastCompactionNanos.get() / 1_000_000.0) + ")"));
+        return metrics;
+    }
+
+    @Override
+    public void shutdown() {
+        journalThread.shutdown();
+        try {
+            if (!journalThread.awaitTermination(10, TimeUnit.SECONDS)) {
+                journalThread.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        synchronized (lock) {
+            if (logWriter != null) {
+                try {
+                    logWriter.close();
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to close mail journal: " + e.getMessage());
+                }
+                logWriter = null;
+            }
+        }
+        metrics().forEach((key, value) -> plugin.getLogger().info("Mail " + key + ": " + value));
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static List<String> asStringList(Object value) {
+        List<String> list = new ArrayList<>();
+        if (value instanceof List<?> raw) {
+            for (Object entry : raw) {
+                if (entry != null) {
+                    list.add(entry.toString());
+                }
+            }
+        }
+        return list;
+    }
+}
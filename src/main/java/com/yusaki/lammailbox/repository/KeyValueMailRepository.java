@@ -0,0 +1,548 @@
+package com.yusaki.lammailbox.repository;
+
+import com.yusaki.lammailbox.util.ItemSerialization;
+import com.yusaki.lammailbox.util.MetricFormat;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Mail repository on top of the embedded {@link LogStructuredStore}. Mail
+ * records and item blobs are keyed by mail id; sender, inbox, broadcast, expiry
+ * and schedule lookups are served from secondary index keyspaces written in
+ * the same batch as the mail they describe. Sender, inbox and broadcast keys
+ * end in {@code timeKey(sentDate) + SEPARATOR + mailId}, so listings page by
+ * walking the index backwards from the cursor.
+ */
+public class KeyValueMailRepository implements MailRepository {
+    private static final String SEPARATOR = "\u0000";
+    private static final String MAIL = "mail" + SEPARATOR;
+    private static final String ITEMS = "items" + SEPARATOR;
+    private static final String BY_SENDER = "sender" + SEPARATOR;
+    private static final String BY_RECIPIENT = "inbox" + SEPARATOR;
+    private static final String BROADCASTS = "broadcast" + SEPARATOR;
+    private static final String CLAIMED_BROADCASTS = "claimed" + SEPARATOR;
+    private static final String BY_EXPIRE_DATE = "expire" + SEPARATOR;
+    private static final String BY_SCHEDULE_DATE = "schedule" + SEPARATOR;
+    private static final String INDEX_VERSION_KEY = "meta" + SEPARATOR + "index-version";
+    private static final String INDEX_VERSION = "2";
+    private static final byte[] EMPTY = new byte[0];
+
+    private final JavaPlugin plugin;
+    private final LogStructuredStore store;
+    private final Yaml recordYaml;
+    private final ScheduledExecutorService maintenance;
+
+    public KeyValueMailRepository(JavaPlugin plugin, Path directory, long fsyncIntervalMillis, long segmentBytes) {
+        this.plugin = plugin;
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+        options.setWidth(Integer.MAX_VALUE);
+        options.setSplitLines(false);
+        this.recordYaml = new Yaml(options);
+
+        long started = System.nanoTime();
+        LogStructuredStore opened = null;
+        try {
+            opened = new LogStructuredStore(directory, plugin.getLogger(), segmentBytes);
+            plugin.getLogger().info("Opened key-value mail store with " + opened.count(MAIL) + " mails in "
+                    + (System.nanoTime() - started) / 1_000_000L + "ms");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open key-value mail store: " + e.getMessage());
+        }
+        this.store = opened;
+        reindexIfNeeded();
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LamMailBox-KV");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1L, fsyncIntervalMillis);
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rebuilds the sender, inbox and broadcast keyspaces of stores written
+     * before those keys carried the sent date.
+     */
+    private void reindexIfNeeded() {
+        byte[] version = get(INDEX_VERSION_KEY);
+        if (store == null || (version != null && INDEX_VERSION.equals(new String(version, StandardCharsets.UTF_8)))) {
+            return;
+        }
+        LogStructuredStore.Batch batch = new LogStructuredStore.Batch();
+        for (String keyspace : List.of(BY_SENDER, BY_RECIPIENT, BROADCASTS)) {
+            store.keys(keyspace).forEach(batch::delete);
+        }
+        for (String mailId : listMailIds()) {
+            Map<String, Object> data = readMail(mailId);
+            if (data != null) {
+                indexKeys(mailId, data).forEach(key -> batch.put(key, EMPTY));
+            }
+        }
+        batch.put(INDEX_VERSION_KEY, INDEX_VERSION.getBytes(StandardCharsets.UTF_8));
+        write(batch, "rebuild key-value mail indexes");
+        store.sync();
+    }
+
+    private void maintain() {
+        if (store == null) {
+            return;
+        }
+        store.sync();
+        if (store.needsCompaction()) {
+            long started = System.nanoTime();
+            try {
+                store.compact();
+                plugin.getLogger().info("Compacted key-value mail store in "
+                        + (System.nanoTime() - started) / 1_000_000L + "ms");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to compact key-value mail store: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> loadMail(String mailId) {
+        Map<String, Object> data = readMail(mailId);
+        return data != null ? data : Collections.emptyMap();
+    }
+
+    @Override
+    public void saveMail(String mailId, Map<String, Object> data) {
+        saveMailAsync(mailId, data);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> saveMailAsync(String mailId, Map<String, Object> data) {
+        Map<String, Object> previous = readMail(mailId);
+        Map<String, Object> merged = previous != null ? new LinkedHashMap<>(previous) : new LinkedHashMap<>();
+        data.forEach((key, value) -> {
+            if (value == null) {
+                merged.remove(key);
+            } else {
+                merged.put(key, value);
+            }
+        });
+
+        LogStructuredStore.Batch batch = new LogStructuredStore.Batch();
+        Set<String> oldKeys = previous != null ? indexKeys(mailId, previous) : Collections.emptySet();
+        Set<String> newKeys = indexKeys(mailId, merged);
+        oldKeys.stream().filter(key -> !newKeys.contains(key)).forEach(batch::delete);
+        newKeys.stream().filter(key -> !oldKeys.contains(key)).forEach(key -> batch.put(key, EMPTY));
+        batch.put(MAIL + mailId, recordYaml.dump(merged).trim().getBytes(StandardCharsets.UTF_8));
+        return write(batch, "save mail " + mailId);
+    }
+
+    @Override
+    public void deleteMail(String mailId) {
+        deleteMailAsync(mailId);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> deleteMailAsync(String mailId) {
+        Map<String, Object> previous = readMail(mailId);
+        LogStructuredStore.Batch batch = new LogStructuredStore.Batch();
+        if (previous != null) {
+            indexKeys(mailId, previous).forEach(batch::delete);
+            batch.delete(MAIL + mailId);
+        }
+        batch.delete(ITEMS + mailId);
+        return write(batch, "delete mail " + mailId);
+    }
+
+    @Override
+    public List<String> listMailIds() {
+        return idsAfterPrefix(MAIL);
+    }
+
+    @Override
+    public List<String> listMailIdsBySender(String sender) {
+        return idsAfterPrefix(BY_SENDER + sender + SEPARATOR);
+    }
+
+    @Override
+    public List<String> listActiveMailIdsFor(String playerName) {
+        String player = playerName.toLowerCase(Locale.ROOT);
+        List<String> result = idsAfterPrefix(BY_RECIPIENT + player + SEPARATOR);
+        for (String mailId : idsAfterPrefix(BROADCASTS)) {
+            if (store != null && !store.contains(CLAIMED_BROADCASTS + player + SEPARATOR + mailId)) {
+                result.add(mailId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findMail(String mailId) {
+        return Optional.ofNullable(readMail(mailId));
+    }
+
+    @Override
+    public void save() {
+        if (store != null) {
+            store.sync();
+        }
+    }
+
+    @Override
+    public void saveMailItems(String mailId, List<ItemStack> items) {
+        saveMailItemsAsync(mailId, items);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> saveMailItemsAsync(String mailId, List<ItemStack> items) {
+        LogStructuredStore.Batch batch = new LogStructuredStore.Batch();
+        long payloadBytes = 0;
+        if (items.isEmpty()) {
+            batch.delete(ITEMS + mailId);
+        } else {
+            byte[] encoded = encodeItems(items);
+            payloadBytes = encoded.length;
+            batch.put(ITEMS + mailId, encoded);
+        }
+        // Counts ride along in the mail record so listings never decode the items.
+        Map<String, Object> mail = readMail(mailId);
+        if (mail != null) {
+            mail.put("item-count", items.size());
+            mail.put("payload-bytes", payloadBytes);
+            batch.put(MAIL + mailId, recordYaml.dump(mail).trim().getBytes(StandardCharsets.UTF_8));
+        }
+        return write(batch, "save items for mail " + mailId);
+    }
+
+    @Override
+    public List<ItemStack> loadMailItems(String mailId) {
+        byte[] value = get(ITEMS + mailId);
+        if (value == null) {
+            return new ArrayList<>();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        int count = buffer.getInt();
+        List<ItemStack> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            ItemStack item = ItemSerialization.deserializeItem(
+                    new ByteArrayInputStream(value, buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public Optional<MailRecord> findRecord(String mailId) {
+        return findMail(mailId).flatMap(data -> MailRecord.from(mailId, data));
+    }
+
+    @Override
+    public List<MailRecord> findRecords(Collection<String> mailIds) {
+        if (mailIds == null || mailIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MailRecord> records = new ArrayList<>(mailIds.size());
+        for (String mailId : new LinkedHashSet<>(mailIds)) {
+            findRecord(mailId).ifPresent(records::add);
+        }
+        return records;
+    }
+
+    @Override
+    public int countActiveMailFor(String playerName) {
+        if (store == null) {
+            return 0;
+        }
+        String player = playerName.toLowerCase(Locale.ROOT);
+        return store.count(BY_RECIPIENT + player + SEPARATOR)
+                + store.count(BROADCASTS)
+                - store.count(CLAIMED_BROADCASTS + player + SEPARATOR);
+    }
+
+    @Override
+    public MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit) {
+        if (store == null || limit <= 0) {
+            return MailPage.empty();
+        }
+        String player = playerName.toLowerCase(Locale.ROOT);
+        List<String> positions = new ArrayList<>(walk(BY_RECIPIENT + player + SEPARATOR, cursor, limit + 1,
+                mailId -> true));
+        positions.addAll(walk(BROADCASTS, cursor, limit + 1,
+                mailId -> !store.contains(CLAIMED_BROADCASTS + player + SEPARATOR + mailId)));
+        positions.sort(Collections.reverseOrder());
+        return page(positions, limit);
+    }
+
+    @Override
+    public MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit) {
+        if (store == null || limit <= 0) {
+            return MailPage.empty();
+        }
+        return page(walk(BY_SENDER + sender + SEPARATOR, cursor, limit + 1, mailId -> true), limit);
+    }
+
+    @Override
+    public int countMailBySender(String sender) {
+        return store != null ? store.count(BY_SENDER + sender + SEPARATOR) : 0;
+    }
+
+    /**
+     * Up to {@code limit} positions ({@code timeKey + SEPARATOR + mailId}) in
+     * {@code keyspace} after {@code cursor}, newest first, skipping mails
+     * rejected by {@code filter}.
+     */
+    private List<String> walk(String keyspace, MailPageCursor cursor, int limit, Predicate<String> filter) {
+        List<String> positions = new ArrayList<>(limit);
+        String upper = cursor != null
+                ? keyspace + timeKey(cursor.sentDate()) + SEPARATOR + cursor.mailId()
+                : keyspace + Character.MAX_VALUE;
+        while (positions.size() < limit) {
+            List<String> keys = store.keysDescending(keyspace, upper, limit);
+            for (String key : keys) {
+                if (positions.size() < limit && filter.test(mailIdOf(key))) {
+                    positions.add(key.substring(keyspace.length()));
+                }
+            }
+            if (keys.size() < limit) {
+                break;
+            }
+            upper = keys.get(keys.size() - 1);
+        }
+        return positions;
+    }
+
+    private MailPage page(List<String> positions, int limit) {
+        List<String> ids = new ArrayList<>(Math.min(limit, positions.size()));
+        for (String position : positions.subList(0, Math.min(limit, positions.size()))) {
+            ids.add(mailIdOf(position));
+        }
+        MailPageCursor next = null;
+        if (positions.size() > limit) {
+            String last = positions.get(limit - 1);
+            int separator = last.indexOf(SEPARATOR);
+            next = new MailPageCursor(Long.parseLong(last.substring(0, separator)), mailIdOf(last));
+        }
+        return new MailPage(findRecords(ids), next);
+    }
+
+    @Override
+    public int purgeExpired(long now, int batchSize) {
+        // Each chunk is one round of appends followed by a single fsync wait.
+        int limit = Math.max(1, batchSize);
+        int removed = 0;
+        while (true) {
+            List<String> expired = dueMailIds(BY_EXPIRE_DATE, now, limit);
+            List<CompletableFuture<Void>> deletes = new ArrayList<>(expired.size());
+            for (String mailId : expired) {
+                deletes.add(deleteMailAsync(mailId));
+            }
+            CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0])).join();
+            removed += expired.size();
+            if (expired.size() < limit) {
+                return removed;
+            }
+        }
+    }
+
+    @Override
+    public List<String> listExpiredMailIds(long now, int limit) {
+        return dueMailIds(BY_EXPIRE_DATE, now, limit);
+    }
+
+    @Override
+    public List<ActivatedMail> activateDueScheduled(long now) {
+        List<ActivatedMail> activated = new ArrayList<>();
+        for (String mailId : dueMailIds(BY_SCHEDULE_DATE, now, Integer.MAX_VALUE)) {
+            Map<String, Object> data = readMail(mailId);
+            if (data == null) {
+                continue;
+            }
+            Map<String, Object> changes = new HashMap<>();
+            changes.put("schedule-date", null);
+            changes.put("active", true);
+            saveMail(mailId, changes);
+            activated.add(new ActivatedMail(mailId,
+                    asString(data.get("receiver")),
+                    asString(data.get("sender"))));
+        }
+        return activated;
+    }
+
+    @Override
+    public Map<String, String> metrics() {
+        if (store == null) {
+            return Collections.emptyMap();
+        }
+        LogStructuredStore.Stats stats = store.stats();
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("kv.keys", String.valueOf(stats.keys()));
+        metrics.put("kv.segments", stats.segments() + " (" + MetricFormat.formatBytes(stats.liveBytes())
+                + " live of " + MetricFormat.formatBytes(stats.totalBytes()) + ")");
+        metrics.put("kv.fsyncs", String.valueOf(stats.syncs()));
+        metrics.put("kv.compactions", String.valueOf(stats.compactions()));
+        return metrics;
+    }
+
+    @Override
+    public void shutdown() {
+        maintenance.shutdown();
+        try {
+            if (!maintenance.awaitTermination(10, TimeUnit.SECONDS)) {
+                maintenance.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (store != null) {
+            metrics().forEach((key, value) -> plugin.getLogger().info("Mail " + key + ": " + value));
+            store.close();
+        }
+    }
+
+    /**
+     * Index keys describing a mail: its sender, its active audience and its
+     * expiry and schedule times.
+     */
+    private static Set<String> indexKeys(String mailId, Map<String, Object> data) {
+        Set<String> keys = new HashSet<>();
+        Optional<MailRecord> record = MailRecord.from(mailId, data);
+        String position = timeKey(record.map(MailRecord::sentDate).orElse(0L)) + SEPARATOR + mailId;
+        String sender = asString(data.get("sender"));
+        if (sender != null) {
+            keys.add(BY_SENDER + sender + SEPARATOR + position);
+        }
+        if (data.get("expire-date") instanceof Number expireDate) {
+            keys.add(BY_EXPIRE_DATE + timeKey(expireDate.longValue()) + SEPARATOR + mailId);
+        }
+        if (data.get("schedule-date") instanceof Number scheduleDate) {
+            keys.add(BY_SCHEDULE_DATE + timeKey(scheduleDate.longValue()) + SEPARATOR + mailId);
+        }
+
+        String receiver = record.map(MailRecord::receiver).orElse(null);
+        if (record.isEmpty() || !record.get().active() || receiver == null) {
+            return keys;
+        }
+        if (receiver.equalsIgnoreCase("all")) {
+            keys.add(BROADCASTS + position);
+            for (String player : record.get().claimedPlayers()) {
+                keys.add(CLAIMED_BROADCASTS + player.toLowerCase(Locale.ROOT) + SEPARATOR + mailId);
+            }
+        } else {
+            for (String player : MailRecord.splitReceivers(receiver)) {
+                keys.add(BY_RECIPIENT + player.toLowerCase(Locale.ROOT) + SEPARATOR + position);
+            }
+        }
+        return keys;
+    }
+
+    private List<String> dueMailIds(String keyspace, long now, int limit) {
+        if (store == null) {
+            return new ArrayList<>();
+        }
+        List<String> ids = new ArrayList<>();
+        for (String key : store.keys(keyspace, keyspace + timeKey(now) + SEPARATOR + Character.MAX_VALUE, limit)) {
+            ids.add(mailIdOf(key));
+        }
+        return ids;
+    }
+
+    private List<String> idsAfterPrefix(String prefix) {
+        if (store == null) {
+            return new ArrayList<>();
+        }
+        List<String> ids = new ArrayList<>();
+        for (String key : store.keys(prefix)) {
+            ids.add(mailIdOf(key));
+        }
+        return ids;
+    }
+
+    private static String mailIdOf(String key) {
+        return key.substring(key.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readMail(String mailId) {
+        byte[] value = get(MAIL + mailId);
+        if (value == null) {
+            return null;
+        }
+        Object loaded = recordYaml.load(new String(value, StandardCharsets.UTF_8));
+        return loaded instanceof Map<?, ?> map ? new LinkedHashMap<>((Map<String, Object>) map) : null;
+    }
+
+    private byte[] get(String key) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            return store.get(key);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to read " + key.replace(SEPARATOR, "/") + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private CompletableFuture<Void> write(LogStructuredStore.Batch batch, String action) {
+        if (store == null) {
+            return CompletableFuture.failedFuture(new IOException("Key-value mail store is not open"));
+        }
+        try {
+            return store.write(batch);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to " + action + ": " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static byte[] encodeItems(List<ItemStack> items) {
+        List<byte[]> serialized = new ArrayList<>(items.size());
+        int size = Integer.BYTES;
+        for (ItemStack item : items) {
+            byte[] bytes = ItemSerialization.serializeItemBytes(item);
+            serialized.add(bytes);
+            size += Integer.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(serialized.size());
+        for (byte[] bytes : serialized) {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        return buffer.array();
+    }
+
+    private static String timeKey(long timestamp) {
+        return String.format(Locale.ROOT, "%019d", Math.max(0L, timestamp));
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,427 @@
+package com.yusaki.lammailbox.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded log-structured key-value store. Writes are appended to numbered
+ * segment files and only the keys, with the location of their latest value,
+ * are held in memory. Keys are kept sorted so key ranges double as secondary
+ * index keyspaces. Superseded values are reclaimed by {@link #compact()}.
+ *
+ * <p>Record layout: {@code crc32 | keyLength | valueLength | key | value}, with
+ * a value length of -1 marking a deletion.</p>
+ */
+final class LogStructuredStore {
+    private static final int HEADER_BYTES = 12;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Where the latest value of a key lives.
+     */
+    private record Location(int segment, long offset, int length) {
+    }
+
+    /**
+     * Point-in-time view of store usage.
+     */
+    record Stats(int keys, int segments, long liveBytes, long totalBytes, long syncs, long compactions) {
+    }
+
+    /**
+     * An ordered group of puts and deletes appended as one write.
+     */
+    static final class Batch {
+        private final Map<String, byte[]> operations = new LinkedHashMap<>();
+
+        Batch put(String key, byte[] value) {
+            operations.remove(key);
+            operations.put(key, value);
+            return this;
+        }
+
+        Batch delete(String key) {
+            operations.remove(key);
+            operations.put(key, null);
+            return this;
+        }
+
+        boolean isEmpty() {
+            return operations.isEmpty();
+        }
+    }
+
+    private final Path directory;
+    private final Logger logger;
+    private final long segmentBytes;
+    private final NavigableMap<String, Location> index = new TreeMap<>();
+    private final Map<Integer, FileChannel> segments = new TreeMap<>();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private List<CompletableFuture<Void>> pendingSync = new ArrayList<>();
+    private int activeSegment;
+    private long liveBytes;
+    private long totalBytes;
+
+    LogStructuredStore(Path directory, Logger logger, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.logger = logger;
+        this.segmentBytes = Math.max(1024L * 1024L, segmentBytes);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> numbers.add(Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(numbers);
+        for (int number : numbers) {
+            FileChannel channel = openSegment(number);
+            segments.put(number, channel);
+            scanSegment(number, channel, number == numbers.get(numbers.size() - 1));
+            activeSegment = number;
+        }
+        if (segments.isEmpty()) {
+            rollSegment();
+        }
+    }
+
+    /**
+     * Indexes every record of a segment. Only the active segment can end in a
+     * torn write, which is cut off; a bad record in a sealed segment means
+     * corruption and fails the open instead of discarding what follows it.
+     */
+    private void scanSegment(int number, FileChannel channel, boolean active) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int crc = header.getInt();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            long recordLength = HEADER_BYTES + (long) keyLength + Math.max(0, valueLength);
+            if (keyLength <= 0 || valueLength < TOMBSTONE || position + recordLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate((int) (recordLength - HEADER_BYTES));
+            channel.read(body, position + HEADER_BYTES);
+            if (crc != checksum(keyLength, valueLength, body.array())) {
+                break;
+            }
+            String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+            applyIndex(key, valueLength == TOMBSTONE ? null
+                    : new Location(number, position + HEADER_BYTES + keyLength, valueLength), recordLength);
+            position += recordLength;
+        }
+        if (position < size && !active) {
+            logger.severe("Unreadable record at offset " + position + " of sealed " + segmentName(number)
+                    + ", leaving the file untouched");
+            throw new IOException("Corrupt record in " + segmentName(number) + " at offset " + position);
+        }
+        if (position < size) {
+            logger.warning("Truncating " + (size - position) + " unreadable bytes at the end of "
+                    + segmentName(number));
+            channel.truncate(position);
+        }
+        totalBytes += position;
+    }
+
+    synchronized byte[] get(String key) throws IOException {
+        Location location = index.get(key);
+        return location != null ? read(location) : null;
+    }
+
+    synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Keys starting with {@code prefix}, in sorted order.
+     */
+    synchronized List<String> keys(String prefix) {
+        return new ArrayList<>(index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+    }
+
+    /**
+     * Up to {@code limit} keys in {@code [fromInclusive, toExclusive)}, in sorted order.
+     */
+    synchronized List<String> keys(String fromInclusive, String toExclusive, int limit) {
+        List<String> keys = new ArrayList<>();
+        for (String key : index.subMap(fromInclusive, true, toExclusive, false).keySet()) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Up to {@code limit} keys in {@code [fromInclusive, toExclusive)}, in
+     * descending order.
+     */
+    synchronized List<String> keysDescending(String fromInclusive, String toExclusive, int limit) {
+        List<String> keys = new ArrayList<>(Math.max(0, limit));
+        for (String key : index.subMap(fromInclusive, true, toExclusive, false).descendingKeySet()) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    synchronized int count(String prefix) {
+        return index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).size();
+    }
+
+    /**
+     * Appends the batch and returns a future completed once it has been fsynced
+     * by {@link #sync()}.
+     */
+    synchronized CompletableFuture<Void> write(Batch batch) throws IOException {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (batch.isEmpty()) {
+            durable.complete(null);
+            return durable;
+        }
+        List<byte[]> records = new ArrayList<>(batch.operations.size());
+        int size = 0;
+        for (Map.Entry<String, byte[]> entry : batch.operations.entrySet()) {
+            byte[] record = encode(entry.getKey(), entry.getValue());
+            records.add(record);
+            size += record.length;
+        }
+        FileChannel channel = segments.get(activeSegment);
+        if (channel.size() > 0 && channel.size() + size > segmentBytes) {
+            rollSegment();
+            channel = segments.get(activeSegment);
+        }
+
+        long position = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        records.forEach(buffer::put);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+
+        int recordIndex = 0;
+        for (Map.Entry<String, byte[]> entry : batch.operations.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue();
+            int recordLength = records.get(recordIndex++).length;
+            applyIndex(entry.getKey(), value == null ? null
+                    : new Location(activeSegment, position + HEADER_BYTES + key.length, value.length), recordLength);
+            position += recordLength;
+        }
+        totalBytes += size;
+        pendingSync.add(durable);
+        return durable;
+    }
+
+    /**
+     * Forces the active segment to disk and completes every pending write.
+     */
+    void sync() {
+        List<CompletableFuture<Void>> completed;
+        FileChannel channel;
+        synchronized (this) {
+            if (pendingSync.isEmpty()) {
+                return;
+            }
+            completed = pendingSync;
+            pendingSync = new ArrayList<>();
+            channel = segments.get(activeSegment);
+        }
+        try {
+            channel.force(false);
+            completed.forEach(future -> future.complete(null));
+        } catch (IOException e) {
+            logger.severe("Failed to fsync key-value store: " + e.getMessage());
+            completed.forEach(future -> future.completeExceptionally(e));
+        }
+        syncs.increment();
+    }
+
+    /**
+     * Whether at least half of the stored bytes belong to superseded values.
+     */
+    synchronized boolean needsCompaction() {
+        return segments.size() > 1 && totalBytes > 2 * liveBytes;
+    }
+
+    /**
+     * Copies every live value out of the sealed segments into the active one
+     * and deletes the sealed segments. Sealed segments never change, so values
+     * are read without holding the lock; it is only taken to append a chunk of
+     * values whose keys were not rewritten meanwhile, and to drop the segments.
+     */
+    void compact() throws IOException {
+        Map<String, Location> live;
+        Map<Integer, FileChannel> sealed = new TreeMap<>();
+        synchronized (this) {
+            rollSegment();
+            // The new active segment is empty, so every indexed value is in a sealed one.
+            live = new LinkedHashMap<>(index);
+            segments.forEach((number, channel) -> {
+                if (number != activeSegment) {
+                    sealed.put(number, channel);
+                }
+            });
+        }
+
+        Batch moved = new Batch();
+        Map<String, Location> expected = new LinkedHashMap<>();
+        long movedBytes = 0;
+        for (Map.Entry<String, Location> entry : live.entrySet()) {
+            Location location = entry.getValue();
+            byte[] value = read(sealed.get(location.segment()), location);
+            moved.put(entry.getKey(), value);
+            expected.put(entry.getKey(), location);
+            movedBytes += value.length;
+            if (movedBytes >= segmentBytes / 4) {
+                moveUnchanged(moved, expected);
+                moved = new Batch();
+                expected.clear();
+                movedBytes = 0;
+            }
+        }
+        moveUnchanged(moved, expected);
+
+        synchronized (this) {
+            segments.get(activeSegment).force(false);
+            pendingSync.forEach(future -> future.complete(null));
+            pendingSync = new ArrayList<>();
+
+            for (int number : sealed.keySet()) {
+                FileChannel channel = segments.remove(number);
+                totalBytes -= channel.size();
+                channel.close();
+                Files.deleteIfExists(directory.resolve(segmentName(number)));
+            }
+            compactions.increment();
+        }
+    }
+
+    /**
+     * Appends the copied values whose key still points at the copied location;
+     * keys written or deleted since the copy already live in a newer segment.
+     */
+    private synchronized void moveUnchanged(Batch moved, Map<String, Location> expected) throws IOException {
+        moved.operations.keySet().removeIf(key -> !expected.get(key).equals(index.get(key)));
+        write(moved);
+    }
+
+    synchronized Stats stats() {
+        return new Stats(index.size(), segments.size(), liveBytes, totalBytes, syncs.sum(), compactions.sum());
+    }
+
+    void close() {
+        sync();
+        synchronized (this) {
+            for (FileChannel channel : segments.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.warning("Failed to close key-value segment: " + e.getMessage());
+                }
+            }
+            segments.clear();
+        }
+    }
+
+    private void applyIndex(String key, Location location, long recordLength) {
+        Location previous = location != null ? index.put(key, location) : index.remove(key);
+        if (previous != null) {
+            liveBytes -= HEADER_BYTES + key.getBytes(StandardCharsets.UTF_8).length + previous.length();
+        }
+        if (location != null) {
+            liveBytes += recordLength;
+        }
+    }
+
+    private byte[] read(Location location) throws IOException {
+        return read(segments.get(location.segment()), location);
+    }
+
+    private static byte[] read(FileChannel channel, Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + segmentName(location.segment()));
+            }
+        }
+        return buffer.array();
+    }
+
+    private void rollSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            // Pending writes in the sealed segment must not depend on the next sync.
+            segments.get(activeSegment).force(false);
+        }
+        int next = segments.isEmpty() ? 1 : activeSegment + 1;
+        segments.put(next, openSegment(next));
+        activeSegment = next;
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(directory.resolve(segmentName(number)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static String segmentName(int number) {
+        return String.format(Locale.ROOT, "%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static byte[] encode(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int valueLength = value != null ? value.length : TOMBSTONE;
+        byte[] body = new byte[keyBytes.length + Math.max(0, valueLength)];
+        System.arraycopy(keyBytes, 0, body, 0, keyBytes.length);
+        if (value != null) {
+            System.arraycopy(value, 0, body, keyBytes.length, value.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        record.putInt(checksum(keyBytes.length, valueLength, body));
+        record.putInt(keyBytes.length);
+        record.putInt(valueLength);
+        record.put(body);
+        return record.array();
+    }
+
+    private static int checksum(int keyLength, int valueLength, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(keyLength).putInt(valueLength).array());
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,367 @@
+package com.yusaki.lammailbox.repository;
+
+import com.yusaki.lammailbox.util.ItemSerialization;
+import com.yusaki.lammailbox.util.MetricFormat;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold storage for mails that left the hot tables. Claimed, expired and
+ * deleted mails are queued, compressed and written to a separate SQLite file
+ * in batches, and stay searchable by sender or recipient for admins.
+ */
+public final class MailArchive {
+    public enum Reason {
+        CLAIMED,
+        EXPIRED,
+        DELETED
+    }
+
+    /**
+     * One archived mail with its original data and serialized item count.
+     */
+    public record Entry(String mailId, Reason reason, long archivedAt, Map<String, Object> data, int itemCount) {
+    }
+
+    private record Pending(String mailId,
+                           Reason reason,
+                           long archivedAt,
+                           Map<String, Object> data,
+                           List<byte[]> items,
+                           CompletableFuture<Void> stored) {
+    }
+
+    private final JavaPlugin plugin;
+    private final SqliteConnectionPool pool;
+    private final int batchSize;
+    private final Yaml yaml;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final Object lifecycle = new Object();
+    private boolean closed;
+
+    public MailArchive(JavaPlugin plugin, Path databasePath, int batchSize, long flushIntervalMillis) {
+        this.plugin = plugin;
+        this.pool = new SqliteConnectionPool(plugin.getLogger(), databasePath, 1);
+        this.batchSize = Math.max(1, batchSize);
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+        options.setWidth(Integer.MAX_VALUE);
+        options.setSplitLines(false);
+        this.yaml = new Yaml(options);
+        try {
+            pool.exclusive(schemaMigrator()::migrate);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to initialize mail archive: " + e.getMessage());
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LamMailBox-Archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1L, flushIntervalMillis);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private SchemaMigrator schemaMigrator() {
+        return new SchemaMigrator(plugin.getLogger(), "archive")
+                .step(1, "create archive tables", connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_archive (" +
+                                "mail_id TEXT PRIMARY KEY," +
+                                "reason TEXT NOT NULL," +
+                                "archived_at INTEGER NOT NULL," +
+                                "raw_size INTEGER NOT NULL," +
+                                "payload BLOB NOT NULL" +
+                                ")");
+                        statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_archive_players (" +
+                                "player TEXT NOT NULL," +
+                                "archived_at INTEGER NOT NULL," +
+                                "mail_id TEXT NOT NULL," +
+                                "PRIMARY KEY (player, mail_id)," +
+                                "FOREIGN KEY (mail_id) REFERENCES mail_archive(mail_id) ON DELETE CASCADE" +
+                                ")");
+                        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_archive_players_recent " +
+                                "ON mail_archive_players (player, archived_at)");
+                    }
+                });
+    }
+
+    /**
+     * Queues a mail for the next batch. Items are serialized on the calling
+     * thread; the future completes once the batch holding the mail commits,
+     * and fails right away once the archive is shutting down.
+     */
+    public CompletableFuture<Void> archive(String mailId, Map<String, Object> data, List<ItemStack> items, Reason reason) {
+        List<byte[]> serialized = new ArrayList<>(items.size());
+        for (ItemStack item : items) {
+            serialized.add(ItemSerialization.serializeItemBytes(item));
+        }
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        synchronized (lifecycle) {
+            if (closed) {
+                stored.completeExceptionally(new IllegalStateException("Mail archive has been shut down"));
+                return stored;
+            }
+            queue.add(new Pending(mailId, reason, System.currentTimeMillis(), new LinkedHashMap<>(data), serialized, stored));
+        }
+        return stored;
+    }
+
+    /**
+     * Writes the queued mails now instead of at the next interval, for callers
+     * blocking on an {@link #archive} future.
+     */
+    public void flushNow() {
+        synchronized (lifecycle) {
+            if (!closed) {
+                flusher.execute(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Archived mails the player sent or received, most recently archived first.
+     */
+    public List<Entry> search(String playerName, int offset, int limit) {
+        String sql = "SELECT a.mail_id, a.reason, a.archived_at, a.payload FROM mail_archive_players p " +
+                "JOIN mail_archive a ON a.mail_id = p.mail_id " +
+                "WHERE p.player = ? ORDER BY p.archived_at DESC, p.mail_id DESC LIMIT ? OFFSET ?";
+        try {
+            return pool.read(connection -> {
+                List<Entry> entries = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, playerName.toLowerCase(Locale.ROOT));
+                    statement.setInt(2, limit);
+                    statement.setInt(3, Math.max(0, offset));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            entries.add(readEntry(rs));
+                        }
+                    }
+                }
+                return entries;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to search mail archive for " + playerName + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    public int count(String playerName) {
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT COUNT(*) FROM mail_archive_players WHERE player = ?")) {
+                    statement.setString(1, playerName.toLowerCase(Locale.ROOT));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to count archived mails for " + playerName + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Writes queued mails, {@code batchSize} per transaction, until the queue
+     * is empty.
+     */
+    private void flush() {
+        while (!queue.isEmpty()) {
+            List<Pending> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            Pending next;
+            while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            try {
+                pool.write(connection -> {
+                    writeBatch(connection, batch);
+                    return null;
+                });
+                batches.increment();
+                archived.add(batch.size());
+                batch.forEach(pending -> pending.stored().complete(null));
+            } catch (SQLException | RuntimeException e) {
+                plugin.getLogger().warning("Failed to archive " + batch.size() + " mails: " + e.getMessage());
+                batch.forEach(pending -> pending.stored().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void writeBatch(Connection connection, List<Pending> batch) throws SQLException {
+        try (PreparedStatement mail = connection.prepareStatement(
+                "INSERT OR REPLACE INTO mail_archive (mail_id, reason, archived_at, raw_size, payload) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement player = connection.prepareStatement(
+                     "INSERT OR IGNORE INTO mail_archive_players (player, archived_at, mail_id) VALUES (?, ?, ?)")) {
+            for (Pending pending : batch) {
+                byte[] raw = encode(pending);
+                byte[] payload = compress(raw);
+                mail.setString(1, pending.mailId());
+                mail.setString(2, pending.reason().name());
+                mail.setLong(3, pending.archivedAt());
+                mail.setInt(4, raw.length);
+                mail.setBytes(5, payload);
+                mail.addBatch();
+                rawBytes.add(raw.length);
+                storedBytes.add(payload.length);
+
+                for (String name : participants(pending.data())) {
+                    player.setString(1, name);
+                    player.setLong(2, pending.archivedAt());
+                    player.setString(3, pending.mailId());
+                    player.addBatch();
+                }
+            }
+            mail.executeBatch();
+            player.executeBatch();
+        }
+    }
+
+    private static Set<String> participants(Map<String, Object> data) {
+        Set<String> names = new LinkedHashSet<>();
+        Object sender = data.get("sender");
+        if (sender != null) {
+            names.add(sender.toString().toLowerCase(Locale.ROOT));
+        }
+        Object receiver = data.get("receiver");
+        if (receiver != null) {
+            MailRecord.splitReceivers(receiver.toString())
+                    .forEach(name -> names.add(name.toLowerCase(Locale.ROOT)));
+        }
+        Object claimed = data.get("claimed-players");
+        if (claimed instanceof List<?> players) {
+            players.forEach(name -> names.add(String.valueOf(name).toLowerCase(Locale.ROOT)));
+        }
+        return names;
+    }
+
+    /**
+     * {@code dataLength | data (flow YAML) | itemCount | (itemLength | item)*}
+     */
+    private byte[] encode(Pending pending) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            byte[] data = yaml.dump(pending.data()).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+            out.writeInt(pending.items().size());
+            for (byte[] item : pending.items()) {
+                out.writeInt(item.length);
+                out.write(item);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode archived mail " + pending.mailId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(byte[] raw) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(raw.length / 2 + 16);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compress archived mail", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry readEntry(ResultSet rs) throws SQLException {
+        String mailId = rs.getString("mail_id");
+        Map<String, Object> data = Collections.emptyMap();
+        int itemCount = 0;
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(rs.getBytes("payload"))))) {
+            byte[] yamlBytes = in.readNBytes(in.readInt());
+            Object loaded = yaml.load(new String(yamlBytes, StandardCharsets.UTF_8));
+            if (loaded instanceof Map<?, ?> map) {
+                data = (Map<String, Object>) map;
+            }
+            itemCount = in.readInt();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to read archived mail " + mailId + ": " + e.getMessage());
+        }
+        return new Entry(mailId, reasonOf(rs.getString("reason")), rs.getLong("archived_at"), data, itemCount);
+    }
+
+    private static Reason reasonOf(String value) {
+        if (value == null) {
+            return Reason.DELETED;
+        }
+        try {
+            return Reason.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return Reason.DELETED;
+        }
+    }
+
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("archive.queued", String.valueOf(queue.size()));
+        metrics.put("archive.archived", archived.sum() + " in " + batches.sum() + " batches");
+        long raw = rawBytes.sum();
+        if (raw > 0) {
+            metrics.put("archive.compression", MetricFormat.formatBytes(raw) + " -> "
+                    + MetricFormat.formatBytes(storedBytes.sum()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops the periodic flush, writes whatever is still queued and closes the
+     * archive database.
+     */
+    public void shutdown() {
+        synchronized (lifecycle) {
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        pool.close();
+    }
+}
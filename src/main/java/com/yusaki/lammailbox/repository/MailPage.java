@@ -0,0 +1,39 @@
+package com.yusaki.lammailbox.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paged mail listing. {@code next} is null on the last page.
+ */
+public record MailPage(List<MailRecord> records, MailPageCursor next) {
+    public MailPage {
+        records = Collections.unmodifiableList(new ArrayList<>(records));
+    }
+
+    public static MailPage empty() {
+        return new MailPage(Collections.emptyList(), null);
+    }
+
+    /**
+     * Cuts a page out of an already newest-first sorted list, for backends that
+     * keep their mails in memory.
+     */
+    static MailPage slice(List<MailRecord> newestFirst, MailPageCursor cursor, int limit) {
+        List<MailRecord> page = new ArrayList<>(Math.max(0, limit));
+        boolean more = false;
+        for (MailRecord record : newestFirst) {
+            if (cursor != null && !cursor.precedes(record)) {
+                continue;
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(record);
+        }
+        MailPageCursor next = more && !page.isEmpty() ? MailPageCursor.of(page.get(page.size() - 1)) : null;
+        return new MailPage(page, next);
+    }
+}
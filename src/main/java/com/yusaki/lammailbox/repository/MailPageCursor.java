@@ -0,0 +1,32 @@
+package com.yusaki.lammailbox.repository;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Keyset position in a newest-first mail listing ordered by (sent date, mail id).
+ */
+public record MailPageCursor(long sentDate, String mailId) {
+    public static final Comparator<MailRecord> NEWEST_FIRST =
+            Comparator.comparingLong(MailRecord::sentDate)
+                    .thenComparing(MailRecord::id)
+                    .reversed();
+
+    public MailPageCursor {
+        Objects.requireNonNull(mailId, "mailId");
+    }
+
+    public static MailPageCursor of(MailRecord record) {
+        return new MailPageCursor(record.sentDate(), record.id());
+    }
+
+    /**
+     * Whether the record sorts after this cursor, i.e. belongs to a later page.
+     */
+    public boolean precedes(MailRecord record) {
+        if (record.sentDate() != sentDate) {
+            return record.sentDate() < sentDate;
+        }
+        return record.id().compareTo(mailId) < 0;
+    }
+}
@@ -27,6 +27,9 @@ public final class MailRecord {
     private final List<String> commands;
     private final String commandBlock;
     private final List<CommandItem> commandItems;
+    private final int itemCount;
+    private final int commandItemCount;
+    private final long payloadBytes;
 
     private MailRecord(String id,
                       String sender,
@@ -40,7 +43,10 @@ public final class MailRecord {
                       List<String> claimedPlayers,
                       List<String> commands,
                       String commandBlock,
-                      List<CommandItem> commandItems) {
+                      List<CommandItem> commandItems,
+                      int itemCount,
+                      int commandItemCount,
+                      long payloadBytes) {
         this.id = id;
         this.sender = sender;
         this.receiver = receiver;
@@ -54,6 +60,9 @@ public final class MailRecord {
         this.commands = Collections.unmodifiableList(new ArrayList<>(commands));
         this.commandBlock = commandBlock;
         this.commandItems = Collections.unmodifiableList(new ArrayList<>(commandItems));
+        this.itemCount = itemCount;
+        this.commandItemCount = commandItemCount;
+        this.payloadBytes = payloadBytes;
     }
 
     public static Optional<MailRecord> from(String id, Map<String, Object> raw) {
@@ -72,6 +81,18 @@ public final class MailRecord {
         List<String> commands = asStringList(raw.get("commands"));
         String commandBlock = asString(raw.get("command-block"));
         List<CommandItem> commandItems = asCommandItemList(raw.get("command-items"));
+        // YAML hands back the stored item list with the mail; other backends record the counts.
+        List<?> storedItems = raw.get("items") instanceof List<?> list ? list : null;
+        Long itemCount = asNullableLong(raw.get("item-count"));
+        Long commandItemCount = asNullableLong(raw.get("command-item-count"));
+        Long payloadBytes = asNullableLong(raw.get("payload-bytes"));
+        if (storedItems != null) {
+            itemCount = itemCount != null ? itemCount : (long) storedItems.size();
+            payloadBytes = payloadBytes != null ? payloadBytes : storedLength(storedItems);
+        }
+        int commandCount = commandItemCount != null
+                ? commandItemCount.intValue()
+                : (!commandItems.isEmpty() ? commandItems.size() : commands.size());
 
         return Optional.of(new MailRecord(
                 id,
@@ -86,7 +107,10 @@ public final class MailRecord {
                 claimed,
                 commands,
                 commandBlock,
-                commandItems
+                commandItems,
+                itemCount != null ? itemCount.intValue() : -1,
+                commandCount,
+                payloadBytes != null ? payloadBytes : -1L
         ));
     }
 
@@ -152,6 +176,28 @@ public final class MailRecord {
         return legacy;
     }
 
+    /**
+     * Number of attached items as recorded when they were saved, or -1 when
+     * the backend has no count for this mail and the items must be loaded.
+     */
+    public int itemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Number of entries {@link #commandItems()} returns, without building them.
+     */
+    public int commandItemCount() {
+        return commandItemCount;
+    }
+
+    /**
+     * Stored size of the serialized attachments in bytes, or -1 when unknown.
+     */
+    public long payloadBytes() {
+        return payloadBytes;
+    }
+
     public boolean hasBeenClaimedBy(String playerName) {
         return claimedPlayers.stream()
                 .anyMatch(entry -> entry.equalsIgnoreCase(playerName));
@@ -185,6 +231,17 @@ public final class MailRecord {
         if (receiver.equalsIgnoreCase("all")) {
             return Collections.emptyList();
         }
+        return splitReceivers(receiver);
+    }
+
+    /**
+     * Splits a raw receiver spec ({@code name} or {@code a;b;c}) into names.
+     * Broadcast handling is left to the caller.
+     */
+    static List<String> splitReceivers(String receiver) {
+        if (receiver == null || receiver.isEmpty()) {
+            return Collections.emptyList();
+        }
         if (!receiver.contains(";")) {
             return Collections.singletonList(receiver);
         }
@@ -198,6 +255,16 @@ public final class MailRecord {
         return list;
     }
 
+    private static long storedLength(List<?> storedItems) {
+        long total = 0;
+        for (Object item : storedItems) {
+            if (item != null) {
+                total += item.toString().length();
+            }
+        }
+        return total;
+    }
+
     private static String asString(Object value) {
         if (value == null) {
             return null;
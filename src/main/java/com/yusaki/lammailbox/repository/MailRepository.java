@@ -2,9 +2,12 @@ package com.yusaki.lammailbox.repository;
 
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Repository abstraction over the mail persistence layer. Implementations
@@ -15,8 +18,22 @@ public interface MailRepository {
 
     void saveMail(String mailId, Map<String, Object> data);
 
+    /**
+     * Queues a save and completes once it is durable. Backends without a write
+     * queue apply it immediately.
+     */
+    default CompletableFuture<Void> saveMailAsync(String mailId, Map<String, Object> data) {
+        saveMail(mailId, data);
+        return CompletableFuture.completedFuture(null);
+    }
+
     void deleteMail(String mailId);
 
+    default CompletableFuture<Void> deleteMailAsync(String mailId) {
+        deleteMail(mailId);
+        return CompletableFuture.completedFuture(null);
+    }
+
     List<String> listMailIds();
 
     List<String> listMailIdsBySender(String sender);
@@ -29,12 +46,73 @@ public interface MailRepository {
 
     void saveMailItems(String mailId, List<ItemStack> items);
 
+    default CompletableFuture<Void> saveMailItemsAsync(String mailId, List<ItemStack> items) {
+        saveMailItems(mailId, items);
+        return CompletableFuture.completedFuture(null);
+    }
+
     List<ItemStack> loadMailItems(String mailId);
 
+    /**
+     * Number of items attached to {@code record}, read from its stored count
+     * and only loading the items when the backend has none for this mail.
+     */
+    default int countMailItems(MailRecord record) {
+        return record.itemCount() >= 0 ? record.itemCount() : loadMailItems(record.id()).size();
+    }
+
     Optional<MailRecord> findRecord(String mailId);
 
+    /**
+     * Hydrates several mails at once. Unknown ids are skipped and the result keeps
+     * the order of {@code mailIds}.
+     */
+    List<MailRecord> findRecords(Collection<String> mailIds);
+
     int countActiveMailFor(String playerName);
 
+    /**
+     * Returns up to {@code limit} claimable mails for the player, newest first,
+     * starting after {@code cursor} (null for the first page).
+     */
+    MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit);
+
+    /**
+     * Returns up to {@code limit} mails sent by {@code sender}, newest first,
+     * starting after {@code cursor} (null for the first page).
+     */
+    MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit);
+
+    int countMailBySender(String sender);
+
+    /**
+     * Deletes every mail whose expire date is at or before {@code now}, together
+     * with its items, claims and commands, committing at most {@code batchSize}
+     * mails per transaction.
+     *
+     * @return the number of mails removed
+     */
+    int purgeExpired(long now, int batchSize);
+
+    /**
+     * Up to {@code limit} ids of mails whose expire date is at or before
+     * {@code now}, soonest expiry first.
+     */
+    List<String> listExpiredMailIds(long now, int limit);
+
+    /**
+     * Activates every scheduled mail whose schedule date is at or before
+     * {@code now} in a single step and returns the mails it activated.
+     */
+    List<ActivatedMail> activateDueScheduled(long now);
+
+    /**
+     * Backend-specific runtime statistics, keyed by a short metric name.
+     */
+    default Map<String, String> metrics() {
+        return Collections.emptyMap();
+    }
+
     default void shutdown() {
         // optional hook for implementations that need explicit cleanup
     }
@@ -0,0 +1,152 @@
+package com.yusaki.lammailbox.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Ordered, versioned schema changes for one component of a SQLite database.
+ * Applied versions are recorded in {@code schema_version}; every pending step
+ * runs exactly once, in its own transaction, and is timed and logged.
+ *
+ * <p>Databases created before versioning have no rows yet, so every step must
+ * also be safe to run against a schema that already has some of its changes.</p>
+ */
+public final class SchemaMigrator {
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    private final Logger logger;
+    private final String component;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator(Logger logger, String component) {
+        this.logger = logger;
+        this.component = component;
+    }
+
+    /**
+     * Registers the next step; versions must be added in increasing order.
+     */
+    public SchemaMigrator step(int version, String description, Step step) {
+        if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version() >= version) {
+            throw new IllegalArgumentException("Schema version " + version + " of " + component + " is out of order");
+        }
+        migrations.add(new Migration(version, description, step));
+        return this;
+    }
+
+    /**
+     * Applies every step newer than the recorded version and returns the
+     * resulting version. A failing step is rolled back and stops the run.
+     */
+    public int migrate(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "component TEXT NOT NULL," +
+                    "version INTEGER NOT NULL," +
+                    "description TEXT," +
+                    "applied_at INTEGER NOT NULL," +
+                    "duration_ms INTEGER NOT NULL," +
+                    "PRIMARY KEY (component, version)" +
+                    ")");
+        }
+
+        int current = currentVersion(connection);
+        int applied = 0;
+        long started = System.nanoTime();
+        try {
+            connection.setAutoCommit(false);
+            for (Migration migration : migrations) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+                long stepStarted = System.nanoTime();
+                try {
+                    migration.step().apply(connection);
+                    long durationMillis = (System.nanoTime() - stepStarted) / 1_000_000L;
+                    record(connection, migration, durationMillis);
+                    connection.commit();
+                    logger.info("Applied " + component + " schema version " + migration.version()
+                            + " (" + migration.description() + ") in " + durationMillis + "ms");
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw new SQLException("Schema version " + migration.version() + " of " + component
+                            + " (" + migration.description() + ") failed: " + e.getMessage(), e);
+                }
+                current = migration.version();
+                applied++;
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (applied > 0) {
+            logger.info("Migrated " + component + " schema to version " + current + " with " + applied
+                    + " step(s) in " + (System.nanoTime() - started) / 1_000_000L + "ms");
+        }
+        return current;
+    }
+
+    private int currentVersion(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT COALESCE(MAX(version), 0) FROM schema_version WHERE component = ?")) {
+            statement.setString(1, component);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void record(Connection connection, Migration migration, long durationMillis) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO schema_version (component, version, description, applied_at, duration_ms) " +
+                        "VALUES (?, ?, ?, ?, ?)")) {
+            statement.setString(1, component);
+            statement.setInt(2, migration.version());
+            statement.setString(3, migration.description());
+            statement.setLong(4, System.currentTimeMillis());
+            statement.setLong(5, durationMillis);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds a column unless a pre-versioning schema already has it.
+     */
+    public static void addColumnIfAbsent(Connection connection, String table, String column, String definition)
+            throws SQLException {
+        if (columnType(connection, table, column) != null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    /**
+     * The declared type of a column, or null when the table has no such column.
+     */
+    public static String columnType(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name != null && name.equalsIgnoreCase(column)) {
+                    return rs.getString("type");
+                }
+            }
+        }
+        return null;
+    }
+}
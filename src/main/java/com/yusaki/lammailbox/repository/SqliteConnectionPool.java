@@ -0,0 +1,304 @@
+package com.yusaki.lammailbox.repository;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived SQLite connections shared by a repository: a single writer and a
+ * bounded set of readers. The database runs in WAL mode so readers never wait
+ * behind an open write transaction.
+ */
+public final class SqliteConnectionPool {
+    private static final long CHECKOUT_TIMEOUT_MILLIS = 10_000L;
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Point-in-time view of pool usage.
+     */
+    public record Stats(int readerCapacity,
+                        int openReaders,
+                        int idleReaders,
+                        long readCheckouts,
+                        double averageReadWaitMillis,
+                        double maxReadWaitMillis,
+                        long writeCheckouts,
+                        double averageWriteWaitMillis,
+                        double maxWriteWaitMillis,
+                        double averageLockWaitMillis,
+                        double maxLockWaitMillis,
+                        long timeouts) {
+    }
+
+    private final Logger logger;
+    private final SQLiteDataSource dataSource;
+    private final int readerCapacity;
+    private final BlockingQueue<Connection> idleReaders;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final CheckoutStats readStats = new CheckoutStats();
+    private final CheckoutStats writeStats = new CheckoutStats();
+    private final CheckoutStats lockStats = new CheckoutStats();
+    private final LongAdder timeouts = new LongAdder();
+    private Connection writer;
+    private volatile boolean closed;
+
+    public SqliteConnectionPool(Logger logger, Path databasePath, int readerCapacity) {
+        this.logger = logger;
+        this.readerCapacity = Math.max(1, readerCapacity);
+        this.idleReaders = new ArrayBlockingQueue<>(this.readerCapacity);
+        this.dataSource = createDataSource(databasePath);
+    }
+
+    private SQLiteDataSource createDataSource(Path databasePath) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.enforceForeignKeys(true);
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        // Take the database write lock at BEGIN so the time spent waiting for it,
+        // e.g. behind another connection to the same file, can be measured there.
+        config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        SQLiteDataSource source = new SQLiteDataSource(config);
+        source.setUrl("jdbc:sqlite:" + databasePath.toAbsolutePath());
+        return source;
+    }
+
+    /**
+     * Runs read-only work on a pooled reader connection. When the calling thread
+     * already holds the writer, the writer connection is reused so the work sees
+     * its own uncommitted changes.
+     */
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        ensureOpen();
+        if (writerLock.isHeldByCurrentThread()) {
+            return work.apply(writer);
+        }
+
+        long started = System.nanoTime();
+        Connection connection = checkoutReader();
+        readStats.record(System.nanoTime() - started);
+        try {
+            return work.apply(connection);
+        } finally {
+            idleReaders.offer(connection);
+        }
+    }
+
+    /**
+     * Runs work inside a transaction on the single writer connection. Nested calls
+     * from the same thread join the outer transaction.
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        ensureOpen();
+        long started = System.nanoTime();
+        acquireWriter();
+        writeStats.record(System.nanoTime() - started);
+        try {
+            if (writerLock.getHoldCount() > 1) {
+                return work.apply(writer);
+            }
+            Connection connection = writerConnection();
+            long locking = System.nanoTime();
+            connection.setAutoCommit(false);
+            lockStats.record(System.nanoTime() - locking);
+            try {
+                T result = work.apply(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollback) {
+                    logger.warning("Failed to rollback SQLite transaction: " + rollback.getMessage());
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Runs work on the writer connection outside of any transaction, for callers
+     * such as {@link SchemaMigrator} that commit in several steps themselves.
+     */
+    public <T> T exclusive(SqlWork<T> work) throws SQLException {
+        ensureOpen();
+        acquireWriter();
+        try {
+            return work.apply(writerConnection());
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(
+                readerCapacity,
+                openReaders.get(),
+                idleReaders.size(),
+                readStats.count(),
+                readStats.averageMillis(),
+                readStats.maxMillis(),
+                writeStats.count(),
+                writeStats.averageMillis(),
+                writeStats.maxMillis(),
+                lockStats.averageMillis(),
+                lockStats.maxMillis(),
+                timeouts.sum());
+    }
+
+    /**
+     * Checkpoints the WAL into the main database file and closes every connection.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        boolean locked = false;
+        try {
+            locked = writerLock.tryLock(CHECKOUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (writer != null) {
+                try (Statement statement = writer.createStatement()) {
+                    statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                } catch (SQLException e) {
+                    logger.warning("Failed to checkpoint SQLite WAL: " + e.getMessage());
+                }
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            if (locked) {
+                writerLock.unlock();
+            }
+        }
+
+        synchronized (allReaders) {
+            for (Connection reader : allReaders) {
+                closeQuietly(reader);
+            }
+            allReaders.clear();
+        }
+        idleReaders.clear();
+    }
+
+    private Connection checkoutReader() throws SQLException {
+        Connection connection = idleReaders.poll();
+        if (connection != null) {
+            return connection;
+        }
+
+        if (openReaders.incrementAndGet() <= readerCapacity) {
+            try {
+                Connection created = dataSource.getConnection();
+                synchronized (allReaders) {
+                    allReaders.add(created);
+                }
+                return created;
+            } catch (SQLException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        }
+        openReaders.decrementAndGet();
+
+        try {
+            connection = idleReaders.poll(CHECKOUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for an SQLite reader connection", e);
+        }
+        if (connection == null) {
+            timeouts.increment();
+            throw new SQLException("Timed out waiting for an SQLite reader connection");
+        }
+        return connection;
+    }
+
+    private void acquireWriter() throws SQLException {
+        try {
+            if (!writerLock.tryLock(CHECKOUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out waiting for the SQLite writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the SQLite writer connection", e);
+        }
+    }
+
+    private Connection writerConnection() throws SQLException {
+        if (writer == null) {
+            writer = dataSource.getConnection();
+        }
+        return writer;
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("SQLite connection pool has been closed");
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("Failed to close SQLite connection: " + e.getMessage());
+        }
+    }
+
+    private static final class CheckoutStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void record(long waitNanos) {
+            count.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double averageMillis() {
+            long checkouts = count.sum();
+            return checkouts == 0 ? 0.0 : totalWaitNanos.sum() / (double) checkouts / 1_000_000.0;
+        }
+
+        double maxMillis() {
+            return maxWaitNanos.get() / 1_000_000.0;
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.yusaki.lammailbox.repository;
 
 
 import com.yusaki.lammailbox.util.ItemSerialization;
+import com.yusaki.lammailbox.util.MetricFormat;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.sqlite.SQLiteDataSource;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -15,34 +19,124 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * SQLite-backed mail repository for high-volume servers.
  */
 public class SqliteMailRepository implements MailRepository {
     private static final Map<String, String> COLUMN_MAPPING = createColumnMapping();
+    private static final int ID_CHUNK_SIZE = 500;
+    private static final int ITEM_CONVERSION_BATCH_SIZE = 256;
+    private static final long ATTACHMENT_COMPACTION_INTERVAL_MINUTES = 5L;
     private final JavaPlugin plugin;
-    private final SQLiteDataSource dataSource;
+    private final SqliteConnectionPool pool;
+    private final SqliteWriteQueue writeQueue;
+    private final AttachmentSegmentStore attachments;
+    private final boolean attachmentSegmentsEnabled;
+    private final ScheduledExecutorService attachmentCompactor;
+    private final LongAdder itemLoads = new LongAdder();
+    private final LongAdder itemLoadNanos = new LongAdder();
+    private final LongAdder itemLoadBytes = new LongAdder();
+    private final LongAdder attachmentCompactions = new LongAdder();
+    // Segment -> attachments appended there whose row has not committed yet; compaction skips those segments.
+    private final Map<Integer, Integer> pendingAttachments = new HashMap<>();
 
-    public SqliteMailRepository(JavaPlugin plugin, Path databasePath) {
+    public SqliteMailRepository(JavaPlugin plugin,
+                                Path databasePath,
+                                int readerConnections,
+                                long groupCommitWindowMillis) {
+        this(plugin, databasePath, readerConnections, groupCommitWindowMillis, null, false, 0L);
+    }
+
+    /**
+     * @param attachmentDirectory where attachment segments live; segments already
+     *                            there stay readable even when new attachments go
+     *                            back to {@code mail_items}
+     */
+    public SqliteMailRepository(JavaPlugin plugin,
+                                Path databasePath,
+                                int readerConnections,
+                                long groupCommitWindowMillis,
+                                Path attachmentDirectory,
+                                boolean attachmentSegments,
+                                long attachmentSegmentBytes) {
         this.plugin = plugin;
-        this.dataSource = createDataSource(databasePath);
+        this.pool = new SqliteConnectionPool(plugin.getLogger(), databasePath, readerConnections);
+        // Opened before the migrations, which read segment payloads to backfill item counts.
+        this.attachments = openAttachments(attachmentDirectory, attachmentSegments, attachmentSegmentBytes);
         initialize();
+        this.writeQueue = new SqliteWriteQueue(pool, plugin.getLogger(), groupCommitWindowMillis);
+        this.attachmentSegmentsEnabled = attachmentSegments && attachments != null;
+        if (attachments != null) {
+            this.attachmentCompactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "LamMailBox-Attachments");
+                thread.setDaemon(true);
+                return thread;
+            });
+            attachmentCompactor.scheduleWithFixedDelay(this::compactAttachments,
+                    ATTACHMENT_COMPACTION_INTERVAL_MINUTES, ATTACHMENT_COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        } else {
+            this.attachmentCompactor = null;
+        }
+        convertLegacyItems();
     }
 
-    private SQLiteDataSource createDataSource(Path databasePath) {
-        SQLiteDataSource dataSource = new SQLiteDataSource();
-        dataSource.setUrl("jdbc:sqlite:" + databasePath.toAbsolutePath());
-        return dataSource;
+    private AttachmentSegmentStore openAttachments(Path directory, boolean enabled, long segmentBytes) {
+        if (directory == null || (!enabled && !Files.isDirectory(directory))) {
+            return null;
+        }
+        try {
+            return new AttachmentSegmentStore(directory, plugin.getLogger(), segmentBytes);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open attachment segments, storing items in SQLite: " + e.getMessage());
+            return null;
+        }
     }
 
     private void initialize() {
-        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+        try {
+            pool.exclusive(schemaMigrator()::migrate);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to initialize SQLite database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schema history of the mail tables. Append new versions at the end; never
+     * edit a step that has shipped.
+     */
+    private SchemaMigrator schemaMigrator() {
+        return new SchemaMigrator(plugin.getLogger(), "mail")
+                .step(1, "create mail tables", this::createMailTables)
+                .step(2, "add command item model data", connection ->
+                        SchemaMigrator.addColumnIfAbsent(connection, "mail_command_items", "custom_model_data", "INTEGER"))
+                .step(3, "index mail recipients", this::createRecipientIndex)
+                .step(4, "keyset paging indexes", this::createPagingIndexes)
+                .step(5, "declare mail items as BLOB", this::rebuildItemTable)
+                .step(6, "attachment segment references", this::createAttachmentTable)
+                .step(7, "attachment and command item counts", this::addAttachmentCounts);
+    }
+
+    private void createMailTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
             statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail (" +
                     "mail_id TEXT PRIMARY KEY," +
                     "sender TEXT," +
@@ -71,48 +165,201 @@ public class SqliteMailRepository implements MailRepository {
                     "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
                     ")");
 
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_command_items (" +
-                    "mail_id TEXT NOT NULL," +
-                    "ordinal INTEGER NOT NULL," +
-                    "material TEXT," +
-                    "display_name TEXT," +
-                    "lore TEXT," +
-                    "commands TEXT," +
-                    "custom_model_data INTEGER," +
-                    "PRIMARY KEY (mail_id, ordinal)," +
-                    "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
-                    ")");
-
-            addColumnIfAbsent(connection, "mail_command_items", "custom_model_data", "INTEGER");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_command_items (" +
+                    "mail_id TEXT NOT NULL," +
+                    "ordinal INTEGER NOT NULL," +
+                    "material TEXT," +
+                    "display_name TEXT," +
+                    "lore TEXT," +
+                    "commands TEXT," +
+                    "custom_model_data INTEGER," +
+                    "PRIMARY KEY (mail_id, ordinal)," +
+                    "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
+                    ")");
 
             statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_items (" +
                     "mail_id TEXT NOT NULL," +
                     "ordinal INTEGER NOT NULL," +
-                    "item TEXT NOT NULL," +
+                    "item BLOB NOT NULL," +
                     "PRIMARY KEY (mail_id, ordinal)," +
                     "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
                     ")");
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to initialize SQLite database: " + e.getMessage());
         }
+    }
+
+    private void createRecipientIndex(Connection connection) throws SQLException {
+        boolean backfillRecipients = !tableExists(connection, "mail_recipients")
+                || SchemaMigrator.columnType(connection, "mail", "broadcast") == null;
+        SchemaMigrator.addColumnIfAbsent(connection, "mail", "broadcast", "INTEGER NOT NULL DEFAULT 0");
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_recipients (" +
+                    "mail_id TEXT NOT NULL," +
+                    "player TEXT NOT NULL," +
+                    "sent_date INTEGER," +
+                    "PRIMARY KEY (mail_id, player)," +
+                    "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
+                    ")");
+            boolean backfillSentDates = SchemaMigrator.columnType(connection, "mail_recipients", "sent_date") == null;
+            SchemaMigrator.addColumnIfAbsent(connection, "mail_recipients", "sent_date", "INTEGER");
 
+            if (backfillRecipients) {
+                backfillRecipients(connection);
+            } else if (backfillSentDates) {
+                statement.executeUpdate("UPDATE mail_recipients SET sent_date = " +
+                        "(SELECT m.sent_date FROM mail m WHERE m.mail_id = mail_recipients.mail_id)");
+            }
+        }
+    }
 
+    private void createPagingIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Inbox and sent-box pages are read straight off these indexes in (sent_date, mail_id) order.
+            statement.executeUpdate("DROP INDEX IF EXISTS idx_mail_recipients_player");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_recipients_inbox " +
+                    "ON mail_recipients (player, sent_date, mail_id)");
+            statement.executeUpdate("DROP INDEX IF EXISTS idx_mail_broadcast");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_broadcast_inbox " +
+                    "ON mail (active, sent_date, mail_id) WHERE broadcast = 1");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_sender " +
+                    "ON mail (sender, sent_date, mail_id)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_expire " +
+                    "ON mail (expire_date) WHERE expire_date IS NOT NULL");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_schedule " +
+                    "ON mail (schedule_date) WHERE schedule_date IS NOT NULL");
+        }
     }
 
-    private Connection getConnection() throws SQLException {
-        Connection connection = dataSource.getConnection();
-        try (Statement pragma = connection.createStatement()) {
-            pragma.execute("PRAGMA foreign_keys = ON");
+    /**
+     * Databases from before binary items declare the column as TEXT. The table
+     * is rebuilt with a BLOB column; existing Base64 values are copied as they
+     * are and converted by {@link #convertLegacyItems()} in the background.
+     */
+    private void rebuildItemTable(Connection connection) throws SQLException {
+        String type = SchemaMigrator.columnType(connection, "mail_items", "item");
+        if (type == null || type.equalsIgnoreCase("BLOB")) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE mail_items_rebuild (" +
+                    "mail_id TEXT NOT NULL," +
+                    "ordinal INTEGER NOT NULL," +
+                    "item BLOB NOT NULL," +
+                    "PRIMARY KEY (mail_id, ordinal)," +
+                    "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
+                    ")");
+            statement.executeUpdate("INSERT INTO mail_items_rebuild (mail_id, ordinal, item) " +
+                    "SELECT mail_id, ordinal, item FROM mail_items");
+            statement.executeUpdate("DROP TABLE mail_items");
+            statement.executeUpdate("ALTER TABLE mail_items_rebuild RENAME TO mail_items");
         }
-        return connection;
     }
 
+    private void createAttachmentTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Where a mail's packed items live when attachment segments are enabled.
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS mail_attachments (" +
+                    "mail_id TEXT PRIMARY KEY," +
+                    "segment INTEGER NOT NULL," +
+                    "offset INTEGER NOT NULL," +
+                    "length INTEGER NOT NULL," +
+                    "FOREIGN KEY (mail_id) REFERENCES mail(mail_id) ON DELETE CASCADE" +
+                    ")");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mail_attachments_segment " +
+                    "ON mail_attachments (segment)");
+        }
+    }
 
+    /**
+     * Counts that let listings and pagination size a mail without loading its
+     * items. Mails whose items sit in segment files get the count stored at the
+     * start of their segment payload; it stays unknown (NULL) only when the
+     * segments cannot be read.
+     */
+    private void addAttachmentCounts(Connection connection) throws SQLException {
+        SchemaMigrator.addColumnIfAbsent(connection, "mail", "item_count", "INTEGER");
+        SchemaMigrator.addColumnIfAbsent(connection, "mail", "command_item_count", "INTEGER NOT NULL DEFAULT 0");
+        SchemaMigrator.addColumnIfAbsent(connection, "mail", "payload_bytes", "INTEGER NOT NULL DEFAULT 0");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE mail SET " +
+                    "item_count = CASE WHEN EXISTS (SELECT 1 FROM mail_attachments a WHERE a.mail_id = mail.mail_id) " +
+                    "THEN NULL ELSE (SELECT COUNT(*) FROM mail_items i WHERE i.mail_id = mail.mail_id) END, " +
+                    "payload_bytes = COALESCE((SELECT SUM(length(i.item)) FROM mail_items i WHERE i.mail_id = mail.mail_id), 0) " +
+                    "+ COALESCE((SELECT a.length FROM mail_attachments a WHERE a.mail_id = mail.mail_id), 0)");
+        }
+        backfillSegmentItemCounts(connection);
+        updateCommandItemCount(connection, null);
+    }
+
+    private void backfillSegmentItemCounts(Connection connection) throws SQLException {
+        if (attachments == null) {
+            return;
+        }
+        Map<String, AttachmentSegmentStore.Ref> refs = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT a.mail_id, a.segment, a.offset, a.length " +
+                     "FROM mail_attachments a JOIN mail m ON m.mail_id = a.mail_id WHERE m.item_count IS NULL")) {
+            while (rs.next()) {
+                refs.put(rs.getString("mail_id"),
+                        new AttachmentSegmentStore.Ref(rs.getInt("segment"), rs.getLong("offset"), rs.getInt("length")));
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE mail SET item_count = ? WHERE mail_id = ?")) {
+            for (Map.Entry<String, AttachmentSegmentStore.Ref> entry : refs.entrySet()) {
+                try {
+                    // The payload starts with its item count.
+                    statement.setInt(1, attachments.read(entry.getValue()).getInt(0));
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to read item count of mail " + entry.getKey() + ": "
+                            + e.getMessage());
+                    continue;
+                }
+                statement.setString(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Recomputes {@code command_item_count} for one mail, or for every mail when
+     * {@code mailId} is null. Mails without command items fall back to their
+     * legacy command list, matching {@link MailRecord#commandItems()}.
+     */
+    private static void updateCommandItemCount(Connection connection, String mailId) throws SQLException {
+        String sql = "UPDATE mail SET command_item_count = COALESCE(NULLIF(" +
+                "(SELECT COUNT(*) FROM mail_command_items c WHERE c.mail_id = mail.mail_id), 0), " +
+                "(SELECT COUNT(*) FROM mail_commands c WHERE c.mail_id = mail.mail_id))" +
+                (mailId != null ? " WHERE mail_id = ?" : "");
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (mailId != null) {
+                statement.setString(1, mailId);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private void backfillRecipients(Connection connection) throws SQLException {
+        Map<String, String> receivers = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT mail_id, receiver FROM mail")) {
+            while (rs.next()) {
+                receivers.put(rs.getString("mail_id"), rs.getString("receiver"));
+            }
+        }
+        for (Map.Entry<String, String> entry : receivers.entrySet()) {
+            replaceRecipients(connection, entry.getKey(), entry.getValue());
+        }
+        if (!receivers.isEmpty()) {
+            plugin.getLogger().info("Indexed recipients for " + receivers.size() + " existing mails");
+        }
+    }
 
     @Override
     public Map<String, Object> loadMail(String mailId) {
-        try (Connection connection = getConnection()) {
-            return loadMail(connection, mailId);
+        try {
+            return pool.read(connection -> loadMail(connection, mailId));
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to load mail " + mailId + ": " + e.getMessage());
             return Collections.emptyMap();
@@ -120,32 +367,92 @@ public class SqliteMailRepository implements MailRepository {
     }
 
     private Map<String, Object> loadMail(Connection connection, String mailId) throws SQLException {
-        String sql = "SELECT sender, receiver, message, sent_date, schedule_date, expire_date, active, admin_mail, command_block " +
-                "FROM mail WHERE mail_id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, mailId);
-            try (ResultSet rs = statement.executeQuery()) {
-                if (!rs.next()) {
-                    return Collections.emptyMap();
+        Map<String, Object> data = loadMails(connection, List.of(mailId)).get(mailId);
+        return data != null ? data : Collections.emptyMap();
+    }
+
+    /**
+     * Loads the given mails with four set-based queries per chunk of ids instead
+     * of four queries per mail.
+     */
+    private Map<String, Map<String, Object>> loadMails(Connection connection, List<String> mailIds) throws SQLException {
+        Map<String, Map<String, Object>> mails = new HashMap<>();
+        for (int start = 0; start < mailIds.size(); start += ID_CHUNK_SIZE) {
+            List<String> chunk = mailIds.subList(start, Math.min(mailIds.size(), start + ID_CHUNK_SIZE));
+            String in = placeholders(chunk.size());
+
+            String sql = "SELECT mail_id, sender, receiver, message, sent_date, schedule_date, expire_date, active, admin_mail, command_block, " +
+                    "item_count, command_item_count, payload_bytes " +
+                    "FROM mail WHERE mail_id IN (" + in + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bindIds(statement, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> data = new HashMap<>();
+                        data.put("sender", rs.getString("sender"));
+                        data.put("receiver", rs.getString("receiver"));
+                        data.put("message", rs.getString("message"));
+                        data.put("sent-date", rs.getLong("sent_date"));
+                        data.put("schedule-date", getNullableLong(rs, "schedule_date"));
+                        data.put("expire-date", getNullableLong(rs, "expire_date"));
+                        data.put("active", rs.getInt("active") != 0);
+                        data.put("is-admin-mail", rs.getInt("admin_mail") != 0);
+                        data.put("command-block", rs.getString("command_block"));
+                        data.put("item-count", getNullableInteger(rs, "item_count"));
+                        data.put("command-item-count", rs.getInt("command_item_count"));
+                        data.put("payload-bytes", rs.getLong("payload_bytes"));
+                        data.put("claimed-players", new ArrayList<String>());
+                        data.put("commands", new ArrayList<String>());
+                        data.put("command-items", new ArrayList<Map<String, Object>>());
+                        mails.put(rs.getString("mail_id"), data);
+                    }
+                }
+            }
+            if (mails.isEmpty()) {
+                continue;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT mail_id, player FROM mail_claimed WHERE mail_id IN (" + in + ") ORDER BY mail_id, player")) {
+                bindIds(statement, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        appendValue(mails, rs.getString("mail_id"), "claimed-players", rs.getString("player"));
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT mail_id, command FROM mail_commands WHERE mail_id IN (" + in + ") ORDER BY mail_id, ordinal")) {
+                bindIds(statement, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        appendValue(mails, rs.getString("mail_id"), "commands", rs.getString("command"));
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT mail_id, material, display_name, lore, commands, custom_model_data FROM mail_command_items " +
+                            "WHERE mail_id IN (" + in + ") ORDER BY mail_id, ordinal")) {
+                bindIds(statement, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> item = new HashMap<>();
+                        item.put("material", rs.getString("material"));
+                        item.put("name", rs.getString("display_name"));
+                        item.put("lore", splitString(rs.getString("lore")));
+                        item.put("commands", splitString(rs.getString("commands")));
+                        Integer customModel = getNullableInteger(rs, "custom_model_data");
+                        if (customModel != null) {
+                            item.put("custom-model-data", customModel);
+                        }
+                        appendValue(mails, rs.getString("mail_id"), "command-items", item);
+                    }
                 }
-                Map<String, Object> data = new HashMap<>();
-                data.put("sender", rs.getString("sender"));
-                data.put("receiver", rs.getString("receiver"));
-                data.put("message", rs.getString("message"));
-                data.put("sent-date", rs.getLong("sent_date"));
-                Long scheduleDate = getNullableLong(rs, "schedule_date");
-                Long expireDate = getNullableLong(rs, "expire_date");
-                data.put("schedule-date", scheduleDate);
-                data.put("expire-date", expireDate);
-                data.put("active", rs.getInt("active") != 0);
-                data.put("is-admin-mail", rs.getInt("admin_mail") != 0);
-                data.put("command-block", rs.getString("command_block"));
-                data.put("claimed-players", loadClaimedPlayers(connection, mailId));
-                data.put("commands", loadCommands(connection, mailId));
-                data.put("command-items", loadCommandItems(connection, mailId));
-                return data;
             }
         }
+        return mails;
     }
 
     @Override
@@ -154,55 +461,110 @@ public class SqliteMailRepository implements MailRepository {
             return;
         }
 
-        try (Connection connection = getConnection()) {
-            boolean previousAutoCommit = connection.getAutoCommit();
-            try {
-                connection.setAutoCommit(false);
-                ensureMailRow(connection, mailId);
-
-                List<String> columns = new ArrayList<>();
-                List<Object> values = new ArrayList<>();
-
-                for (Map.Entry<String, Object> entry : data.entrySet()) {
-                    String key = entry.getKey();
-                    Object value = entry.getValue();
-                    switch (key) {
-                        case "claimed-players":
-                            replaceClaimedPlayers(connection, mailId, asStringList(value));
-                            break;
-                        case "commands":
-                            replaceCommands(connection, mailId, asStringList(value));
-                            break;
-                        case "command-items":
-                            replaceCommandItems(connection, mailId, asCommandItemMapList(value));
-                            break;
-                        default:
-                            String column = toColumnName(key);
-                            if (column != null) {
-                                columns.add(column);
-                                values.add(value);
-                            }
-                            break;
+        try {
+            write(connection -> {
+                saveMail(connection, mailId, data);
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to save mail " + mailId + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMailAsync(String mailId, Map<String, Object> data) {
+        if (data == null || data.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, Object> snapshot = new HashMap<>(data);
+        return writeQueue.<Void>submit(connection -> {
+            saveMail(connection, mailId, snapshot);
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Failed to save mail " + mailId + ": " + error.getMessage());
+            }
+        });
+    }
+
+    private void saveMail(Connection connection, String mailId, Map<String, Object> data) throws SQLException {
+        ensureMailRow(connection, mailId);
+
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            switch (key) {
+                case "claimed-players":
+                    replaceClaimedPlayers(connection, mailId, asStringList(value));
+                    break;
+                case "commands":
+                    replaceCommands(connection, mailId, asStringList(value));
+                    break;
+                case "command-items":
+                    replaceCommandItems(connection, mailId, asCommandItemMapList(value));
+                    break;
+                default:
+                    String column = toColumnName(key);
+                    if (column != null) {
+                        columns.add(column);
+                        values.add(value);
                     }
-                }
+                    break;
+            }
+        }
 
-                if (!columns.isEmpty()) {
-                    updateColumns(connection, mailId, columns, values);
-                }
+        if (!columns.isEmpty()) {
+            updateColumns(connection, mailId, columns, values);
+        }
+        if (data.containsKey("command-items") || data.containsKey("commands")) {
+            updateCommandItemCount(connection, mailId);
+        }
+        if (data.containsKey("receiver")) {
+            replaceRecipients(connection, mailId, nullableString(data.get("receiver")));
+        } else if (data.containsKey("sent-date")) {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE mail_recipients SET sent_date = (SELECT sent_date FROM mail WHERE mail_id = ?) WHERE mail_id = ?")) {
+                update.setString(1, mailId);
+                update.setString(2, mailId);
+                update.executeUpdate();
+            }
+        }
+    }
 
-                connection.commit();
-            } catch (SQLException e) {
-                try {
-                    connection.rollback();
-                } catch (SQLException rollback) {
-                    plugin.getLogger().warning("Failed to rollback SQLite transaction: " + rollback.getMessage());
-                }
-                throw e;
-            } finally {
-                connection.setAutoCommit(previousAutoCommit);
+    /**
+     * Rebuilds the normalized recipient rows for a mail. Broadcasts ("all") are
+     * flagged on the mail row instead of being expanded per player.
+     */
+    private void replaceRecipients(Connection connection, String mailId, String receiver) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM mail_recipients WHERE mail_id = ?")) {
+            delete.setString(1, mailId);
+            delete.executeUpdate();
+        }
+
+        boolean broadcast = receiver != null && receiver.equalsIgnoreCase("all");
+        try (PreparedStatement flag = connection.prepareStatement("UPDATE mail SET broadcast = ? WHERE mail_id = ?")) {
+            flag.setInt(1, broadcast ? 1 : 0);
+            flag.setString(2, mailId);
+            flag.executeUpdate();
+        }
+
+        List<String> players = broadcast ? Collections.emptyList() : MailRecord.splitReceivers(receiver);
+        if (players.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT OR IGNORE INTO mail_recipients (mail_id, player, sent_date) " +
+                        "SELECT mail_id, ?, sent_date FROM mail WHERE mail_id = ?")) {
+            for (String player : players) {
+                insert.setString(1, player.toLowerCase(Locale.ROOT));
+                insert.setString(2, mailId);
+                insert.addBatch();
             }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save mail " + mailId + ": " + e.getMessage());
+            insert.executeBatch();
         }
     }
 
@@ -323,102 +685,70 @@ public class SqliteMailRepository implements MailRepository {
             return;
         }
 
-        try (PreparedStatement insert = connection.prepareStatement(
-                "INSERT INTO mail_command_items (mail_id, ordinal, material, display_name, lore, commands, custom_model_data) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-            for (int i = 0; i < commandItems.size(); i++) {
-                Map<String, Object> item = commandItems.get(i);
-                insert.setString(1, mailId);
-                insert.setInt(2, i);
-                insert.setString(3, nullableString(item.get("material")));
-                insert.setString(4, nullableString(item.get("name")));
-                insert.setString(5, joinList(asStringList(item.get("lore"))));
-                insert.setString(6, joinList(asStringList(item.get("commands"))));
-                Integer customModel = toNullableInteger(item.get("custom-model-data"));
-                if (customModel != null) {
-                    insert.setInt(7, customModel);
-                } else {
-                    insert.setNull(7, Types.INTEGER);
-                }
-                insert.addBatch();
-            }
-            insert.executeBatch();
-        }
-    }
-
-    private List<String> loadClaimedPlayers(Connection connection, String mailId) throws SQLException {
-        List<String> players = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(
-                "SELECT player FROM mail_claimed WHERE mail_id = ? ORDER BY player")) {
-            statement.setString(1, mailId);
-            try (ResultSet rs = statement.executeQuery()) {
-                while (rs.next()) {
-                    players.add(rs.getString("player"));
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO mail_command_items (mail_id, ordinal, material, display_name, lore, commands, custom_model_data) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < commandItems.size(); i++) {
+                Map<String, Object> item = commandItems.get(i);
+                insert.setString(1, mailId);
+                insert.setInt(2, i);
+                insert.setString(3, nullableString(item.get("material")));
+                insert.setString(4, nullableString(item.get("name")));
+                insert.setString(5, joinList(asStringList(item.get("lore"))));
+                insert.setString(6, joinList(asStringList(item.get("commands"))));
+                Integer customModel = toNullableInteger(item.get("custom-model-data"));
+                if (customModel != null) {
+                    insert.setInt(7, customModel);
+                } else {
+                    insert.setNull(7, Types.INTEGER);
                 }
+                insert.addBatch();
             }
+            insert.executeBatch();
         }
-        return players;
     }
 
-    private List<String> loadCommands(Connection connection, String mailId) throws SQLException {
-        List<String> commands = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(
-                "SELECT command FROM mail_commands WHERE mail_id = ? ORDER BY ordinal")) {
-            statement.setString(1, mailId);
-            try (ResultSet rs = statement.executeQuery()) {
-                while (rs.next()) {
-                    commands.add(rs.getString("command"));
-                }
-            }
+    @Override
+    public void deleteMail(String mailId) {
+        try {
+            write(connection -> deleteMail(connection, mailId));
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to delete mail " + mailId + ": " + e.getMessage());
         }
-        return commands;
-    }
-
-    private List<Map<String, Object>> loadCommandItems(Connection connection, String mailId) throws SQLException {
-        List<Map<String, Object>> items = new ArrayList<>();
-        String sql = "SELECT material, display_name, lore, commands, custom_model_data FROM mail_command_items WHERE mail_id = ? ORDER BY ordinal";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, mailId);
-            try (ResultSet rs = statement.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("material", rs.getString("material"));
-                    item.put("name", rs.getString("display_name"));
-                    item.put("lore", splitString(rs.getString("lore")));
-                    item.put("commands", splitString(rs.getString("commands")));
-                    Integer customModel = getNullableInteger(rs, "custom_model_data");
-                    if (customModel != null) {
-                        item.put("custom-model-data", customModel);
-                    }
-                    items.add(item);
-                }
-            }
-        }
-        return items;
     }
 
     @Override
-    public void deleteMail(String mailId) {
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement("DELETE FROM mail WHERE mail_id = ?")) {
+    public CompletableFuture<Void> deleteMailAsync(String mailId) {
+        return writeQueue.submit(connection -> deleteMail(connection, mailId))
+                .<Void>thenApply(ignored -> null)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        plugin.getLogger().warning("Failed to delete mail " + mailId + ": " + error.getMessage());
+                    }
+                });
+    }
+
+    private int deleteMail(Connection connection, String mailId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM mail WHERE mail_id = ?")) {
             statement.setString(1, mailId);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to delete mail " + mailId + ": " + e.getMessage());
+            return statement.executeUpdate();
         }
     }
 
     @Override
     public List<String> listMailIds() {
         String sql = "SELECT mail_id FROM mail ORDER BY sent_date DESC";
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql);
-             ResultSet rs = statement.executeQuery()) {
-            List<String> ids = new ArrayList<>();
-            while (rs.next()) {
-                ids.add(rs.getString("mail_id"));
-            }
-            return ids;
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql);
+                     ResultSet rs = statement.executeQuery()) {
+                    List<String> ids = new ArrayList<>();
+                    while (rs.next()) {
+                        ids.add(rs.getString("mail_id"));
+                    }
+                    return ids;
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to list mail ids: " + e.getMessage());
             return Collections.emptyList();
@@ -428,16 +758,19 @@ public class SqliteMailRepository implements MailRepository {
     @Override
     public List<String> listMailIdsBySender(String sender) {
         String sql = "SELECT mail_id FROM mail WHERE sender = ? ORDER BY sent_date DESC";
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, sender);
-            try (ResultSet rs = statement.executeQuery()) {
-                List<String> ids = new ArrayList<>();
-                while (rs.next()) {
-                    ids.add(rs.getString("mail_id"));
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, sender);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        List<String> ids = new ArrayList<>();
+                        while (rs.next()) {
+                            ids.add(rs.getString("mail_id"));
+                        }
+                        return ids;
+                    }
                 }
-                return ids;
-            }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to list mail ids for sender " + sender + ": " + e.getMessage());
             return Collections.emptyList();
@@ -446,24 +779,34 @@ public class SqliteMailRepository implements MailRepository {
 
     @Override
     public List<String> listActiveMailIdsFor(String playerName) {
-        String sql = "SELECT mail_id FROM mail WHERE active = 1";
-        List<String> ids = new ArrayList<>();
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql);
-             ResultSet rs = statement.executeQuery()) {
-            while (rs.next()) {
-                String mailId = rs.getString("mail_id");
-                Map<String, Object> data = loadMail(connection, mailId);
-                MailRecord.from(mailId, data).ifPresent(record -> {
-                    if (record.canBeClaimedBy(playerName)) {
-                        ids.add(mailId);
+        String sql = "SELECT mail_id FROM (" +
+                "SELECT m.mail_id, m.sent_date FROM mail_recipients r " +
+                "JOIN mail m ON m.mail_id = r.mail_id " +
+                "WHERE r.player = ? AND m.active = 1 " +
+                "UNION ALL " +
+                "SELECT m.mail_id, m.sent_date FROM mail m " +
+                "WHERE m.broadcast = 1 AND m.active = 1 AND NOT EXISTS (" +
+                "SELECT 1 FROM mail_claimed c WHERE c.mail_id = m.mail_id AND c.player = ? COLLATE NOCASE)" +
+                ") ORDER BY sent_date DESC, mail_id DESC";
+        String lowerName = playerName.toLowerCase(Locale.ROOT);
+        try {
+            return pool.read(connection -> {
+                List<String> ids = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, lowerName);
+                    statement.setString(2, playerName);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getString("mail_id"));
+                        }
                     }
-                });
-            }
+                }
+                return ids;
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to list active mails for " + playerName + ": " + e.getMessage());
+            return Collections.emptyList();
         }
-        return ids;
     }
 
     @Override
@@ -474,89 +817,744 @@ public class SqliteMailRepository implements MailRepository {
 
     @Override
     public void save() {
-        // SQLite operations are auto-committed; nothing to flush.
+        // Acts as a barrier: returns once every write queued before it has committed.
+        try {
+            write(connection -> null);
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to flush SQLite write queue: " + e.getMessage());
+        }
     }
 
     @Override
     public void saveMailItems(String mailId, List<ItemStack> items) {
-        List<String> serialized = ItemSerialization.serializeItems(items);
-        try (Connection connection = getConnection()) {
-            boolean previousAutoCommit = connection.getAutoCommit();
-            try {
-                connection.setAutoCommit(false);
-                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM mail_items WHERE mail_id = ?")) {
-                    delete.setString(1, mailId);
-                    delete.executeUpdate();
-                }
+        try {
+            itemWrite(mailId, items, true).join();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save items for mail " + mailId + ": " + e.getMessage());
+        } catch (CompletionException e) {
+            plugin.getLogger().warning("Failed to save items for mail " + mailId + ": " + e.getCause().getMessage());
+        }
+    }
 
-                if (!serialized.isEmpty()) {
-                    try (PreparedStatement insert = connection.prepareStatement(
-                            "INSERT INTO mail_items (mail_id, ordinal, item) VALUES (?, ?, ?)")) {
-                        for (int i = 0; i < serialized.size(); i++) {
-                            insert.setString(1, mailId);
-                            insert.setInt(2, i);
-                            insert.setString(3, serialized.get(i));
-                            insert.addBatch();
+    @Override
+    public CompletableFuture<Void> saveMailItemsAsync(String mailId, List<ItemStack> items) {
+        CompletableFuture<Void> written;
+        try {
+            written = itemWrite(mailId, items, false);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save items for mail " + mailId + ": " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return written.whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Failed to save items for mail " + mailId + ": " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Serializes the items on the calling thread and, with attachment segments
+     * enabled, appends them there too, leaving only the row updates to the writer.
+     * The appended payload counts as pending until its row has committed.
+     */
+    private CompletableFuture<Void> itemWrite(String mailId, List<ItemStack> items, boolean immediate)
+            throws IOException {
+        List<byte[]> serialized = serializeItems(items);
+        AttachmentSegmentStore.Ref ref = attachmentSegmentsEnabled && !serialized.isEmpty()
+                ? appendPending(AttachmentSegmentStore.encode(serialized))
+                : null;
+        long payloadBytes = 0;
+        for (byte[] item : serialized) {
+            payloadBytes += item.length;
+        }
+        long storedBytes = ref != null ? ref.length() : payloadBytes;
+        SqliteConnectionPool.SqlWork<Void> work = connection -> {
+            replaceItems(connection, mailId, ref == null ? serialized : List.of(), ref);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE mail SET item_count = ?, payload_bytes = ? WHERE mail_id = ?")) {
+                update.setInt(1, serialized.size());
+                update.setLong(2, storedBytes);
+                update.setString(3, mailId);
+                update.executeUpdate();
+            }
+            return null;
+        };
+        CompletableFuture<Void> written = immediate ? writeQueue.submitNow(work) : writeQueue.submit(work);
+        return ref != null ? written.whenComplete((ignored, error) -> releasePending(ref)) : written;
+    }
+
+    private AttachmentSegmentStore.Ref appendPending(ByteBuffer payload) throws IOException {
+        synchronized (pendingAttachments) {
+            AttachmentSegmentStore.Ref ref = attachments.append(payload);
+            pendingAttachments.merge(ref.segment(), 1, Integer::sum);
+            return ref;
+        }
+    }
+
+    private void releasePending(AttachmentSegmentStore.Ref ref) {
+        synchronized (pendingAttachments) {
+            pendingAttachments.computeIfPresent(ref.segment(), (segment, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static List<byte[]> serializeItems(List<ItemStack> items) {
+        List<byte[]> serialized = new ArrayList<>(items.size());
+        for (ItemStack item : items) {
+            serialized.add(ItemSerialization.serializeItemBytes(item));
+        }
+        return serialized;
+    }
+
+    private void replaceItems(Connection connection,
+                              String mailId,
+                              List<byte[]> serialized,
+                              AttachmentSegmentStore.Ref ref) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM mail_items WHERE mail_id = ?")) {
+            delete.setString(1, mailId);
+            delete.executeUpdate();
+        }
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM mail_attachments WHERE mail_id = ?")) {
+            delete.setString(1, mailId);
+            delete.executeUpdate();
+        }
+
+        if (ref != null) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO mail_attachments (mail_id, segment, offset, length) VALUES (?, ?, ?, ?)")) {
+                insert.setString(1, mailId);
+                insert.setInt(2, ref.segment());
+                insert.setLong(3, ref.offset());
+                insert.setInt(4, ref.length());
+                insert.executeUpdate();
+            }
+        }
+
+        if (serialized.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO mail_items (mail_id, ordinal, item) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < serialized.size(); i++) {
+                insert.setString(1, mailId);
+                insert.setInt(2, i);
+                insert.setBytes(3, serialized.get(i));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Override
+    public List<ItemStack> loadMailItems(String mailId) {
+        // Rows not yet converted from Base64 TEXT are still decoded on the fly.
+        String sql = "SELECT item, typeof(item) AS item_type, length(item) AS item_length " +
+                "FROM mail_items WHERE mail_id = ? ORDER BY ordinal";
+        long started = System.nanoTime();
+        try {
+            List<ItemStack> items = loadSegmentItems(mailId);
+            if (items == null) {
+                items = pool.read(connection -> {
+                    List<ItemStack> loaded = new ArrayList<>();
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setString(1, mailId);
+                        try (ResultSet rs = statement.executeQuery()) {
+                            while (rs.next()) {
+                                itemLoadBytes.add(rs.getLong("item_length"));
+                                ItemStack item = "blob".equals(rs.getString("item_type"))
+                                        ? ItemSerialization.deserializeItem(rs.getBinaryStream("item"))
+                                        : ItemSerialization.deserializeItem(rs.getString("item"));
+                                if (item != null) {
+                                    loaded.add(item);
+                                }
+                            }
                         }
-                        insert.executeBatch();
                     }
-                }
+                    return loaded;
+                });
+            }
+            itemLoads.increment();
+            itemLoadNanos.add(System.nanoTime() - started);
+            return items;
+        } catch (SQLException | IOException e) {
+            plugin.getLogger().warning("Failed to load items for mail " + mailId + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-                connection.commit();
-            } catch (SQLException e) {
-                try {
-                    connection.rollback();
-                } catch (SQLException rollback) {
-                    plugin.getLogger().warning("Failed to rollback SQLite transaction: " + rollback.getMessage());
+    /**
+     * Items kept in an attachment segment, or null when the mail has none there.
+     * The reference is looked up again if compaction retired its segment between
+     * the lookup and the read.
+     */
+    private List<ItemStack> loadSegmentItems(String mailId) throws SQLException, IOException {
+        if (attachments == null) {
+            return null;
+        }
+        for (int attempt = 0; ; attempt++) {
+            AttachmentSegmentStore.Ref ref = pool.read(connection -> findAttachment(connection, mailId));
+            if (ref == null) {
+                return null;
+            }
+            ByteBuffer payload;
+            try {
+                payload = attachments.read(ref);
+            } catch (IOException e) {
+                if (attempt == 0) {
+                    continue;
                 }
                 throw e;
-            } finally {
-                connection.setAutoCommit(previousAutoCommit);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to save items for mail " + mailId + ": " + e.getMessage());
+            itemLoadBytes.add(ref.length());
+            List<ItemStack> items = new ArrayList<>();
+            for (InputStream stream : AttachmentSegmentStore.decode(payload)) {
+                ItemStack item = ItemSerialization.deserializeItem(stream);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            return items;
         }
     }
 
-    @Override
-    public List<ItemStack> loadMailItems(String mailId) {
-        String sql = "SELECT item FROM mail_items WHERE mail_id = ? ORDER BY ordinal";
-        List<ItemStack> items = new ArrayList<>();
-        try (Connection connection = getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)) {
+    private static AttachmentSegmentStore.Ref findAttachment(Connection connection, String mailId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT segment, offset, length FROM mail_attachments WHERE mail_id = ?")) {
             statement.setString(1, mailId);
             try (ResultSet rs = statement.executeQuery()) {
-                while (rs.next()) {
-                    String serialized = rs.getString("item");
-                    ItemStack item = ItemSerialization.deserializeItem(serialized);
-                    if (item != null) {
-                        items.add(item);
+                return rs.next()
+                        ? new AttachmentSegmentStore.Ref(rs.getInt("segment"), rs.getLong("offset"), rs.getInt("length"))
+                        : null;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the still-referenced payloads of every sealed segment that is at
+     * least half garbage into the active segment, repoints their rows and
+     * deletes the old segment.
+     */
+    private void compactAttachments() {
+        try {
+            Map<Integer, Long> sealed = attachments.sealedSegments();
+            if (sealed.isEmpty()) {
+                return;
+            }
+            // Taken before the live bytes are read: a payload that is no longer
+            // pending by then has committed its row, so the read counts it.
+            Set<Integer> pending;
+            synchronized (pendingAttachments) {
+                pending = new HashSet<>(pendingAttachments.keySet());
+            }
+            Map<Integer, Long> live = pool.read(SqliteMailRepository::liveAttachmentBytes);
+            for (Map.Entry<Integer, Long> segment : sealed.entrySet()) {
+                long liveBytes = live.getOrDefault(segment.getKey(), 0L);
+                if (pending.contains(segment.getKey()) || liveBytes * 2 > segment.getValue()) {
+                    continue;
+                }
+                long started = System.nanoTime();
+                int moved = moveAttachments(segment.getKey());
+                attachments.delete(segment.getKey());
+                attachmentCompactions.increment();
+                plugin.getLogger().info("Compacted attachment segment " + segment.getKey() + ": moved " + moved
+                        + " attachments, reclaimed " + MetricFormat.formatBytes(segment.getValue() - liveBytes) + " in "
+                        + (System.nanoTime() - started) / 1_000_000L + "ms");
+            }
+        } catch (SQLException | IOException e) {
+            plugin.getLogger().warning("Failed to compact attachment segments: " + e.getMessage());
+        }
+    }
+
+    private static Map<Integer, Long> liveAttachmentBytes(Connection connection) throws SQLException {
+        Map<Integer, Long> live = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT segment, SUM(length) AS live FROM mail_attachments GROUP BY segment")) {
+            while (rs.next()) {
+                live.put(rs.getInt("segment"), rs.getLong("live"));
+            }
+        }
+        return live;
+    }
+
+    private record AttachmentMove(String mailId, AttachmentSegmentStore.Ref from, AttachmentSegmentStore.Ref to) {
+    }
+
+    private int moveAttachments(int segment) throws SQLException, IOException {
+        List<AttachmentMove> moves = new ArrayList<>();
+        Map<String, AttachmentSegmentStore.Ref> refs = pool.read(connection -> {
+            Map<String, AttachmentSegmentStore.Ref> found = new LinkedHashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT mail_id, offset, length FROM mail_attachments WHERE segment = ? ORDER BY offset")) {
+                statement.setInt(1, segment);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        found.put(rs.getString("mail_id"),
+                                new AttachmentSegmentStore.Ref(segment, rs.getLong("offset"), rs.getInt("length")));
                     }
                 }
             }
+            return found;
+        });
+        for (Map.Entry<String, AttachmentSegmentStore.Ref> entry : refs.entrySet()) {
+            AttachmentSegmentStore.Ref to = attachments.append(attachments.read(entry.getValue()));
+            moves.add(new AttachmentMove(entry.getKey(), entry.getValue(), to));
+        }
+        if (moves.isEmpty()) {
+            return 0;
+        }
+        // Rows replaced or deleted since they were read keep their new value.
+        write(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE mail_attachments SET segment = ?, offset = ?, length = ? " +
+                            "WHERE mail_id = ? AND segment = ? AND offset = ?")) {
+                for (AttachmentMove move : moves) {
+                    update.setInt(1, move.to().segment());
+                    update.setLong(2, move.to().offset());
+                    update.setInt(3, move.to().length());
+                    update.setString(4, move.mailId());
+                    update.setInt(5, move.from().segment());
+                    update.setLong(6, move.from().offset());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+            return null;
+        });
+        return moves.size();
+    }
+
+    /**
+     * Rewrites Base64 TEXT attachments as raw BLOBs, one queued batch at a time
+     * so the conversion interleaves with normal writes instead of blocking startup.
+     */
+    private void convertLegacyItems() {
+        ItemStorageSize before;
+        try {
+            before = pool.read(SqliteMailRepository::itemStorageSize);
         } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to load items for mail " + mailId + ": " + e.getMessage());
+            plugin.getLogger().warning("Failed to inspect stored mail items: " + e.getMessage());
+            return;
+        }
+        if (before.legacyRows() == 0) {
+            return;
+        }
+        plugin.getLogger().info("Converting " + before.legacyRows() + " Base64 mail items to binary in the background");
+        convertLegacyItems(before, 0L, 0, System.nanoTime());
+    }
+
+    private void convertLegacyItems(ItemStorageSize before, long afterRowId, int converted, long started) {
+        writeQueue.submit(connection -> convertLegacyItemBatch(connection, afterRowId))
+                .whenComplete((progress, error) -> {
+                    if (error != null) {
+                        plugin.getLogger().warning("Failed to convert mail items to binary: " + error.getMessage());
+                        return;
+                    }
+                    if (progress.rowId() > afterRowId) {
+                        convertLegacyItems(before, progress.rowId(), converted + progress.converted(), started);
+                        return;
+                    }
+                    reportItemConversion(before, converted, System.nanoTime() - started);
+                });
+    }
+
+    private record ConversionProgress(long rowId, int converted) {
+    }
+
+    private ConversionProgress convertLegacyItemBatch(Connection connection, long afterRowId) throws SQLException {
+        Map<Long, String> batch = new LinkedHashMap<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT rowid, item FROM mail_items WHERE rowid > ? AND typeof(item) = 'text' ORDER BY rowid LIMIT ?")) {
+            select.setLong(1, afterRowId);
+            select.setInt(2, ITEM_CONVERSION_BATCH_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    batch.put(rs.getLong(1), rs.getString(2));
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return new ConversionProgress(afterRowId, 0);
+        }
+
+        long lastRowId = afterRowId;
+        int converted = 0;
+        try (PreparedStatement update = connection.prepareStatement("UPDATE mail_items SET item = ? WHERE rowid = ?")) {
+            for (Map.Entry<Long, String> entry : batch.entrySet()) {
+                lastRowId = entry.getKey();
+                byte[] bytes;
+                try {
+                    bytes = Base64.getDecoder().decode(entry.getValue());
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Skipping unreadable mail item row " + entry.getKey() + ": " + e.getMessage());
+                    continue;
+                }
+                update.setBytes(1, bytes);
+                update.setLong(2, entry.getKey());
+                update.addBatch();
+                converted++;
+            }
+            update.executeBatch();
         }
-        return items;
+        return new ConversionProgress(lastRowId, converted);
     }
 
+    private void reportItemConversion(ItemStorageSize before, int converted, long elapsedNanos) {
+        try {
+            ItemStorageSize after = pool.read(SqliteMailRepository::itemStorageSize);
+            plugin.getLogger().info("Converted " + converted + " mail items to binary in "
+                    + MetricFormat.formatMillis(elapsedNanos / 1_000_000.0)
+                    + ": item payload " + MetricFormat.formatBytes(before.payloadBytes()) + " -> " + MetricFormat.formatBytes(after.payloadBytes())
+                    + ", database in use " + MetricFormat.formatBytes(before.databaseBytes()) + " -> " + MetricFormat.formatBytes(after.databaseBytes()));
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to inspect stored mail items: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Item payload and live database size. Freed pages are excluded so the
+     * figures stay comparable without a VACUUM.
+     */
+    private record ItemStorageSize(long legacyRows, long payloadBytes, long databaseBytes) {
+    }
+
+    private static ItemStorageSize itemStorageSize(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            long legacyRows;
+            long payloadBytes;
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT COALESCE(SUM(typeof(item) = 'text'), 0), COALESCE(SUM(length(item)), 0) FROM mail_items")) {
+                rs.next();
+                legacyRows = rs.getLong(1);
+                payloadBytes = rs.getLong(2);
+            }
+            long pageSize = pragmaLong(statement, "page_size");
+            long usedPages = pragmaLong(statement, "page_count") - pragmaLong(statement, "freelist_count");
+            return new ItemStorageSize(legacyRows, payloadBytes, usedPages * pageSize);
+        }
+    }
+
+    private static long pragmaLong(Statement statement, String pragma) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+
     @Override
     public Optional<MailRecord> findRecord(String mailId) {
         Map<String, Object> data = loadMail(mailId);
         return MailRecord.from(mailId, data);
     }
 
+    @Override
+    public List<MailRecord> findRecords(Collection<String> mailIds) {
+        if (mailIds == null || mailIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(mailIds));
+        Map<String, Map<String, Object>> loaded;
+        try {
+            loaded = pool.read(connection -> loadMails(connection, ids));
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to load " + ids.size() + " mails: " + e.getMessage());
+            return Collections.emptyList();
+        }
+
+        List<MailRecord> records = new ArrayList<>(loaded.size());
+        for (String id : ids) {
+            MailRecord.from(id, loaded.get(id)).ifPresent(records::add);
+        }
+        return records;
+    }
+
     @Override
     public int countActiveMailFor(String playerName) {
-        List<String> ids = listActiveMailIdsFor(playerName);
-        return ids.size();
+        String sql = "SELECT " +
+                "(SELECT COUNT(*) FROM mail_recipients r JOIN mail m ON m.mail_id = r.mail_id " +
+                "WHERE r.player = ? AND m.active = 1) + " +
+                "(SELECT COUNT(*) FROM mail m WHERE m.broadcast = 1 AND m.active = 1 AND NOT EXISTS (" +
+                "SELECT 1 FROM mail_claimed c WHERE c.mail_id = m.mail_id AND c.player = ? COLLATE NOCASE))";
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, playerName.toLowerCase(Locale.ROOT));
+                    statement.setString(2, playerName);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to count active mails for " + playerName + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit) {
+        String recipientCursor = cursor != null ? " AND (r.sent_date, r.mail_id) < (?, ?)" : "";
+        String broadcastCursor = cursor != null ? " AND (m.sent_date, m.mail_id) < (?, ?)" : "";
+        String sql = "SELECT r.mail_id AS mail_id, r.sent_date AS sent_date FROM mail_recipients r " +
+                "JOIN mail m ON m.mail_id = r.mail_id " +
+                "WHERE r.player = ? AND m.active = 1" + recipientCursor + " " +
+                "UNION ALL " +
+                "SELECT m.mail_id, m.sent_date FROM mail m " +
+                "WHERE m.broadcast = 1 AND m.active = 1" + broadcastCursor + " AND NOT EXISTS (" +
+                "SELECT 1 FROM mail_claimed c WHERE c.mail_id = m.mail_id AND c.player = ? COLLATE NOCASE) " +
+                "ORDER BY sent_date DESC, mail_id DESC LIMIT ?";
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    statement.setString(index++, playerName.toLowerCase(Locale.ROOT));
+                    index = bindCursor(statement, index, cursor);
+                    index = bindCursor(statement, index, cursor);
+                    statement.setString(index++, playerName);
+                    statement.setInt(index, limit + 1);
+                    return readPage(connection, statement, limit);
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to page active mails for " + playerName + ": " + e.getMessage());
+            return MailPage.empty();
+        }
+    }
+
+    @Override
+    public MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit) {
+        String sql = "SELECT mail_id FROM mail WHERE sender = ?" +
+                (cursor != null ? " AND (sent_date, mail_id) < (?, ?)" : "") +
+                " ORDER BY sent_date DESC, mail_id DESC LIMIT ?";
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, sender);
+                    int index = bindCursor(statement, 2, cursor);
+                    statement.setInt(index, limit + 1);
+                    return readPage(connection, statement, limit);
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to page mails for sender " + sender + ": " + e.getMessage());
+            return MailPage.empty();
+        }
+    }
+
+    @Override
+    public int countMailBySender(String sender) {
+        try {
+            return pool.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT COUNT(*) FROM mail WHERE sender = ?")) {
+                    statement.setString(1, sender);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to count mails for sender " + sender + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public int purgeExpired(long now, int batchSize) {
+        // Child rows go through ON DELETE CASCADE inside the same statement, so each
+        // chunk is one short write transaction and the writer is released between chunks.
+        String sql = "DELETE FROM mail WHERE mail_id IN (" +
+                "SELECT mail_id FROM mail WHERE expire_date IS NOT NULL AND expire_date <= ? LIMIT ?)";
+        int limit = Math.max(1, batchSize);
+        int removed = 0;
+        try {
+            while (true) {
+                int deleted = write(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setLong(1, now);
+                        statement.setInt(2, limit);
+                        return statement.executeUpdate();
+                    }
+                });
+                removed += deleted;
+                if (deleted < limit) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to purge expired mails: " + e.getMessage());
+        }
+        return removed;
+    }
+
+    @Override
+    public List<String> listExpiredMailIds(long now, int limit) {
+        String sql = "SELECT mail_id FROM mail WHERE expire_date IS NOT NULL AND expire_date <= ? " +
+                "ORDER BY expire_date LIMIT ?";
+        try {
+            return pool.read(connection -> {
+                List<String> ids = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setLong(1, now);
+                    statement.setInt(2, Math.max(1, limit));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getString("mail_id"));
+                        }
+                    }
+                }
+                return ids;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to list expired mails: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<ActivatedMail> activateDueScheduled(long now) {
+        String select = "SELECT mail_id, receiver, sender FROM mail " +
+                "WHERE schedule_date IS NOT NULL AND schedule_date <= ? ORDER BY schedule_date";
+        String update = "UPDATE mail SET schedule_date = NULL, active = 1 " +
+                "WHERE schedule_date IS NOT NULL AND schedule_date <= ?";
+        try {
+            return write(connection -> {
+                List<ActivatedMail> activated = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(select)) {
+                    statement.setLong(1, now);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            activated.add(new ActivatedMail(
+                                    rs.getString("mail_id"),
+                                    rs.getString("receiver"),
+                                    rs.getString("sender")));
+                        }
+                    }
+                }
+                if (activated.isEmpty()) {
+                    return activated;
+                }
+                try (PreparedStatement statement = connection.prepareStatement(update)) {
+                    statement.setLong(1, now);
+                    statement.executeUpdate();
+                }
+                return activated;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to activate scheduled mails: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Runs write work on the writer thread and waits for its commit. The batch
+     * it joins commits right away instead of waiting out the group window.
+     */
+    private <T> T write(SqliteConnectionPool.SqlWork<T> work) throws SQLException {
+        try {
+            return writeQueue.submitNow(work).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw e;
+        }
+    }
+
+    private static int bindCursor(PreparedStatement statement, int index, MailPageCursor cursor) throws SQLException {
+        if (cursor == null) {
+            return index;
+        }
+        statement.setLong(index, cursor.sentDate());
+        statement.setString(index + 1, cursor.mailId());
+        return index + 2;
+    }
+
+    /**
+     * Reads up to {@code limit + 1} ordered ids, hydrates the first {@code limit}
+     * and derives the next cursor from the extra row.
+     */
+    private MailPage readPage(Connection connection, PreparedStatement statement, int limit) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getString("mail_id"));
+            }
+        }
+        boolean more = ids.size() > limit;
+        if (more) {
+            ids = ids.subList(0, limit);
+        }
+
+        Map<String, Map<String, Object>> loaded = loadMails(connection, ids);
+        List<MailRecord> records = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            MailRecord.from(id, loaded.get(id)).ifPresent(records::add);
+        }
+        MailPageCursor next = more && !records.isEmpty() ? MailPageCursor.of(records.get(records.size() - 1)) : null;
+        return new MailPage(records, next);
+    }
+
+    @Override
+    public Map<String, String> metrics() {
+        SqliteConnectionPool.Stats stats = pool.stats();
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("pool.readers", stats.openReaders() + "/" + stats.readerCapacity()
+                + " open, " + stats.idleReaders() + " idle");
+        metrics.put("pool.read-checkouts", stats.readCheckouts()
+                + " (avg wait " + MetricFormat.formatMillis(stats.averageReadWaitMillis())
+                + ", max " + MetricFormat.formatMillis(stats.maxReadWaitMillis()) + ")");
+        metrics.put("pool.write-checkouts", stats.writeCheckouts()
+                + " (avg wait " + MetricFormat.formatMillis(stats.averageWriteWaitMillis())
+                + ", max " + MetricFormat.formatMillis(stats.maxWriteWaitMillis()) + ")");
+        metrics.put("pool.db-lock-wait", "avg " + MetricFormat.formatMillis(stats.averageLockWaitMillis())
+                + ", max " + MetricFormat.formatMillis(stats.maxLockWaitMillis()));
+        metrics.put("pool.timeouts", String.valueOf(stats.timeouts()));
+
+        SqliteWriteQueue.Stats queue = writeQueue.stats();
+        metrics.put("writes.queue-depth", String.valueOf(queue.queueDepth()));
+        metrics.put("writes.batches", queue.batches() + " (" + queue.commands() + " writes, avg size "
+                + String.format(Locale.ROOT, "%.1f", queue.averageBatchSize())
+                + ", max " + queue.maxBatchSize() + ")");
+        metrics.put("writes.commit-latency", "avg " + MetricFormat.formatMillis(queue.averageCommitMillis())
+                + ", max " + MetricFormat.formatMillis(queue.maxCommitMillis()));
+        metrics.put("writes.failed-batches", String.valueOf(queue.failedBatches()));
+
+        long loads = itemLoads.sum();
+        if (loads > 0) {
+            metrics.put("items.loads", loads + " (avg " + MetricFormat.formatMillis(itemLoadNanos.sum() / (double) loads / 1_000_000.0)
+                    + ", avg " + MetricFormat.formatBytes(itemLoadBytes.sum() / loads) + " per mail)");
+        }
+        if (attachments != null) {
+            AttachmentSegmentStore.Stats segments = attachments.stats();
+            metrics.put("attachments.segments", segments.segments() + " (" + MetricFormat.formatBytes(segments.totalBytes())
+                    + ", " + attachmentCompactions.sum() + " compactions)");
+            metrics.put("attachments.mapped-reads", segments.reads() + " (" + MetricFormat.formatBytes(segments.readBytes())
+                    + "), " + segments.appends() + " appends");
+        }
+        return metrics;
     }
 
     @Override
     public void shutdown() {
-        // nothing to do for SQLite when shutting down
+        if (attachmentCompactor != null) {
+            // Not interrupted: an interrupt would close the segment channel mid-copy.
+            attachmentCompactor.shutdown();
+            try {
+                attachmentCompactor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeQueue.close();
+        metrics().forEach((key, value) -> plugin.getLogger().info("SQLite " + key + ": " + value));
+        if (attachments != null) {
+            attachments.close();
+        }
+        pool.close();
     }
 
+
     private static Map<String, String> createColumnMapping() {
         Map<String, String> map = new HashMap<>();
         map.put("sender", "sender");
@@ -634,6 +1632,24 @@ public class SqliteMailRepository implements MailRepository {
         return Collections.emptyList();
     }
 
+    @SuppressWarnings("unchecked")
+    private static void appendValue(Map<String, Map<String, Object>> mails, String mailId, String key, Object value) {
+        Map<String, Object> data = mails.get(mailId);
+        if (data != null) {
+            ((List<Object>) data.get(key)).add(value);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static void bindIds(PreparedStatement statement, List<String> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setString(i + 1, ids.get(i));
+        }
+    }
+
     private static String joinList(List<String> values) {
         if (values == null || values.isEmpty()) {
             return "";
@@ -641,79 +1657,63 @@ public class SqliteMailRepository implements MailRepository {
         return String.join("\n", values);
     }
 
-    private static List<String> splitString(String value) {
-        if (value == null || value.isEmpty()) {
-            return Collections.emptyList();
-        }
-        String[] parts = value.split("\n", -1);
-        List<String> list = new ArrayList<>(parts.length);
-        for (String part : parts) {
-            if (!part.isEmpty()) {
-                list.add(part);
-            }
-        }
-        return list;
-    }
-
-    private void addColumnIfAbsent(Connection connection, String table, String column, String definition) {
-        try {
-            if (columnExists(connection, table, column)) {
-                return;
-            }
-            try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to add column " + column + " to table " + table + ": " + e.getMessage());
-        }
-    }
-
-    private boolean columnExists(Connection connection, String table, String column) throws SQLException {
-        try (Statement statement = connection.createStatement();
-             ResultSet rs = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
-            while (rs.next()) {
-                String name = rs.getString("name");
-                if (name != null && name.equalsIgnoreCase(column)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static String nullableString(Object value) {
-        if (value == null) {
-            return null;
-        }
-        String str = value.toString();
-        return str.isEmpty() ? null : str;
-    }
-
-    private static Integer toNullableInteger(Object value) {
-        if (value instanceof Number number) {
-            return number.intValue();
-        }
-        if (value instanceof String text) {
-            String trimmed = text.trim();
-            if (trimmed.isEmpty()) {
-                return null;
-            }
-            try {
-                return Integer.parseInt(trimmed);
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
-        }
-        return null;
-    }
-
-    private static Long getNullableLong(ResultSet rs, String column) throws SQLException {
-        long value = rs.getLong(column);
-        return rs.wasNull() ? null : value;
-    }
-
-    private static Integer getNullableInteger(ResultSet rs, String column) throws SQLException {
-        int value = rs.getInt(column);
-        return rs.wasNull() ? null : value;
-    }
-}
+    private static List<String> splitString(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] parts = value.split("\n", -1);
+        List<String> list = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            if (!part.isEmpty()) {
+                list.add(part);
+            }
+        }
+        return list;
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String nullableString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String str = value.toString();
+        return str.isEmpty() ? null : str;
+    }
+
+    private static Integer toNullableInteger(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            String trimmed = text.trim();
+            if (trimmed.isEmpty()) {
+                return null;
+            }
+            try {
+                return Integer.parseInt(trimmed);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Long getNullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Integer getNullableInteger(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
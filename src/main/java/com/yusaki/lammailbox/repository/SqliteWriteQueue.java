@@ -0,0 +1,224 @@
+package com.yusaki.lammailbox.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Dedicated writer thread that drains queued SQLite writes and commits them in
+ * groups. Each command runs inside its own savepoint so one failing command does
+ * not roll back the rest of its batch.
+ */
+final class SqliteWriteQueue {
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000L;
+
+    /**
+     * Point-in-time view of queue activity.
+     */
+    record Stats(int queueDepth,
+                 long batches,
+                 long commands,
+                 long maxBatchSize,
+                 double averageCommitMillis,
+                 double maxCommitMillis,
+                 long failedBatches) {
+        double averageBatchSize() {
+            return batches == 0 ? 0.0 : commands / (double) batches;
+        }
+    }
+
+    private final SqliteConnectionPool pool;
+    private final Logger logger;
+    private final long groupWindowNanos;
+    private final LinkedBlockingQueue<Command<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final LongAdder commitNanos = new LongAdder();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final LongAdder failedBatches = new LongAdder();
+    // Guards the running check against close(), so no command is queued after the final drain.
+    private final Object lifecycle = new Object();
+    private volatile boolean running = true;
+
+    SqliteWriteQueue(SqliteConnectionPool pool, Logger logger, long groupWindowMillis) {
+        this.pool = pool;
+        this.logger = logger;
+        this.groupWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, groupWindowMillis));
+        this.thread = new Thread(this::run, "LamMailBox-SQLite-Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    <T> CompletableFuture<T> submit(SqliteConnectionPool.SqlWork<T> work) {
+        return enqueue(new Command<>(work, false));
+    }
+
+    /**
+     * Like {@link #submit}, but the batch holding the command commits without
+     * waiting out the group window, for callers that block on the result.
+     */
+    <T> CompletableFuture<T> submitNow(SqliteConnectionPool.SqlWork<T> work) {
+        return enqueue(new Command<>(work, true));
+    }
+
+    private <T> CompletableFuture<T> enqueue(Command<T> command) {
+        synchronized (lifecycle) {
+            if (!running) {
+                command.future.completeExceptionally(new SQLException("SQLite write queue has been shut down"));
+                return command.future;
+            }
+            queue.add(command);
+        }
+        return command.future;
+    }
+
+    Stats stats() {
+        long batchCount = batches.sum();
+        double averageCommit = batchCount == 0 ? 0.0 : commitNanos.sum() / (double) batchCount / 1_000_000.0;
+        return new Stats(
+                queue.size(),
+                batchCount,
+                commands.sum(),
+                maxBatchSize.get(),
+                averageCommit,
+                maxCommitNanos.get() / 1_000_000.0,
+                failedBatches.sum());
+    }
+
+    /**
+     * Stops accepting work, commits everything already queued and stops the thread.
+     */
+    void close() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Command<?> leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.future.completeExceptionally(new SQLException("SQLite write queue has been shut down"));
+        }
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Command<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<Command<?>> batch) throws InterruptedException {
+        queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+        long deadline = System.nanoTime() + groupWindowNanos;
+        while (batch.size() < MAX_BATCH_SIZE && running && !hasWaiter(batch)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Command<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+        }
+    }
+
+    private static boolean hasWaiter(List<Command<?>> batch) {
+        for (Command<?> command : batch) {
+            if (command.immediate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commit(List<Command<?>> batch) {
+        long started = System.nanoTime();
+        try {
+            pool.write(connection -> {
+                for (Command<?> command : batch) {
+                    command.execute(connection);
+                }
+                return null;
+            });
+            for (Command<?> command : batch) {
+                command.finish();
+            }
+        } catch (SQLException | RuntimeException e) {
+            failedBatches.increment();
+            logger.warning("Failed to commit " + batch.size() + " queued SQLite writes: " + e.getMessage());
+            for (Command<?> command : batch) {
+                command.future.completeExceptionally(e);
+            }
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            batches.increment();
+            commands.add(batch.size());
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+            commitNanos.add(elapsed);
+            maxCommitNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private static final class Command<T> {
+        private final SqliteConnectionPool.SqlWork<T> work;
+        private final boolean immediate;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable failure;
+
+        private Command(SqliteConnectionPool.SqlWork<T> work, boolean immediate) {
+            this.work = work;
+            this.immediate = immediate;
+        }
+
+        private void execute(Connection connection) throws SQLException {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                result = work.apply(connection);
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+                failure = e;
+            }
+        }
+
+        private void finish() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
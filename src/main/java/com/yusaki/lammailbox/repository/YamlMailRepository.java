@@ -1,6 +1,7 @@
 package com.yusaki.lammailbox.repository;
 
 import com.yusaki.lammailbox.util.ItemSerialization;
+import com.yusaki.lammailbox.util.MetricFormat;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -9,123 +10,322 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * YAML mail storage with one small file per mail, spread over hashed
+ * subdirectories of {@code mails/}. Every mail is held in memory and only the
+ * mails changed since the last save are written back, by a single background
+ * saver that coalesces save requests arriving within the save interval.
+ */
 public class YamlMailRepository implements MailRepository {
+    private static final String SHARD_DIRECTORY = "mails";
+    private static final String LEGACY_DATABASE = "database.yml";
+
     private final JavaPlugin plugin;
-    private final File databaseFile;
+    private final File dataFolder;
+    private final File shardRoot;
     private final FileConfiguration database;
+    private final Set<String> dirtyMails = ConcurrentHashMap.newKeySet();
+    private final long saveIntervalMillis;
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder skippedSaves = new LongAdder();
+    private final LongAdder savedMails = new LongAdder();
+    private final LongAdder saveNanos = new LongAdder();
+    private final AtomicLong maxSaveNanos = new AtomicLong();
+    // Secondary indexes, kept in step with every write below under indexLock.
+    private final Object indexLock = new Object();
+    private final Map<String, IndexEntry> indexEntries = new HashMap<>();
+    private final Map<String, Set<String>> mailsBySender = new HashMap<>();
+    private final Map<String, Set<String>> activeMailsByRecipient = new HashMap<>();
+    private final Set<String> activeBroadcasts = new LinkedHashSet<>();
+    private final Map<String, Integer> claimedBroadcastCounts = new HashMap<>();
+    private final NavigableMap<Long, Set<String>> mailsByExpireDate = new TreeMap<>();
+    private final NavigableMap<Long, Set<String>> mailsByScheduleDate = new TreeMap<>();
+
+    /**
+     * The indexed fields of one mail. {@code audience} is null unless the mail
+     * is active.
+     */
+    private record IndexEntry(String sender, Long expireDate, Long scheduleDate, MailAudience audience) {
+    }
+
+    /**
+     * Who an active mail counts towards: its receivers, or for a broadcast the
+     * players who already claimed it.
+     */
+    private record MailAudience(boolean broadcast, Set<String> players) {
+    }
 
-    public YamlMailRepository(JavaPlugin plugin) {
+    public YamlMailRepository(JavaPlugin plugin, long saveIntervalMillis) {
+        this(plugin, plugin.getDataFolder(), saveIntervalMillis);
+    }
+
+    public YamlMailRepository(JavaPlugin plugin, File dataFolder, long saveIntervalMillis) {
         this.plugin = plugin;
-        this.databaseFile = ensureDatabaseFile(plugin);
-        this.database = YamlConfiguration.loadConfiguration(databaseFile);
+        this.dataFolder = dataFolder;
+        this.shardRoot = new File(dataFolder, SHARD_DIRECTORY);
+        this.database = new YamlConfiguration();
+        this.saveIntervalMillis = Math.max(0L, saveIntervalMillis);
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LamMailBox-YAML-Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadShards();
+        migrateLegacyDatabase();
+        for (String mailId : listMailIds()) {
+            reindex(mailId);
+        }
+    }
+
+    private void loadShards() {
+        if (!shardRoot.exists() && !shardRoot.mkdirs()) {
+            plugin.getLogger().warning("Could not create mail directory: " + shardRoot);
+            return;
+        }
+        long started = System.nanoTime();
+        int loaded = 0;
+        File[] shards = shardRoot.listFiles(File::isDirectory);
+        for (File shard : shards != null ? shards : new File[0]) {
+            File[] files = shard.listFiles((dir, name) -> name.endsWith(".yml"));
+            for (File file : files != null ? files : new File[0]) {
+                String mailId = file.getName().substring(0, file.getName().length() - ".yml".length());
+                copyMail(YamlConfiguration.loadConfiguration(file), mailId);
+                loaded++;
+            }
+        }
+        if (loaded > 0) {
+            plugin.getLogger().info("Loaded " + loaded + " mails from " + shardRoot.getName() + "/ in "
+                    + (System.nanoTime() - started) / 1_000_000L + "ms");
+        }
+    }
+
+    /**
+     * Splits a pre-sharding {@code database.yml} into per-mail files, then
+     * renames it so the import only ever runs once.
+     */
+    private void migrateLegacyDatabase() {
+        File legacyFile = new File(dataFolder, LEGACY_DATABASE);
+        if (!legacyFile.exists()) {
+            return;
+        }
+        FileConfiguration legacy = YamlConfiguration.loadConfiguration(legacyFile);
+        ConfigurationSection mails = legacy.getConfigurationSection("mails");
+        int imported = 0;
+        if (mails != null) {
+            for (String mailId : mails.getKeys(false)) {
+                ConfigurationSection section = mails.getConfigurationSection(mailId);
+                if (section == null || database.contains("mails." + mailId)) {
+                    continue;
+                }
+                copyMail(section, mailId);
+                dirtyMails.add(mailId);
+                imported++;
+            }
+        }
+        flush();
+        if (!dirtyMails.isEmpty()) {
+            plugin.getLogger().severe("Could not write every mail from " + LEGACY_DATABASE + ", keeping it for the next start");
+            return;
+        }
+
+        File migrated = new File(dataFolder, LEGACY_DATABASE + ".migrated");
+        if (!legacyFile.renameTo(migrated)) {
+            plugin.getLogger().warning("Could not rename " + LEGACY_DATABASE + " after migrating it");
+        }
+        if (imported > 0) {
+            plugin.getLogger().info("Migrated " + imported + " mails from " + LEGACY_DATABASE + " to " + shardRoot.getName() + "/");
+        }
     }
 
-    private File ensureDatabaseFile(JavaPlugin plugin) {
-        File file = new File(plugin.getDataFolder(), "database.yml");
-        if (!file.exists()) {
-            plugin.saveResource("database.yml", false);
+    private void copyMail(ConfigurationSection source, String mailId) {
+        String base = "mails." + mailId + ".";
+        for (String key : source.getKeys(false)) {
+            database.set(base + key, source.get(key));
         }
-        return file;
+    }
+
+    private File shardFile(String mailId) {
+        String shard = String.format(Locale.ROOT, "%02x", mailId.hashCode() & 0xff);
+        return new File(new File(shardRoot, shard), mailId + ".yml");
     }
 
     @Override
     public Map<String, Object> loadMail(String mailId) {
-        ConfigurationSection section = getMailSection(mailId, false);
-        return section != null ? section.getValues(true) : Collections.emptyMap();
+        synchronized (database) {
+            ConfigurationSection section = getMailSection(mailId, false);
+            return section != null ? section.getValues(true) : Collections.emptyMap();
+        }
     }
 
     @Override
     public void saveMail(String mailId, Map<String, Object> data) {
         String base = "mails." + mailId + ".";
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            database.set(base + entry.getKey(), entry.getValue());
+        synchronized (database) {
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                database.set(base + entry.getKey(), entry.getValue());
+            }
+            dirtyMails.add(mailId);
+            reindex(mailId);
         }
     }
 
     @Override
     public void deleteMail(String mailId) {
-        database.set("mails." + mailId, null);
+        synchronized (database) {
+            database.set("mails." + mailId, null);
+            dirtyMails.add(mailId);
+            reindex(mailId);
+        }
     }
 
     @Override
     public List<String> listMailIds() {
-        if (!database.contains("mails")) {
-            return Collections.emptyList();
+        synchronized (database) {
+            if (!database.contains("mails")) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(Objects.requireNonNull(database.getConfigurationSection("mails"))
+                    .getKeys(false));
         }
-        return new ArrayList<>(Objects.requireNonNull(database.getConfigurationSection("mails"))
-                .getKeys(false));
     }
 
     @Override
     public List<String> listMailIdsBySender(String sender) {
-        return listMailIds().stream()
-                .filter(id -> sender.equals(database.getString("mails." + id + ".sender")))
-                .collect(Collectors.toList());
+        synchronized (indexLock) {
+            return new ArrayList<>(mailsBySender.getOrDefault(sender, Collections.emptySet()));
+        }
     }
 
     @Override
     public List<String> listActiveMailIdsFor(String playerName) {
-        if (!database.contains("mails")) {
-            return Collections.emptyList();
-        }
-        List<String> result = new ArrayList<>();
-        for (String mailId : listMailIds()) {
-            String base = "mails." + mailId + ".";
-            boolean isActive = database.getBoolean(base + "active", true);
-            if (!isActive) {
-                continue;
-            }
-            String receiver = database.getString(base + "receiver");
-            List<String> claimed = database.getStringList(base + "claimed-players");
-
-            if (receiver == null) {
-                continue;
-            }
-            if (receiver.equals("all")) {
-                if (!claimed.contains(playerName)) {
-                    result.add(mailId);
-                }
-            } else if (receiver.contains(";")) {
-                List<String> receivers = Arrays.asList(receiver.split(";"));
-                if (receivers.contains(playerName)) {
+        String key = playerName.toLowerCase(Locale.ROOT);
+        synchronized (indexLock) {
+            List<String> result = new ArrayList<>(activeMailsByRecipient.getOrDefault(key, Collections.emptySet()));
+            for (String mailId : activeBroadcasts) {
+                if (!indexEntries.get(mailId).audience().players().contains(key)) {
                     result.add(mailId);
                 }
-            } else if (receiver.equals(playerName)) {
-                result.add(mailId);
             }
+            return result;
         }
-        return result;
     }
 
     @Override
     public Optional<Map<String, Object>> findMail(String mailId) {
-        if (!database.contains("mails." + mailId)) {
-            return Optional.empty();
+        synchronized (database) {
+            if (!database.contains("mails." + mailId)) {
+                return Optional.empty();
+            }
+            return Optional.of(loadMail(mailId));
         }
-        return Optional.of(loadMail(mailId));
     }
 
+    /**
+     * Schedules a background write of every dirty mail. Requests that arrive
+     * while one is already pending are folded into it.
+     */
     @Override
     public void save() {
+        if (!saveScheduled.compareAndSet(false, true)) {
+            skippedSaves.increment();
+            return;
+        }
         try {
-            database.save(databaseFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save database: " + e.getMessage());
+            saver.schedule(this::flush, saveIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            saveScheduled.set(false);
+        }
+    }
+
+    /**
+     * Writes every dirty mail now. Each file is serialized under the database
+     * lock, written to a temp file and renamed over the previous version.
+     */
+    private synchronized void flush() {
+        saveScheduled.set(false);
+        long started = System.nanoTime();
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        synchronized (database) {
+            for (String mailId : new ArrayList<>(dirtyMails)) {
+                dirtyMails.remove(mailId);
+                ConfigurationSection section = database.getConfigurationSection("mails." + mailId);
+                if (section == null) {
+                    snapshot.put(mailId, null);
+                    continue;
+                }
+                YamlConfiguration mail = new YamlConfiguration();
+                for (String key : section.getKeys(false)) {
+                    mail.set(key, section.get(key));
+                }
+                snapshot.put(mailId, mail.saveToString());
+            }
         }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+            String mailId = entry.getKey();
+            try {
+                writeMailFile(shardFile(mailId).toPath(), entry.getValue());
+            } catch (IOException e) {
+                dirtyMails.add(mailId);
+                plugin.getLogger().severe("Could not save mail " + mailId + ": " + e.getMessage());
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        saves.increment();
+        savedMails.add(snapshot.size());
+        saveNanos.add(elapsed);
+        maxSaveNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private static void writeMailFile(Path file, String content) throws IOException {
+        if (content == null) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     @Override
     public void saveMailItems(String mailId, List<ItemStack> items) {
         List<String> serialized = ItemSerialization.serializeItems(items);
-        database.set("mails." + mailId + ".items", serialized);
+        synchronized (database) {
+            database.set("mails." + mailId + ".items", serialized);
+            // Dropped so MailRecord derives them from the list above; copies from other backends would go stale.
+            database.set("mails." + mailId + ".item-count", null);
+            database.set("mails." + mailId + ".payload-bytes", null);
+            dirtyMails.add(mailId);
+        }
     }
 
     @Override
     public List<ItemStack> loadMailItems(String mailId) {
-        List<String> serialized = database.getStringList("mails." + mailId + ".items");
+        List<String> serialized;
+        synchronized (database) {
+            serialized = database.getStringList("mails." + mailId + ".items");
+        }
         return ItemSerialization.deserializeItems(serialized);
     }
 
@@ -134,9 +334,192 @@ public class YamlMailRepository implements MailRepository {
         return findMail(mailId).flatMap(data -> MailRecord.from(mailId, data));
     }
 
+    @Override
+    public List<MailRecord> findRecords(Collection<String> mailIds) {
+        if (mailIds == null || mailIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MailRecord> records = new ArrayList<>(mailIds.size());
+        for (String mailId : new LinkedHashSet<>(mailIds)) {
+            findRecord(mailId).ifPresent(records::add);
+        }
+        return records;
+    }
+
     @Override
     public int countActiveMailFor(String playerName) {
-        return listActiveMailIdsFor(playerName).size();
+        String key = playerName.toLowerCase(Locale.ROOT);
+        synchronized (indexLock) {
+            return activeMailsByRecipient.getOrDefault(key, Collections.emptySet()).size()
+                    + activeBroadcasts.size()
+                    - claimedBroadcastCounts.getOrDefault(key, 0);
+        }
+    }
+
+    @Override
+    public MailPage pageActiveMailFor(String playerName, MailPageCursor cursor, int limit) {
+        List<MailRecord> records = new ArrayList<>(findRecords(listActiveMailIdsFor(playerName)));
+        records.sort(MailPageCursor.NEWEST_FIRST);
+        return MailPage.slice(records, cursor, limit);
+    }
+
+    @Override
+    public MailPage pageMailBySender(String sender, MailPageCursor cursor, int limit) {
+        List<MailRecord> records = new ArrayList<>(findRecords(listMailIdsBySender(sender)));
+        records.sort(MailPageCursor.NEWEST_FIRST);
+        return MailPage.slice(records, cursor, limit);
+    }
+
+    @Override
+    public int countMailBySender(String sender) {
+        return listMailIdsBySender(sender).size();
+    }
+
+    @Override
+    public int purgeExpired(long now, int batchSize) {
+        int removed = 0;
+        synchronized (database) {
+            for (String mailId : dueMails(mailsByExpireDate, now)) {
+                deleteMail(mailId);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<String> listExpiredMailIds(long now, int limit) {
+        List<String> expired = dueMails(mailsByExpireDate, now);
+        return expired.size() > limit ? new ArrayList<>(expired.subList(0, limit)) : expired;
+    }
+
+    @Override
+    public List<ActivatedMail> activateDueScheduled(long now) {
+        List<ActivatedMail> activated = new ArrayList<>();
+        synchronized (database) {
+            for (String mailId : dueMails(mailsByScheduleDate, now)) {
+                String base = "mails." + mailId + ".";
+                database.set(base + "schedule-date", null);
+                database.set(base + "active", true);
+                dirtyMails.add(mailId);
+                reindex(mailId);
+                activated.add(new ActivatedMail(mailId,
+                        database.getString(base + "receiver"),
+                        database.getString(base + "sender")));
+            }
+        }
+        return activated;
+    }
+
+    private List<String> dueMails(NavigableMap<Long, Set<String>> index, long now) {
+        List<String> due = new ArrayList<>();
+        synchronized (indexLock) {
+            index.headMap(now, true).values().forEach(due::addAll);
+        }
+        return due;
+    }
+
+    private void reindex(String mailId) {
+        synchronized (indexLock) {
+            IndexEntry previous = indexEntries.remove(mailId);
+            if (previous != null) {
+                unindex(mailId, previous);
+            }
+            IndexEntry current = indexEntryOf(mailId);
+            if (current != null) {
+                indexEntries.put(mailId, current);
+                index(mailId, current);
+            }
+        }
+    }
+
+    private IndexEntry indexEntryOf(String mailId) {
+        String path = "mails." + mailId;
+        if (!database.contains(path)) {
+            return null;
+        }
+        String base = path + ".";
+        return new IndexEntry(
+                database.getString(base + "sender"),
+                asNullableLong(database.get(base + "expire-date")),
+                asNullableLong(database.get(base + "schedule-date")),
+                audienceOf(base));
+    }
+
+    private MailAudience audienceOf(String base) {
+        if (!database.getBoolean(base + "active", true)) {
+            return null;
+        }
+        String receiver = database.getString(base + "receiver");
+        if (receiver == null) {
+            return null;
+        }
+        if (receiver.equalsIgnoreCase("all")) {
+            return new MailAudience(true, lowerCaseNames(database.getStringList(base + "claimed-players")));
+        }
+        return new MailAudience(false, lowerCaseNames(MailRecord.splitReceivers(receiver)));
+    }
+
+    private void index(String mailId, IndexEntry entry) {
+        if (entry.sender() != null) {
+            mailsBySender.computeIfAbsent(entry.sender(), ignored -> new LinkedHashSet<>()).add(mailId);
+        }
+        if (entry.expireDate() != null) {
+            mailsByExpireDate.computeIfAbsent(entry.expireDate(), ignored -> new HashSet<>()).add(mailId);
+        }
+        if (entry.scheduleDate() != null) {
+            mailsByScheduleDate.computeIfAbsent(entry.scheduleDate(), ignored -> new HashSet<>()).add(mailId);
+        }
+        MailAudience audience = entry.audience();
+        if (audience == null) {
+            return;
+        }
+        if (audience.broadcast()) {
+            activeBroadcasts.add(mailId);
+            audience.players().forEach(player -> claimedBroadcastCounts.merge(player, 1, Integer::sum));
+        } else {
+            audience.players().forEach(player ->
+                    activeMailsByRecipient.computeIfAbsent(player, ignored -> new LinkedHashSet<>()).add(mailId));
+        }
+    }
+
+    private void unindex(String mailId, IndexEntry entry) {
+        removeFrom(mailsBySender, entry.sender(), mailId);
+        removeFrom(mailsByExpireDate, entry.expireDate(), mailId);
+        removeFrom(mailsByScheduleDate, entry.scheduleDate(), mailId);
+        MailAudience audience = entry.audience();
+        if (audience == null) {
+            return;
+        }
+        if (audience.broadcast()) {
+            activeBroadcasts.remove(mailId);
+            audience.players().forEach(player ->
+                    claimedBroadcastCounts.computeIfPresent(player, (ignored, count) -> count > 1 ? count - 1 : null));
+        } else {
+            audience.players().forEach(player -> removeFrom(activeMailsByRecipient, player, mailId));
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String mailId) {
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(mailId) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static Long asNullableLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static Set<String> lowerCaseNames(Collection<String> names) {
+        Set<String> result = new HashSet<>(names.size());
+        for (String name : names) {
+            result.add(name.toLowerCase(Locale.ROOT));
+        }
+        return result;
     }
 
     private ConfigurationSection getMailSection(String mailId, boolean create) {
@@ -150,8 +533,31 @@ public class YamlMailRepository implements MailRepository {
         return null;
     }
 
+    @Override
+    public Map<String, String> metrics() {
+        Map<String, String> metrics = new LinkedHashMap<>();
+        long saveCount = saves.sum();
+        metrics.put("yaml.dirty-mails", String.valueOf(dirtyMails.size()));
+        metrics.put("yaml.saves", saveCount + " (" + savedMails.sum() + " mail files written)");
+        if (saveCount > 0) {
+            metrics.put("yaml.save-duration", "avg " + MetricFormat.formatMillis(saveNanos.sum() / (double) saveCount / 1_000_000.0)
+                    + ", max " + MetricFormat.formatMillis(maxSaveNanos.get() / 1_000_000.0));
+        }
+        metrics.put("yaml.coalesced-save-requests", String.valueOf(skippedSaves.sum()));
+        return metrics;
+    }
+
     @Override
     public void shutdown() {
-        save();
+        saver.shutdown();
+        try {
+            if (!saver.awaitTermination(10, TimeUnit.SECONDS)) {
+                saver.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        metrics().forEach((key, value) -> plugin.getLogger().info("Mail " + key + ": " + value));
     }
 }
@@ -0,0 +1,130 @@
+package com.yusaki.lammailbox.service;
+
+import com.tcoded.folialib.FoliaLib;
+import com.yusaki.lammailbox.repository.MailRecord;
+import com.yusaki.lammailbox.repository.MailRepository;
+import com.yusaki.lammailbox.session.MailCreationSession;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs repository and mail service calls on a dedicated I/O executor and hands
+ * the results back to the owning Folia entity or global thread.
+ */
+public final class AsyncMailFacade {
+    private static final int IO_THREADS = 2;
+
+    private final JavaPlugin plugin;
+    private final MailRepository repository;
+    private final MailService mailService;
+    private final FoliaLib foliaLib;
+    private final ExecutorService ioExecutor;
+
+    public AsyncMailFacade(JavaPlugin plugin, MailRepository repository, MailService mailService, FoliaLib foliaLib) {
+        this.plugin = plugin;
+        this.repository = repository;
+        this.mailService = mailService;
+        this.foliaLib = foliaLib;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(IO_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "LamMailBox-IO-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, ioExecutor);
+    }
+
+    public CompletableFuture<Map<String, Object>> loadMailAsync(String mailId) {
+        return supply(() -> repository.loadMail(mailId));
+    }
+
+    public CompletableFuture<Optional<MailRecord>> findRecordAsync(String mailId) {
+        return supply(() -> repository.findRecord(mailId));
+    }
+
+    public CompletableFuture<List<MailRecord>> findRecordsAsync(Collection<String> mailIds) {
+        return supply(() -> repository.findRecords(mailIds));
+    }
+
+    public CompletableFuture<Boolean> claimMailAsync(Player player, String mailId) {
+        return supply(() -> mailService.claimMail(player, mailId));
+    }
+
+    public CompletableFuture<Boolean> deleteMailAsync(String mailId) {
+        return supply(() -> mailService.deleteMail(mailId));
+    }
+
+    public CompletableFuture<MailDelivery> sendMailAsync(Player sender, MailCreationSession session) {
+        return supply(() -> mailService.sendMail(sender, session));
+    }
+
+    public CompletableFuture<MailDelivery> sendConsoleMailAsync(CommandSender sender, MailCreationSession session) {
+        return supply(() -> mailService.sendConsoleMail(sender, session));
+    }
+
+    /**
+     * Invokes {@code callback} on the entity's region thread once {@code future}
+     * settles. Failures are passed unwrapped as the second argument.
+     */
+    public <T> void thenAtEntity(CompletableFuture<T> future, Entity entity, BiConsumer<T, Throwable> callback) {
+        future.whenComplete((result, error) -> foliaLib.getScheduler().runAtEntity(entity,
+                task -> callback.accept(result, unwrap(error))));
+    }
+
+    /**
+     * Invokes {@code callback} on the global region thread once {@code future} settles.
+     */
+    public <T> void thenGlobal(CompletableFuture<T> future, BiConsumer<T, Throwable> callback) {
+        future.whenComplete((result, error) -> foliaLib.getScheduler().runNextTick(
+                task -> callback.accept(result, unwrap(error))));
+    }
+
+    /**
+     * Routes to the entity thread for players and the global thread for anything else.
+     */
+    public <T> void thenFor(CommandSender sender, CompletableFuture<T> future, BiConsumer<T, Throwable> callback) {
+        if (sender instanceof Entity entity) {
+            thenAtEntity(future, entity, callback);
+        } else {
+            thenGlobal(future, callback);
+        }
+    }
+
+    public void shutdown() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for mail I/O tasks to finish");
+                ioExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
@@ -2,6 +2,9 @@ package com.yusaki.lammailbox.service;
 
 import com.tcoded.folialib.FoliaLib;
 import com.yusaki.lammailbox.model.CommandItem;
+import com.yusaki.lammailbox.repository.ActivatedMail;
+import com.yusaki.lammailbox.repository.MailArchive;
+import com.yusaki.lammailbox.repository.MailRecord;
 import com.yusaki.lammailbox.repository.MailRepository;
 import com.yusaki.lammailbox.session.MailCreationSession;
 import org.bukkit.Bukkit;
@@ -11,17 +14,41 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class DefaultMailService implements MailService {
+    private static final int EXPIRY_BATCH_SIZE = 500;
+    private static final int MAIL_LOCK_STRIPES = 64;
+
     private final JavaPlugin plugin;
     private final MailRepository repository;
     private final FoliaLib foliaLib;
+    private final UnreadMailCounter unreadCounter;
+    private final InboxIndex inboxIndex;
+    private final MailArchive archive;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    // Claims and deletes run on the I/O pool, so each read-modify-write of a mail holds its stripe.
+    private final Object[] mailLocks = new Object[MAIL_LOCK_STRIPES];
 
-    public DefaultMailService(JavaPlugin plugin, MailRepository repository, FoliaLib foliaLib) {
+    /**
+     * @param archive where claimed, expired and deleted mails are moved, or null
+     *                to drop them outright
+     * @param inboxIndex  online players' inboxes to keep in step with every change
+     */
+    public DefaultMailService(JavaPlugin plugin, MailRepository repository, FoliaLib foliaLib, MailArchive archive,
+                              InboxIndex inboxIndex) {
         this.plugin = plugin;
         this.repository = repository;
         this.foliaLib = foliaLib;
+        this.archive = archive;
+        this.inboxIndex = inboxIndex;
+        this.unreadCounter = new UnreadMailCounter(repository,
+                config().getBoolean("settings.unread-counter-cache", true));
+        for (int i = 0; i < mailLocks.length; i++) {
+            mailLocks[i] = new Object();
+        }
     }
 
     @Override
@@ -41,13 +68,49 @@ public class DefaultMailService implements MailService {
 
     @Override
     public boolean deleteMail(String mailId) {
+        synchronized (lockFor(mailId)) {
+            return deleteMailLocked(mailId);
+        }
+    }
+
+    private boolean deleteMailLocked(String mailId) {
+        Optional<MailRecord> record = repository.findRecord(mailId);
+        if (!archived(mailId, archive(mailId, MailArchive.Reason.DELETED))) {
+            return false;
+        }
         repository.deleteMail(mailId);
+        record.filter(MailRecord::active).ifPresent(mail -> unreadCounter.removed(
+                splitReceivers(mail.receiver()), isBroadcast(mail.receiver()), mail.claimedPlayers()));
+        inboxIndex.updated(mailId, Optional.empty());
         saveAsync();
         return true;
     }
 
+    @Override
+    public int countUnreadMail(String playerName) {
+        int indexed = inboxIndex.count(playerName);
+        if (indexed >= 0) {
+            // The index is authoritative now; a leftover count would only cost broadcast updates.
+            unreadCounter.forget(playerName);
+            return indexed;
+        }
+        return unreadCounter.count(playerName);
+    }
+
+    @Override
+    public void forgetPlayer(String playerName) {
+        inboxIndex.forget(playerName);
+        unreadCounter.forget(playerName);
+    }
+
     @Override
     public boolean claimMail(Player player, String mailId) {
+        synchronized (lockFor(mailId)) {
+            return claimMailLocked(player, mailId);
+        }
+    }
+
+    private boolean claimMailLocked(Player player, String mailId) {
         Optional<Map<String, Object>> mailOpt = repository.findMail(mailId);
         if (mailOpt.isEmpty()) {
             return false;
@@ -80,6 +143,9 @@ public class DefaultMailService implements MailService {
             List<String> receivers = new ArrayList<>(Arrays.asList(receiver.split(";")));
             if (receivers.remove(player.getName())) {
                 if (receivers.isEmpty()) {
+                    if (!archived(mailId, archive(mailId, mail, MailArchive.Reason.CLAIMED))) {
+                        return false;
+                    }
                     repository.deleteMail(mailId);
                 } else {
                     repository.saveMail(mailId, Map.of("receiver", String.join(";", receivers)));
@@ -87,11 +153,16 @@ public class DefaultMailService implements MailService {
                 changed = true;
             }
         } else if (receiver.equalsIgnoreCase(player.getName())) {
+            if (!archived(mailId, archive(mailId, mail, MailArchive.Reason.CLAIMED))) {
+                return false;
+            }
             repository.deleteMail(mailId);
             changed = true;
         }
 
         if (changed) {
+            unreadCounter.claimed(player.getName());
+            inboxIndex.updated(mailId, repository.findRecord(mailId));
             saveAsync();
         }
 
@@ -100,24 +171,12 @@ public class DefaultMailService implements MailService {
 
     @Override
     public List<MailDelivery> schedulePendingMails() {
-        long now = System.currentTimeMillis();
         List<MailDelivery> deliveries = new ArrayList<>();
-        for (String mailId : repository.listMailIds()) {
-            Map<String, Object> mail = repository.loadMail(mailId);
-            Long scheduleDate = getLong(mail.get("schedule-date"));
-            if (scheduleDate == null || scheduleDate > now) {
-                continue;
-            }
-            String receiver = (String) mail.get("receiver");
-            String sender = (String) mail.get("sender");
-
-            repository.saveMail(mailId, Map.of(
-                    "schedule-date", null,
-                    "active", true
-            ));
-            deliveries.add(new MailDelivery(mailId, receiver, sender, true));
+        for (ActivatedMail mail : repository.activateDueScheduled(System.currentTimeMillis())) {
+            deliveries.add(new MailDelivery(mail.mailId(), mail.receiver(), mail.sender(), true));
         }
         if (!deliveries.isEmpty()) {
+            deliveries.forEach(delivery -> recordDelivery(delivery, repository.findRecord(delivery.getMailId())));
             saveAsync();
         }
         return deliveries;
@@ -126,21 +185,90 @@ public class DefaultMailService implements MailService {
     @Override
     public int removeExpiredMails() {
         long now = System.currentTimeMillis();
-        int removed = 0;
-        for (String mailId : repository.listMailIds()) {
-            Map<String, Object> mail = repository.loadMail(mailId);
-            Long expireDate = getLong(mail.get("expire-date"));
-            if (expireDate != null && expireDate <= now) {
-                repository.deleteMail(mailId);
-                removed++;
-            }
-        }
+        int removed = archive != null ? archiveExpiredMails(now) : repository.purgeExpired(now, EXPIRY_BATCH_SIZE);
         if (removed > 0) {
+            // The purge only reports how many mails went away, so re-read the
+            // counts instead of guessing whose they were.
+            unreadCounter.invalidateAll();
+            inboxIndex.expired(now);
             saveAsync();
         }
         return removed;
     }
 
+    /**
+     * Moves expired mails into the archive one batch at a time. A batch is only
+     * deleted from the repository once the archive has committed it.
+     */
+    private int archiveExpiredMails(long now) {
+        int removed = 0;
+        while (true) {
+            List<String> expired = repository.listExpiredMailIds(now, EXPIRY_BATCH_SIZE);
+            if (expired.isEmpty()) {
+                return removed;
+            }
+            List<CompletableFuture<Void>> archived = new ArrayList<>(expired.size());
+            for (String mailId : expired) {
+                archived.add(archive(mailId, MailArchive.Reason.EXPIRED));
+            }
+            try {
+                CompletableFuture.allOf(archived.toArray(new CompletableFuture[0])).join();
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Failed to archive expired mails, keeping them for the next run: "
+                        + e.getMessage());
+                return removed;
+            }
+            List<CompletableFuture<Void>> deletes = new ArrayList<>(expired.size());
+            for (String mailId : expired) {
+                deletes.add(repository.deleteMailAsync(mailId));
+            }
+            CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0])).join();
+            removed += expired.size();
+            if (expired.size() < EXPIRY_BATCH_SIZE) {
+                return removed;
+            }
+        }
+    }
+
+    private Object lockFor(String mailId) {
+        return mailLocks[Math.floorMod(mailId.hashCode(), mailLocks.length)];
+    }
+
+    /**
+     * Waits until the archive has committed the mail, so it is never removed
+     * from the repository before it is safely archived. A failed archive keeps
+     * the mail in place.
+     */
+    private boolean archived(String mailId, CompletableFuture<Void> archived) {
+        if (archive != null) {
+            archive.flushNow();
+        }
+        try {
+            archived.join();
+            return true;
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Failed to archive mail " + mailId + ", keeping it: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private CompletableFuture<Void> archive(String mailId, MailArchive.Reason reason) {
+        if (archive == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<Map<String, Object>> mail = repository.findMail(mailId);
+        return mail.isPresent()
+                ? archive(mailId, mail.get(), reason)
+                : CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> archive(String mailId, Map<String, Object> mail, MailArchive.Reason reason) {
+        if (archive == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return archive.archive(mailId, mail, repository.loadMailItems(mailId), reason);
+    }
+
     private MailDelivery persistMail(String senderName,
                                      MailCreationSession session,
                                      boolean isAdminMail,
@@ -194,7 +322,28 @@ public class DefaultMailService implements MailService {
         repository.saveMailItems(mailId, items);
         saveAsync();
 
-        return new MailDelivery(mailId, normalizedReceiver, senderName, active);
+        MailDelivery delivery = new MailDelivery(mailId, normalizedReceiver, senderName, active);
+        if (active) {
+            recordDelivery(delivery, MailRecord.from(mailId, data));
+        }
+        return delivery;
+    }
+
+    private void recordDelivery(MailDelivery delivery, Optional<MailRecord> record) {
+        String receiver = delivery.getReceiverSpec();
+        unreadCounter.delivered(splitReceivers(receiver), isBroadcast(receiver));
+        inboxIndex.updated(delivery.getMailId(), record);
+    }
+
+    private static boolean isBroadcast(String receiver) {
+        return "all".equalsIgnoreCase(receiver);
+    }
+
+    private static List<String> splitReceivers(String receiver) {
+        if (receiver == null || receiver.isEmpty() || isBroadcast(receiver)) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(receiver.split(";"));
     }
 
     private String normalizeReceiver(String receiverSpec) {
@@ -215,15 +364,15 @@ public class DefaultMailService implements MailService {
         }
     }
 
-    private Long getLong(Object value) {
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
-        }
-        return null;
-    }
-
     private void saveAsync() {
-        foliaLib.getScheduler().runAsync(task -> repository.save());
+        // One pending save task covers every mutation made before it runs.
+        if (!savePending.compareAndSet(false, true)) {
+            return;
+        }
+        foliaLib.getScheduler().runAsync(task -> {
+            savePending.set(false);
+            repository.save();
+        });
     }
 
     private org.bukkit.configuration.file.FileConfiguration config() {
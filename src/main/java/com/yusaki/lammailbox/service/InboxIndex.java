@@ -0,0 +1,188 @@
+package com.yusaki.lammailbox.service;
+
+import com.yusaki.lammailbox.repository.MailPageCursor;
+import com.yusaki.lammailbox.repository.MailRecord;
+import com.yusaki.lammailbox.repository.MailRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claimable mails of every online player, newest first, kept in memory from
+ * join until quit. Sends, claims, deletes and expiry update the affected
+ * inboxes in place, so opening the mailbox and flipping its pages never reads
+ * storage.
+ */
+public final class InboxIndex {
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private static final class Inbox {
+        private final List<MailRecord> records = new ArrayList<>();
+        private boolean loaded;
+        // Set when a change arrives while the initial load is still running.
+        private boolean stale;
+    }
+
+    private final MailRepository repository;
+    private final boolean enabled;
+    private final Map<String, Inbox> inboxes = new ConcurrentHashMap<>();
+
+    public InboxIndex(MailRepository repository, boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Reads the player's inbox from the repository and starts tracking it.
+     * Blocks on storage, so call it off the main thread. The inbox is only
+     * published while the player is still tracked and no change raced every
+     * attempt; otherwise it stays unloaded and callers page the repository.
+     *
+     * @return the loaded inbox, newest first
+     */
+    public List<MailRecord> load(String playerName) {
+        if (!enabled) {
+            return sorted(playerName, repository.findRecords(repository.listActiveMailIdsFor(playerName)));
+        }
+        String key = key(playerName);
+        Inbox created = new Inbox();
+        Inbox existing = inboxes.putIfAbsent(key, created);
+        Inbox inbox = existing != null ? existing : created;
+        synchronized (inbox) {
+            if (inbox.loaded) {
+                return new ArrayList<>(inbox.records);
+            }
+        }
+        for (int attempt = 1; ; attempt++) {
+            List<MailRecord> records = sorted(playerName,
+                    repository.findRecords(repository.listActiveMailIdsFor(playerName)));
+            synchronized (inbox) {
+                if (inboxes.get(key) != inbox) {
+                    // The player quit while loading.
+                    return records;
+                }
+                if (!inbox.stale) {
+                    inbox.records.clear();
+                    inbox.records.addAll(records);
+                    inbox.loaded = true;
+                    return records;
+                }
+                if (attempt == MAX_LOAD_ATTEMPTS) {
+                    return records;
+                }
+                inbox.stale = false;
+            }
+        }
+    }
+
+    public void forget(String playerName) {
+        inboxes.remove(key(playerName));
+    }
+
+    public boolean isTracked(String playerName) {
+        Inbox inbox = inboxes.get(key(playerName));
+        if (inbox == null) {
+            return false;
+        }
+        synchronized (inbox) {
+            return inbox.loaded;
+        }
+    }
+
+    /**
+     * Number of claimable mails, or -1 when the player is not tracked.
+     */
+    public int count(String playerName) {
+        Inbox inbox = inboxes.get(key(playerName));
+        if (inbox == null) {
+            return -1;
+        }
+        synchronized (inbox) {
+            return inbox.loaded ? inbox.records.size() : -1;
+        }
+    }
+
+    /**
+     * Up to {@code limit} mails starting at {@code offset}, or empty when the
+     * player is not tracked and the caller has to query the repository.
+     */
+    public Optional<List<MailRecord>> page(String playerName, int offset, int limit) {
+        Inbox inbox = inboxes.get(key(playerName));
+        if (inbox == null) {
+            return Optional.empty();
+        }
+        synchronized (inbox) {
+            if (!inbox.loaded) {
+                return Optional.empty();
+            }
+            int from = Math.min(Math.max(0, offset), inbox.records.size());
+            int to = Math.min(inbox.records.size(), from + Math.max(0, limit));
+            return Optional.of(new ArrayList<>(inbox.records.subList(from, to)));
+        }
+    }
+
+    /**
+     * Applies the current state of a mail to every tracked inbox: it is removed
+     * everywhere and re-inserted for players who can still claim it. An empty
+     * {@code record} means the mail is gone.
+     */
+    public void updated(String mailId, Optional<MailRecord> record) {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<String, Inbox> entry : inboxes.entrySet()) {
+            Inbox inbox = entry.getValue();
+            synchronized (inbox) {
+                if (!inbox.loaded) {
+                    inbox.stale = true;
+                    continue;
+                }
+                inbox.records.removeIf(existing -> existing.id().equals(mailId));
+                if (record.isPresent() && claimable(record.get(), entry.getKey())) {
+                    insert(inbox.records, record.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every tracked mail whose expire date is at or before {@code now}.
+     */
+    public void expired(long now) {
+        for (Inbox inbox : inboxes.values()) {
+            synchronized (inbox) {
+                inbox.stale |= !inbox.loaded;
+                inbox.records.removeIf(record -> record.expireDate() != null && record.expireDate() <= now);
+            }
+        }
+    }
+
+    private static boolean claimable(MailRecord record, String playerName) {
+        return record.active() && record.canBeClaimedBy(playerName);
+    }
+
+    private static void insert(List<MailRecord> records, MailRecord record) {
+        int index = Collections.binarySearch(records, record, MailPageCursor.NEWEST_FIRST);
+        records.add(index < 0 ? -index - 1 : index, record);
+    }
+
+    private static List<MailRecord> sorted(String playerName, List<MailRecord> records) {
+        List<MailRecord> claimable = new ArrayList<>(records.size());
+        for (MailRecord record : records) {
+            if (claimable(record, playerName)) {
+                claimable.add(record);
+            }
+        }
+        claimable.sort(MailPageCursor.NEWEST_FIRST);
+        return claimable;
+    }
+
+    private static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+}
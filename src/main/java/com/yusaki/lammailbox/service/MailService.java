@@ -18,6 +18,17 @@ public interface MailService {
 
     boolean claimMail(Player player, String mailId);
 
+    /**
+     * Number of mails the player can currently claim, served from memory once
+     * the player has been counted.
+     */
+    int countUnreadMail(String playerName);
+
+    /**
+     * Drops the player's in-memory mail state, e.g. when they quit.
+     */
+    void forgetPlayer(String playerName);
+
     List<MailDelivery> schedulePendingMails();
 
     int removeExpiredMails();
@@ -0,0 +1,103 @@
+package com.yusaki.lammailbox.service;
+
+import com.yusaki.lammailbox.repository.MailRepository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory per-player count of claimable mails. A player's count is read from
+ * the repository once and then adjusted as mails are sent, claimed and deleted,
+ * so badges and notifications never touch storage.
+ */
+public final class UnreadMailCounter {
+    private final MailRepository repository;
+    private final boolean enabled;
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    public UnreadMailCounter(MailRepository repository, boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    public int count(String playerName) {
+        if (!enabled) {
+            return repository.countActiveMailFor(playerName);
+        }
+        String key = key(playerName);
+        Integer cached = counts.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Counted outside the map so a slow read never holds a bin lock.
+        int counted = repository.countActiveMailFor(playerName);
+        Integer raced = counts.putIfAbsent(key, counted);
+        return raced != null ? raced : counted;
+    }
+
+    /**
+     * Records a newly active mail for {@code receivers}, or for every tracked
+     * player when it is a broadcast.
+     */
+    public void delivered(Collection<String> receivers, boolean broadcast) {
+        if (broadcast) {
+            counts.replaceAll((player, count) -> count + 1);
+            return;
+        }
+        adjust(receivers, 1);
+    }
+
+    public void claimed(String playerName) {
+        adjust(List.of(playerName), -1);
+    }
+
+    /**
+     * Records the removal of an unclaimed mail. For a broadcast every tracked
+     * player who had not claimed it yet loses one.
+     */
+    public void removed(Collection<String> receivers, boolean broadcast, Collection<String> claimedPlayers) {
+        if (broadcast) {
+            Set<String> claimed = keys(claimedPlayers);
+            counts.replaceAll((player, count) -> claimed.contains(player) ? count : Math.max(0, count - 1));
+            return;
+        }
+        adjust(receivers, -1);
+    }
+
+    /**
+     * Drops every tracked count so it is read again from the repository.
+     */
+    public void invalidateAll() {
+        counts.clear();
+    }
+
+    public void forget(String playerName) {
+        counts.remove(key(playerName));
+    }
+
+    private void adjust(Collection<String> players, int delta) {
+        if (!enabled) {
+            return;
+        }
+        for (String player : keys(players)) {
+            counts.computeIfPresent(player, (ignored, count) -> Math.max(0, count + delta));
+        }
+    }
+
+    private static Set<String> keys(Collection<String> playerNames) {
+        Set<String> keys = new HashSet<>(playerNames.size());
+        for (String name : playerNames) {
+            keys.add(key(name));
+        }
+        return keys;
+    }
+
+    private static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+}
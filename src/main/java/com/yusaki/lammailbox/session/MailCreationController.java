@@ -79,7 +79,7 @@ public class MailCreationController {
             return true;
         }
 
-        int currentMails = plugin.getMailRepository().countActiveMailFor(input);
+        int currentMails = plugin.getMailService().countUnreadMail(input);
         if (currentMails >= config().getInt("settings.max-mails-per-player")) {
             plugin.sendPrefixedMessage(sender, "messages.mailbox-full");
             return false;
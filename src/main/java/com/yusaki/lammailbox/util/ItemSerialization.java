@@ -8,6 +8,7 @@ import org.bukkit.util.io.BukkitObjectOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
@@ -17,20 +18,41 @@ public final class ItemSerialization {
     }
 
     public static String serializeItem(ItemStack item) {
+        byte[] bytes = serializeItemBytes(item);
+        return bytes.length == 0 ? "" : Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Serializes an item to the raw bytes that {@link #serializeItem} Base64-encodes.
+     */
+    public static byte[] serializeItemBytes(ItemStack item) {
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
              BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream)) {
             dataOutput.writeObject(item);
             dataOutput.flush();
-            return Base64.getEncoder().encodeToString(outputStream.toByteArray());
+            return outputStream.toByteArray();
         } catch (IOException e) {
             Bukkit.getLogger().severe("Error serializing item: " + e.getMessage());
-            return "";
+            return new byte[0];
         }
     }
 
     public static ItemStack deserializeItem(String data) {
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64.getDecoder().decode(data));
-             BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream)) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            Bukkit.getLogger().severe("Error deserializing item: " + e.getMessage());
+            return null;
+        }
+        return deserializeItem(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Reads one item from raw serialized bytes and closes the stream.
+     */
+    public static ItemStack deserializeItem(InputStream inputStream) {
+        try (BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream)) {
             return (ItemStack) dataInput.readObject();
         } catch (IOException | ClassNotFoundException e) {
             Bukkit.getLogger().severe("Error deserializing item: " + e.getMessage());
@@ -0,0 +1,25 @@
+package com.yusaki.lammailbox.util;
+
+import java.util.Locale;
+
+/**
+ * Human-readable sizes and durations for storage metrics.
+ */
+public final class MetricFormat {
+    private MetricFormat() {
+    }
+
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    public static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.2fms", millis);
+    }
+}
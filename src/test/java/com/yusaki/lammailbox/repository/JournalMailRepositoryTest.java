@@ -0,0 +1,89 @@
+package com.yusaki.lammailbox.repository;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JournalMailRepositoryTest {
+    private static final long NEVER_COMPACT = Long.MAX_VALUE;
+
+    @TempDir
+    Path directory;
+
+    private JavaPlugin plugin;
+
+    @BeforeEach
+    void setUp() {
+        plugin = mock(JavaPlugin.class);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("JournalMailRepositoryTest"));
+    }
+
+    @Test
+    void replaysLogOnTopOfCompactedSnapshot() throws InterruptedException {
+        JournalMailRepository repository = new JournalMailRepository(plugin, directory, 10L, 1L);
+        repository.saveMailAsync("mail-1", mail("alice", "bob", 1L)).join();
+        repository.saveMailAsync("mail-2", mail("alice", "carol", 2L)).join();
+        awaitCompaction(repository);
+        repository.shutdown();
+        assertTrue(Files.exists(directory.resolve("snapshot.yml")));
+
+        repository = new JournalMailRepository(plugin, directory, 10L, NEVER_COMPACT);
+        repository.deleteMailAsync("mail-1").join();
+        Map<String, Object> edit = new LinkedHashMap<>();
+        edit.put("receiver", "dave");
+        repository.saveMailAsync("mail-2", edit).join();
+        repository.saveMailAsync("mail-3", mail("erin", "bob", 3L)).join();
+        repository.shutdown();
+
+        repository = new JournalMailRepository(plugin, directory, 10L, NEVER_COMPACT);
+        assertEquals(List.of("mail-2", "mail-3"), repository.listMailIds());
+        assertEquals("dave", repository.loadMail("mail-2").get("receiver"));
+        assertEquals(List.of("mail-2"), repository.listMailIdsBySender("alice"));
+        assertEquals(List.of("mail-3"), repository.listActiveMailIdsFor("bob"));
+        assertEquals(0, repository.countActiveMailFor("carol"));
+        assertEquals(1, repository.countActiveMailFor("dave"));
+        repository.shutdown();
+    }
+
+    @Test
+    void changesAreNotVisibleAfterShutdown() {
+        JournalMailRepository repository = new JournalMailRepository(plugin, directory, 10L, NEVER_COMPACT);
+        repository.shutdown();
+
+        assertTrue(repository.saveMailAsync("mail-1", mail("alice", "bob", 1L)).isCompletedExceptionally());
+        assertFalse(repository.findMail("mail-1").isPresent());
+        assertEquals(0, repository.countActiveMailFor("bob"));
+    }
+
+    private static void awaitCompaction(JournalMailRepository repository) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (repository.metrics().get("journal.compactions").startsWith("0")) {
+            assertTrue(System.currentTimeMillis() < deadline, "journal was never compacted");
+            Thread.sleep(10L);
+        }
+    }
+
+    private static Map<String, Object> mail(String sender, String receiver, long sentDate) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("sender", sender);
+        data.put("receiver", receiver);
+        data.put("message", "hello");
+        data.put("sent-date", sentDate);
+        data.put("active", true);
+        return data;
+    }
+}
@@ -0,0 +1,154 @@
+package com.yusaki.lammailbox.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStructuredStoreTest {
+    private static final Logger LOGGER = Logger.getLogger("LogStructuredStoreTest");
+    private static final long SEGMENT_BYTES = 1024L * 1024L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversFromTornTailRecord() throws IOException {
+        LogStructuredStore store = open();
+        store.write(new LogStructuredStore.Batch().put("a", bytes("first")).put("b", bytes("second")));
+        store.close();
+        Path segment = directory.resolve("segment-000001.log");
+        long intact = Files.size(segment);
+
+        // Half of a record: a full header promising more bytes than follow it.
+        ByteBuffer torn = ByteBuffer.allocate(16).putInt(0).putInt(1).putInt(100).put(bytes("c")).flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(torn);
+        }
+
+        store = open();
+        assertArrayEquals(bytes("first"), store.get("a"));
+        assertArrayEquals(bytes("second"), store.get("b"));
+        assertFalse(store.contains("c"));
+        assertEquals(intact, Files.size(segment));
+
+        store.write(new LogStructuredStore.Batch().put("c", bytes("third")));
+        store.close();
+        store = open();
+        assertArrayEquals(bytes("third"), store.get("c"));
+        assertEquals(3, store.stats().keys());
+        store.close();
+    }
+
+    @Test
+    void dropsTailRecordWithBadChecksum() throws IOException {
+        LogStructuredStore store = open();
+        store.write(new LogStructuredStore.Batch().put("a", bytes("first")));
+        store.write(new LogStructuredStore.Batch().put("b", bytes("second")));
+        store.close();
+        Path segment = directory.resolve("segment-000001.log");
+        flipLastByte(segment);
+
+        store = open();
+        assertArrayEquals(bytes("first"), store.get("a"));
+        assertNull(store.get("b"));
+        store.close();
+    }
+
+    @Test
+    void refusesToOpenCorruptSealedSegment() throws IOException {
+        LogStructuredStore store = open();
+        byte[] large = new byte[(int) (SEGMENT_BYTES * 3 / 4)];
+        store.write(new LogStructuredStore.Batch().put("a", large));
+        store.write(new LogStructuredStore.Batch().put("b", large));
+        assertEquals(2, store.stats().segments());
+        store.close();
+        Path sealed = directory.resolve("segment-000001.log");
+        long size = Files.size(sealed);
+        flipLastByte(sealed);
+
+        assertThrows(IOException.class, this::open);
+        assertEquals(size, Files.size(sealed));
+    }
+
+    @Test
+    void tombstonesSurviveReopen() throws IOException {
+        LogStructuredStore store = open();
+        store.write(new LogStructuredStore.Batch().put("mail:1", bytes("one")).put("mail:2", bytes("two")));
+        store.write(new LogStructuredStore.Batch().delete("mail:1").put("mail:2", bytes("two, edited")));
+        assertNull(store.get("mail:1"));
+        store.close();
+
+        store = open();
+        assertNull(store.get("mail:1"));
+        assertArrayEquals(bytes("two, edited"), store.get("mail:2"));
+        assertEquals(List.of("mail:2"), store.keys("mail:"));
+        store.close();
+    }
+
+    @Test
+    void compactionKeepsLatestValuesAndDeletions() throws IOException {
+        LogStructuredStore store = open();
+        byte[] large = new byte[(int) (SEGMENT_BYTES / 4)];
+        for (int round = 0; round < 4; round++) {
+            Arrays.fill(large, (byte) round);
+            store.write(new LogStructuredStore.Batch().put("big", large.clone()).put("small", bytes("v" + round)));
+        }
+        store.write(new LogStructuredStore.Batch().put("gone", bytes("soon deleted")));
+        store.write(new LogStructuredStore.Batch().delete("gone"));
+        store.sync();
+        LogStructuredStore.Stats before = store.stats();
+        assertTrue(store.needsCompaction());
+
+        store.compact();
+        LogStructuredStore.Stats after = store.stats();
+        assertEquals(1, after.segments());
+        assertEquals(before.keys(), after.keys());
+        assertTrue(after.totalBytes() < before.totalBytes());
+        assertFalse(store.needsCompaction());
+        assertArrayEquals(large, store.get("big"));
+        assertArrayEquals(bytes("v3"), store.get("small"));
+        assertNull(store.get("gone"));
+        store.close();
+
+        store = open();
+        assertArrayEquals(large, store.get("big"));
+        assertArrayEquals(bytes("v3"), store.get("small"));
+        assertNull(store.get("gone"));
+        assertEquals(2, store.stats().keys());
+        store.close();
+    }
+
+    private LogStructuredStore open() throws IOException {
+        return new LogStructuredStore(directory, LOGGER, SEGMENT_BYTES);
+    }
+
+    private static void flipLastByte(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,140 @@
+package com.yusaki.lammailbox.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+    private static final Logger LOGGER = Logger.getLogger("SchemaMigratorTest");
+
+    @TempDir
+    Path directory;
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite:" + directory.resolve("test.db"));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void appliesEachStepOnce() throws SQLException {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        SchemaMigrator migrator = new SchemaMigrator(LOGGER, "mail")
+                .step(1, "create mails", c -> {
+                    first.incrementAndGet();
+                    execute(c, "CREATE TABLE mails (id TEXT PRIMARY KEY)");
+                })
+                .step(2, "add sender", c -> {
+                    second.incrementAndGet();
+                    SchemaMigrator.addColumnIfAbsent(c, "mails", "sender", "TEXT");
+                });
+
+        assertEquals(2, migrator.migrate(connection));
+        assertEquals(2, migrator.migrate(connection));
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+        assertEquals(2, count("SELECT COUNT(*) FROM schema_version WHERE component = 'mail'"));
+        assertNotNull(SchemaMigrator.columnType(connection, "mails", "sender"));
+        assertTrue(connection.getAutoCommit());
+    }
+
+    @Test
+    void appliesOnlyNewSteps() throws SQLException {
+        new SchemaMigrator(LOGGER, "mail")
+                .step(1, "create mails", c -> execute(c, "CREATE TABLE mails (id TEXT PRIMARY KEY)"))
+                .migrate(connection);
+
+        AtomicInteger first = new AtomicInteger();
+        int version = new SchemaMigrator(LOGGER, "mail")
+                .step(1, "create mails", c -> first.incrementAndGet())
+                .step(2, "add sender", c -> SchemaMigrator.addColumnIfAbsent(c, "mails", "sender", "TEXT"))
+                .migrate(connection);
+
+        assertEquals(2, version);
+        assertEquals(0, first.get());
+        assertNotNull(SchemaMigrator.columnType(connection, "mails", "sender"));
+    }
+
+    @Test
+    void rollsBackFailedStep() throws SQLException {
+        SchemaMigrator failing = new SchemaMigrator(LOGGER, "mail")
+                .step(1, "create mails", c -> execute(c, "CREATE TABLE mails (id TEXT PRIMARY KEY)"))
+                .step(2, "broken", c -> {
+                    SchemaMigrator.addColumnIfAbsent(c, "mails", "sender", "TEXT");
+                    execute(c, "INSERT INTO missing_table VALUES (1)");
+                });
+
+        assertThrows(SQLException.class, () -> failing.migrate(connection));
+        assertEquals(1, count("SELECT COALESCE(MAX(version), 0) FROM schema_version WHERE component = 'mail'"));
+        assertNull(SchemaMigrator.columnType(connection, "mails", "sender"));
+        assertTrue(connection.getAutoCommit());
+
+        AtomicInteger retried = new AtomicInteger();
+        int version = new SchemaMigrator(LOGGER, "mail")
+                .step(1, "create mails", c -> execute(c, "CREATE TABLE mails (id TEXT PRIMARY KEY)"))
+                .step(2, "add sender", c -> {
+                    retried.incrementAndGet();
+                    SchemaMigrator.addColumnIfAbsent(c, "mails", "sender", "TEXT");
+                })
+                .migrate(connection);
+        assertEquals(2, version);
+        assertEquals(1, retried.get());
+        assertNotNull(SchemaMigrator.columnType(connection, "mails", "sender"));
+    }
+
+    @Test
+    void rejectsOutOfOrderSteps() {
+        SchemaMigrator migrator = new SchemaMigrator(LOGGER, "mail").step(2, "second", c -> { });
+        assertThrows(IllegalArgumentException.class, () -> migrator.step(1, "first", c -> { }));
+        assertThrows(IllegalArgumentException.class, () -> migrator.step(2, "again", c -> { }));
+    }
+
+    @Test
+    void versionsComponentsIndependently() throws SQLException {
+        new SchemaMigrator(LOGGER, "mail").step(1, "mail", c -> { }).step(2, "mail", c -> { }).migrate(connection);
+        AtomicInteger status = new AtomicInteger();
+        int version = new SchemaMigrator(LOGGER, "status")
+                .step(1, "status", c -> status.incrementAndGet())
+                .migrate(connection);
+
+        assertEquals(1, version);
+        assertEquals(1, status.get());
+        assertEquals(3, count("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+}
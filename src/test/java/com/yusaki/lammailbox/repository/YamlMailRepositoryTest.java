@@ -0,0 +1,145 @@
+package com.yusaki.lammailbox.repository;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class YamlMailRepositoryTest {
+    private static final List<String> PLAYERS = List.of("alice", "bob", "carol", "dave");
+
+    @TempDir
+    File dataFolder;
+
+    private JavaPlugin plugin;
+
+    @BeforeEach
+    void setUp() {
+        plugin = mock(JavaPlugin.class);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("YamlMailRepositoryTest"));
+    }
+
+    @Test
+    void indexesFollowEveryWrite() {
+        YamlMailRepository repository = new YamlMailRepository(plugin, dataFolder, 0L);
+        repository.saveMail("direct", mail("alice", "Bob", 1L));
+        repository.saveMail("group", mail("alice", "bob;carol", 2L));
+        repository.saveMail("broadcast", mail("dave", "all", 3L));
+        assertConsistent(repository);
+
+        repository.saveMail("group", Map.of("receiver", "carol;dave"));
+        repository.saveMail("direct", Map.of("active", false));
+        repository.saveMail("broadcast", Map.of("claimed-players", List.of("Carol")));
+        assertConsistent(repository);
+        assertEquals(1, repository.countActiveMailFor("bob"));
+        assertEquals(1, repository.countActiveMailFor("carol"));
+        assertEquals(2, repository.countActiveMailFor("dave"));
+
+        repository.deleteMail("group");
+        assertConsistent(repository);
+        assertEquals(List.of("direct"), repository.listMailIdsBySender("alice"));
+        repository.shutdown();
+    }
+
+    @Test
+    void indexesScheduledAndExpiringMail() {
+        YamlMailRepository repository = new YamlMailRepository(plugin, dataFolder, 0L);
+        Map<String, Object> scheduled = mail("alice", "bob", 1L);
+        scheduled.put("active", false);
+        scheduled.put("schedule-date", 100L);
+        repository.saveMail("scheduled", scheduled);
+        Map<String, Object> expiring = mail("alice", "bob", 2L);
+        expiring.put("expire-date", 200L);
+        repository.saveMail("expiring", expiring);
+        assertEquals(List.of("expiring"), repository.listActiveMailIdsFor("bob"));
+
+        assertEquals(List.of(), repository.activateDueScheduled(99L));
+        List<ActivatedMail> activated = repository.activateDueScheduled(100L);
+        assertEquals(List.of(new ActivatedMail("scheduled", "bob", "alice")), activated);
+        assertEquals(List.of(), repository.activateDueScheduled(100L));
+        assertConsistent(repository);
+
+        assertEquals(List.of(), repository.listExpiredMailIds(199L, 10));
+        assertEquals(1, repository.purgeExpired(200L, 10));
+        assertEquals(List.of(), repository.listExpiredMailIds(200L, 10));
+        assertEquals(List.of("scheduled"), repository.listActiveMailIdsFor("bob"));
+        assertConsistent(repository);
+        repository.shutdown();
+    }
+
+    @Test
+    void indexesAreRebuiltFromShardsOnLoad() {
+        YamlMailRepository repository = new YamlMailRepository(plugin, dataFolder, 0L);
+        repository.saveMail("direct", mail("alice", "bob", 1L));
+        repository.saveMail("broadcast", mail("dave", "all", 2L));
+        repository.saveMail("broadcast", Map.of("claimed-players", List.of("bob")));
+        repository.saveMail("removed", mail("carol", "bob", 3L));
+        repository.deleteMail("removed");
+        repository.shutdown();
+
+        repository = new YamlMailRepository(plugin, dataFolder, 0L);
+        assertEquals(Set.of("direct", "broadcast"), new HashSet<>(repository.listMailIds()));
+        assertEquals(List.of("direct"), repository.listActiveMailIdsFor("bob"));
+        assertEquals(List.of(), repository.listMailIdsBySender("carol"));
+        assertConsistent(repository);
+        repository.shutdown();
+    }
+
+    /**
+     * Checks every index-backed query against a scan of the stored mails.
+     */
+    private static void assertConsistent(YamlMailRepository repository) {
+        List<MailRecord> records = new ArrayList<>();
+        for (String mailId : repository.listMailIds()) {
+            repository.findRecord(mailId).ifPresent(records::add);
+        }
+        for (String player : PLAYERS) {
+            Set<String> active = new HashSet<>();
+            Set<String> sent = new HashSet<>();
+            for (MailRecord record : records) {
+                if (player.equals(record.sender())) {
+                    sent.add(record.id());
+                }
+                if (record.active() && isFor(record, player)) {
+                    active.add(record.id());
+                }
+            }
+            assertEquals(active, new HashSet<>(repository.listActiveMailIdsFor(player)), "active mail of " + player);
+            assertEquals(active.size(), repository.countActiveMailFor(player), "active count of " + player);
+            assertEquals(sent, new HashSet<>(repository.listMailIdsBySender(player)), "mail sent by " + player);
+        }
+    }
+
+    private static boolean isFor(MailRecord record, String player) {
+        if ("all".equalsIgnoreCase(record.receiver())) {
+            return record.claimedPlayers().stream().noneMatch(player::equalsIgnoreCase);
+        }
+        return Arrays.stream(record.receiver().split(";"))
+                .anyMatch(receiver -> receiver.toLowerCase(Locale.ROOT).equals(player));
+    }
+
+    private static Map<String, Object> mail(String sender, String receiver, long sentDate) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("sender", sender);
+        data.put("receiver", receiver);
+        data.put("message", "hello");
+        data.put("sent-date", sentDate);
+        data.put("active", true);
+        return data;
+    }
+}